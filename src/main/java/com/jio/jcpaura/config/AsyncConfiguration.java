@@ -0,0 +1,31 @@
+package com.jio.jcpaura.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+@Configuration
+@EnableScheduling
+public class AsyncConfiguration {
+
+    /**
+     * Executor used to drive streaming (SSE) responses off the request thread.
+     * Streaming work is almost entirely blocked on Ollama I/O, so virtual threads are used.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService streamingExecutor() {
+        return Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    /**
+     * Executor running AI pipelines and their speculative steps, so /api/aura-ai/message does not hold a
+     * servlet thread while the model and MongoDB calls are in flight. Virtual threads, for the same reason.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService pipelineExecutor() {
+        return Executors.newVirtualThreadPerTaskExecutor();
+    }
+}
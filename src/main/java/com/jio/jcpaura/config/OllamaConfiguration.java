@@ -0,0 +1,27 @@
+package com.jio.jcpaura.config;
+
+import com.jio.jcpaura.service.OllamaScheduler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class OllamaConfiguration {
+
+    @Value("${ollama.scheduler.max-concurrent:4}")
+    private int schedulerMaxConcurrent;
+
+    @Value("${ollama.scheduler.max-queue-depth:64}")
+    private int schedulerMaxQueueDepth;
+
+    @Value("${ollama.scheduler.max-queue-wait-ms:15000}")
+    private long schedulerMaxQueueWaitMs;
+
+    /**
+     * Admission control shared by every model call, including hedged duplicates
+     */
+    @Bean
+    public OllamaScheduler ollamaScheduler() {
+        return new OllamaScheduler(schedulerMaxConcurrent, schedulerMaxQueueDepth, schedulerMaxQueueWaitMs);
+    }
+}
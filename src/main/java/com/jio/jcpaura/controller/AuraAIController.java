@@ -1,13 +1,26 @@
 package com.jio.jcpaura.controller;
 
+import com.jio.jcpaura.entity.CachedQueryPlan;
 import com.jio.jcpaura.service.AuraAIQueryService;
+import com.jio.jcpaura.service.Cancellation;
+import com.jio.jcpaura.service.OllamaOverloadedException;
+import com.jio.jcpaura.service.QueryPlanCache;
+import com.jio.jcpaura.service.SemanticQueryCache;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
 
 /**
  * Controller for AI-powered natural language query processing
@@ -20,13 +33,27 @@ public class AuraAIController {
     @Autowired
     private AuraAIQueryService aiQueryService;
 
+    @Autowired
+    private QueryPlanCache queryPlanCache;
+
+    @Autowired
+    private SemanticQueryCache semanticQueryCache;
+
+    @Autowired
+    private ExecutorService streamingExecutor;
+
+    @Value("${ollama.stream-timeout-ms:300000}")
+    private long streamTimeoutMs;
+
     /**
      * Process a natural language message and return AI-powered response with data
      * POST /api/aura-ai/message
      *
      * Request body:
      * {
-     *   "message": "What is the availability in Karnataka?"
+     *   "message": "What is the availability in Karnataka?",
+     *   "includeTimings": false,
+     *   "sessionId": "optional-conversation-id"
      * }
      *
      * Response body:
@@ -40,25 +67,140 @@ public class AuraAIController {
      *   "response": "Based on the Karnataka circle metrics, the availability is...",
      *   "timestamp": 1707458688000
      * }
+     * With "includeTimings": true the response also carries a "timings" block: total and per-stage
+     * milliseconds, prompt/result sizes, and the token counts and durations reported by Ollama.
+     * With a "sessionId", follow-ups such as "and what about Gujarat?" or "sort that by latency" are answered
+     * from the session's previous answer ("queryPath": "session" or "session_query").
+     *
+     * The pipeline runs on virtual threads; the servlet thread is released as soon as it has started
+     * and the response is written when the returned future completes.
      */
     @PostMapping("/message")
-    public ResponseEntity<Map<String, Object>> processMessage(@RequestBody MessageRequest request) {
-        try {
-            // Validate input
-            if (request.getMessage() == null || request.getMessage().trim().isEmpty()) {
-                return ResponseEntity.badRequest().body(createErrorResponse(
-                        "Message cannot be empty"
-                ));
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> processMessage(@RequestBody MessageRequest request) {
+        // Validate input
+        if (request.getMessage() == null || request.getMessage().trim().isEmpty()) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(createErrorResponse(
+                    "Message cannot be empty"
+            )));
+        }
+
+        // Process the query through the 4-step pipeline
+        return aiQueryService.processQueryAsync(request.getMessage(), request.getSessionId())
+                .thenApply(result -> {
+                    if (!request.isIncludeTimings()) {
+                        result.remove("timings");
+                    }
+                    // Add timestamp
+                    result.put("timestamp", System.currentTimeMillis());
+                    return ResponseEntity.ok(result);
+                })
+                .exceptionally(error -> {
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null
+                            ? error.getCause() : error;
+                    if (cause instanceof OllamaOverloadedException overloaded) {
+                        return overloadedResponse(overloaded);
+                    }
+                    return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(
+                            createErrorResponse(cause.getMessage())
+                    );
+                });
+    }
+
+    /**
+     * Process a natural language message and stream the AI response as Server-Sent Events
+     * POST /api/aura-ai/message/stream
+     *
+     * Same request body as /message. Events, in order:
+     * - "metadata": entityIdentification, mongoQuery, resultCount and queryResults (after step 3)
+     * - "token": one event per chunk of the formatted response, as the model produces it
+     * - "done": the complete result map (same shape as /message), or "error" on failure
+     */
+    @PostMapping(value = "/message/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<?> processMessageStream(@RequestBody MessageRequest request) {
+        if (request.getMessage() == null || request.getMessage().trim().isEmpty()) {
+            return ResponseEntity.badRequest().contentType(MediaType.APPLICATION_JSON)
+                    .body(createErrorResponse("Message cannot be empty"));
+        }
+
+        SseEmitter emitter = new SseEmitter(streamTimeoutMs);
+        Cancellation cancellation = SseEvents.cancelOnClose(emitter);
+        streamingExecutor.execute(() -> {
+            try {
+                Map<String, Object> result = aiQueryService.processQueryStream(
+                        request.getMessage(),
+                        cancellation,
+                        metadata -> SseEvents.send(emitter, "metadata", metadata),
+                        token -> SseEvents.send(emitter, "token", token)
+                );
+                if (!request.isIncludeTimings()) {
+                    result.remove("timings");
+                }
+                result.put("timestamp", System.currentTimeMillis());
+
+                String eventName = Boolean.TRUE.equals(result.get("success")) ? "done" : "error";
+                emitter.send(SseEmitter.event().name(eventName).data(result, MediaType.APPLICATION_JSON));
+                emitter.complete();
+            } catch (Exception e) {
+                SseEvents.sendErrorAndComplete(emitter, e);
             }
+        });
+        return ResponseEntity.ok(emitter);
+    }
 
-            // Process the query through the 4-step pipeline
-            Map<String, Object> result = aiQueryService.processQuery(request.getMessage());
+    /**
+     * Health check for AI query service
+     * GET /api/aura-ai/health
+     */
+    @GetMapping("/health")
+    public ResponseEntity<Map<String, Object>> healthCheck() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("success", true);
+        result.put("status", "AI Query Service is running");
+        result.put("timestamp", System.currentTimeMillis());
+        return ResponseEntity.ok(result);
+    }
 
-            // Add timestamp
-            result.put("timestamp", System.currentTimeMillis());
+    /**
+     * Get AI pipeline statistics
+     * GET /api/aura-ai/stats
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, Object>> getStats() {
+        Map<String, Object> result = new HashMap<>(aiQueryService.getStats());
+        result.put("success", true);
+        result.put("timestamp", System.currentTimeMillis());
+        return ResponseEntity.ok(result);
+    }
 
-            return ResponseEntity.ok(result);
+    /**
+     * Get the cached query plans, most used first
+     * GET /api/aura-ai/query-plans
+     */
+    @GetMapping("/query-plans")
+    public ResponseEntity<Map<String, Object>> getQueryPlans() {
+        List<CachedQueryPlan> plans = queryPlanCache.getPlans();
+        Map<String, Object> result = new HashMap<>();
+        result.put("success", true);
+        result.put("plans", plans);
+        result.put("stats", queryPlanCache.getStats());
+        result.put("timestamp", System.currentTimeMillis());
+        return ResponseEntity.ok(result);
+    }
 
+    /**
+     * Drop every cached query plan, including the answers held by the semantic cache
+     * DELETE /api/aura-ai/query-plans
+     */
+    @DeleteMapping("/query-plans")
+    public ResponseEntity<Map<String, Object>> clearQueryPlans() {
+        try {
+            int removed = queryPlanCache.invalidateAll();
+            Map<String, Object> result = new HashMap<>();
+            result.put("success", true);
+            result.put("removed", removed);
+            result.put("removedSemantic", semanticQueryCache.invalidateAll());
+            result.put("timestamp", System.currentTimeMillis());
+            return ResponseEntity.ok(result);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(
                     createErrorResponse(e.getMessage())
@@ -67,14 +209,35 @@ public class AuraAIController {
     }
 
     /**
-     * Health check for AI query service
-     * GET /api/aura-ai/health
+     * Drop one cached query plan
+     * DELETE /api/aura-ai/query-plans/{id}
      */
-    @GetMapping("/health")
-    public ResponseEntity<Map<String, Object>> healthCheck() {
+    @DeleteMapping("/query-plans/{id}")
+    public ResponseEntity<Map<String, Object>> deleteQueryPlan(@PathVariable String id) {
+        if (!queryPlanCache.invalidate(id)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(
+                    createErrorResponse("Query plan not found with id: " + id)
+            );
+        }
+        Map<String, Object> result = new HashMap<>();
+        result.put("success", true);
+        result.put("timestamp", System.currentTimeMillis());
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * Forget a conversation started with a sessionId on /message
+     * DELETE /api/aura-ai/sessions/{id}
+     */
+    @DeleteMapping("/sessions/{id}")
+    public ResponseEntity<Map<String, Object>> endSession(@PathVariable String id) {
+        if (!aiQueryService.endSession(id)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(
+                    createErrorResponse("Session not found or expired: " + id)
+            );
+        }
         Map<String, Object> result = new HashMap<>();
         result.put("success", true);
-        result.put("status", "AI Query Service is running");
         result.put("timestamp", System.currentTimeMillis());
         return ResponseEntity.ok(result);
     }
@@ -89,8 +252,13 @@ public class AuraAIController {
         docs.put("endpoint", "/api/aura-ai/message");
         docs.put("method", "POST");
         docs.put("description", "Process natural language queries using AI-powered multi-step query pipeline");
+        docs.put("streamingEndpoint", "/api/aura-ai/message/stream (POST, text/event-stream: metadata, token..., done)");
+        docs.put("jobsEndpoint", "/api/aura-ai/jobs (POST to submit, GET/DELETE /jobs/{id} to poll/cancel, "
+                + "GET /jobs/{id}/events to subscribe)");
         docs.put("requestBody", new HashMap<String, Object>() {{
             put("message", "The user's natural language query (string)");
+            put("includeTimings", "Optional; true to add the per-stage latency breakdown as \"timings\" (boolean)");
+            put("sessionId", "Optional; conversation id, so follow-ups can refer to the previous answer (string)");
         }});
         docs.put("responseBody", new HashMap<String, Object>() {{
             put("success", "Boolean indicating if the query was processed successfully");
@@ -116,6 +284,17 @@ public class AuraAIController {
         return ResponseEntity.ok(docs);
     }
 
+    /**
+     * Fast rejection when the model scheduler does not admit the call: 429 (queue full) or 503 (queue deadline)
+     */
+    private ResponseEntity<Map<String, Object>> overloadedResponse(OllamaOverloadedException e) {
+        Map<String, Object> errorResponse = createErrorResponse(e.getMessage());
+        errorResponse.put("reason", e.getReason().name());
+        return ResponseEntity.status(e.getHttpStatus())
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(errorResponse);
+    }
+
     /**
      * Create error response
      */
@@ -132,6 +311,8 @@ public class AuraAIController {
      */
     public static class MessageRequest {
         private String message;
+        private boolean includeTimings;
+        private String sessionId;
 
         public MessageRequest() {
         }
@@ -147,6 +328,22 @@ public class AuraAIController {
         public void setMessage(String message) {
             this.message = message;
         }
+
+        public boolean isIncludeTimings() {
+            return includeTimings;
+        }
+
+        public void setIncludeTimings(boolean includeTimings) {
+            this.includeTimings = includeTimings;
+        }
+
+        public String getSessionId() {
+            return sessionId;
+        }
+
+        public void setSessionId(String sessionId) {
+            this.sessionId = sessionId;
+        }
     }
 }
 
@@ -0,0 +1,167 @@
+package com.jio.jcpaura.controller;
+
+import com.jio.jcpaura.service.AiJob;
+import com.jio.jcpaura.service.AuraAIJobService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Controller for AI questions run as background jobs
+ * Submit a question, then poll (or subscribe to) the job instead of holding a connection open
+ * for the whole pipeline
+ */
+@RestController
+@RequestMapping("/api/aura-ai/jobs")
+public class AuraAIJobController {
+
+    @Autowired
+    private AuraAIJobService jobService;
+
+    @Value("${ollama.stream-timeout-ms:300000}")
+    private long streamTimeoutMs;
+
+    /**
+     * Submit a question as a job
+     * POST /api/aura-ai/jobs
+     *
+     * Request body: same as /api/aura-ai/message
+     * Response (202 Accepted, Location: /api/aura-ai/jobs/{jobId}):
+     * {
+     *   "success": true,
+     *   "jobId": "3f0c...",
+     *   "status": "QUEUED",
+     *   "timestamp": 1707458688000
+     * }
+     * Returns 429 when the job queue is full.
+     */
+    @PostMapping
+    public ResponseEntity<Map<String, Object>> submitJob(@RequestBody AuraAIController.MessageRequest request) {
+        if (request.getMessage() == null || request.getMessage().trim().isEmpty()) {
+            return ResponseEntity.badRequest().body(createErrorResponse("Message cannot be empty"));
+        }
+
+        try {
+            AiJob job = jobService.submit(request.getMessage(), request.isIncludeTimings());
+            Map<String, Object> result = new HashMap<>();
+            result.put("success", true);
+            result.put("jobId", job.getId());
+            result.put("status", job.getStatus().name());
+            result.put("timestamp", System.currentTimeMillis());
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .header(HttpHeaders.LOCATION, "/api/aura-ai/jobs/" + job.getId())
+                    .body(result);
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, "5")
+                    .body(createErrorResponse(e.getMessage()));
+        }
+    }
+
+    /**
+     * Get a job's status, and its result once finished
+     * GET /api/aura-ai/jobs/{id}
+     *
+     * "status" is QUEUED, RUNNING, SUCCEEDED, FAILED or CANCELLED; "result" has the same shape as the
+     * /api/aura-ai/message response. Finished jobs are kept for aura.ai.jobs.result-ttl-seconds.
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<Map<String, Object>> getJob(@PathVariable String id) {
+        AiJob job = jobService.get(id);
+        if (job == null) {
+            return jobNotFound(id);
+        }
+        Map<String, Object> result = job.toMap();
+        result.put("success", true);
+        result.put("timestamp", System.currentTimeMillis());
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * Subscribe to a job as Server-Sent Events
+     * GET /api/aura-ai/jobs/{id}/events
+     *
+     * Events: "status" with the current state right away, then "done" with the finished job
+     * (same shape as GET /api/aura-ai/jobs/{id})
+     */
+    @GetMapping(value = "/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<?> subscribeJob(@PathVariable String id) {
+        AiJob job = jobService.get(id);
+        if (job == null) {
+            return jobNotFound(id);
+        }
+
+        SseEmitter emitter = new SseEmitter(streamTimeoutMs);
+        try {
+            emitter.send(SseEmitter.event().name("status").data(job.toMap(), MediaType.APPLICATION_JSON));
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+            return ResponseEntity.ok(emitter);
+        }
+        job.onFinish(finished -> {
+            try {
+                emitter.send(SseEmitter.event().name("done").data(finished.toMap(), MediaType.APPLICATION_JSON));
+                emitter.complete();
+            } catch (IOException | IllegalStateException e) {
+                // Client went away or the emitter timed out; the job result stays available for polling
+                emitter.completeWithError(e);
+            }
+        });
+        return ResponseEntity.ok(emitter);
+    }
+
+    /**
+     * Cancel a job, aborting its in-flight model calls and MongoDB query
+     * DELETE /api/aura-ai/jobs/{id}
+     */
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Map<String, Object>> cancelJob(@PathVariable String id) {
+        AiJob job = jobService.cancel(id);
+        if (job == null) {
+            return jobNotFound(id);
+        }
+        Map<String, Object> result = job.toMap();
+        result.put("success", true);
+        result.put("timestamp", System.currentTimeMillis());
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * Get job statistics
+     * GET /api/aura-ai/jobs
+     */
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> getJobStats() {
+        Map<String, Object> result = new HashMap<>(jobService.getStats());
+        result.put("success", true);
+        result.put("timestamp", System.currentTimeMillis());
+        return ResponseEntity.ok(result);
+    }
+
+    private ResponseEntity<Map<String, Object>> jobNotFound(String id) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(
+                createErrorResponse("Job not found or expired: " + id)
+        );
+    }
+
+    /**
+     * Create error response
+     */
+    private Map<String, Object> createErrorResponse(String error) {
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("success", false);
+        errorResponse.put("error", error);
+        errorResponse.put("timestamp", System.currentTimeMillis());
+        return errorResponse;
+    }
+}
@@ -2,14 +2,37 @@ package com.jio.jcpaura.controller;
 
 import com.jio.jcpaura.entity.AuraGeneralMetrics;
 import com.jio.jcpaura.service.AuraGeneralMetricsService;
+import com.jio.jcpaura.service.KeysetPage;
+import com.jio.jcpaura.service.MetricsIndexService;
+import jakarta.servlet.http.HttpServletRequest;
 import org.bson.Document;
+import org.bson.json.JsonMode;
+import org.bson.json.JsonWriterSettings;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/api/aura-metrics")
@@ -18,13 +41,40 @@ public class AuraGeneralMetricsController {
     @Autowired
     private AuraGeneralMetricsService metricsService;
 
+    @Autowired
+    private MetricsIndexService indexService;
+
+    @Value("${aura.metrics.export.batch-size:1000}")
+    private int exportBatchSize;
+
+    @Value("${aura.metrics.export.max-batch-size:10000}")
+    private int exportMaxBatchSize;
+
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    private static final int WRITE_BUFFER = 64 * 1024;
+
     /**
-     * Execute a JSON-based query or aggregation pipeline
+     * Streamed documents are written like the entity: _id as a string and dates as ISO local date-times
+     */
+    private static final JsonWriterSettings EXPORT_JSON = JsonWriterSettings.builder()
+            .outputMode(JsonMode.RELAXED)
+            .objectIdConverter((value, writer) -> writer.writeString(value.toHexString()))
+            .dateTimeConverter((value, writer) -> writer.writeString(DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(
+                    LocalDateTime.ofInstant(Instant.ofEpochMilli(value), ZoneId.systemDefault()))))
+            .build();
+
+    /**
+     * Execute a JSON-based query or aggregation pipeline, one page at a time
      * POST /api/aura-metrics/query
      *
      * Request body can be:
      * 1. Simple query: {"type": "query", "data": "{ \"circle\": \"NORTH\" }"}
      * 2. Aggregation pipeline: {"type": "aggregation", "data": "[{\"$match\": {\"circle\": \"NORTH\"}}, {\"$group\": {\"_id\": \"$service_type\", \"count\": {\"$sum\": 1}}}]"}
+     *
+     * Optional: "pageSize" (capped at aura.metrics.page.max-size), "sort" ("field", "field:desc" or "-field";
+     * default kpi_timestamp descending for queries, _id ascending for aggregations) and "cursor", the
+     * "nextCursor" of the previous page. "nextCursor" is null on the last page.
      */
     @PostMapping("/query")
     public ResponseEntity<Map<String, Object>> executeQuery(@RequestBody QueryRequest request) {
@@ -33,18 +83,18 @@ public class AuraGeneralMetricsController {
 
             if ("aggregation".equalsIgnoreCase(request.getType())) {
                 // Execute aggregation pipeline
-                List<Document> results = metricsService.executeAggregation(request.getData());
+                KeysetPage.Page<Document> page = metricsService.aggregatePage(
+                        request.getData(), request.getSort(), request.getPageSize(), request.getCursor());
                 response.put("success", true);
                 response.put("type", "aggregation");
-                response.put("data", results);
-                response.put("count", results.size());
+                putPage(response, page);
             } else {
                 // Execute simple query
-                List<AuraGeneralMetrics> results = metricsService.executeQuery(request.getData());
+                KeysetPage.Page<AuraGeneralMetrics> page = metricsService.findPage(
+                        request.getData(), request.getSort(), request.getPageSize(), request.getCursor());
                 response.put("success", true);
                 response.put("type", "query");
-                response.put("data", results);
-                response.put("count", results.size());
+                putPage(response, page);
             }
 
             return ResponseEntity.ok(response);
@@ -55,22 +105,210 @@ public class AuraGeneralMetricsController {
 
     /**
      * Get all metrics
-     * GET /api/aura-metrics/all
+     * GET /api/aura-metrics/all?batchSize=1000
+     *
+     * The documents are streamed from a cursor as they are read, so the response never holds the whole
+     * collection in memory: {"data": [...], "count": n, "success": true}. A failure part way through ends
+     * the object with "success": false and "error" after the rows sent so far.
+     *
+     * GET /api/aura-metrics/all?pageSize=100&sort=kpi_timestamp:desc&cursor=...
+     *
+     * With any of pageSize, sort or cursor the response is one page instead, as for /query.
      */
     @GetMapping("/all")
-    public ResponseEntity<Map<String, Object>> getAllMetrics() {
+    public ResponseEntity<?> getAllMetrics(@RequestParam(required = false) Integer batchSize,
+                                           @RequestParam(required = false) Integer pageSize,
+                                           @RequestParam(required = false) String sort,
+                                           @RequestParam(required = false) String cursor) {
+        if (pageSize != null || sort != null || cursor != null) {
+            try {
+                Map<String, Object> response = new HashMap<>();
+                response.put("success", true);
+                putPage(response, metricsService.findPage(null, sort, pageSize, cursor));
+                return ResponseEntity.ok(response);
+            } catch (Exception e) {
+                return handleError(e);
+            }
+        }
+
+        int batch = batchSize(batchSize);
+        StreamingResponseBody body = out -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), WRITE_BUFFER);
+            writer.write("{\"data\": [");
+            long[] count = {0};
+            try {
+                metricsService.streamMetrics(List.of(), null, null, batch, document -> {
+                    if (count[0]++ > 0) {
+                        writer.write(", ");
+                    }
+                    writer.write(document.toJson(EXPORT_JSON));
+                });
+                writer.write("], \"count\": " + count[0] + ", \"success\": true}");
+            } catch (RuntimeException e) {
+                writer.write("], \"count\": " + count[0] + ", \"success\": false, \"error\": "
+                        + jsonString(e.getMessage()) + "}");
+            }
+            writer.flush();
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    /**
+     * Export metrics as a stream
+     * GET /api/aura-metrics/export?format=ndjson&fields=site_id,circle,availability_pct&from=2024-02-01&to=2024-02-09T12:00:00&batchSize=1000
+     *
+     * format: ndjson (default, one document per line, application/x-ndjson) or json (one array)
+     * fields: stored field names to include (default all); from/to: kpi_timestamp range, from inclusive,
+     * to exclusive, as ISO date or date-time. Documents are written as the cursor reads them, so memory
+     * stays constant whatever the collection size. A failure part way through ends an NDJSON export with
+     * an {"error": ...} line, and aborts a JSON export.
+     */
+    @GetMapping("/export")
+    public ResponseEntity<?> exportMetrics(@RequestParam(defaultValue = "ndjson") String format,
+                                           @RequestParam(required = false) String fields,
+                                           @RequestParam(required = false) String from,
+                                           @RequestParam(required = false) String to,
+                                           @RequestParam(required = false) Integer batchSize) {
+        boolean ndjson;
+        List<String> projection;
+        LocalDateTime fromTime;
+        LocalDateTime toTime;
         try {
-            List<AuraGeneralMetrics> results = metricsService.getAllMetrics();
+            if (!format.equalsIgnoreCase("ndjson") && !format.equalsIgnoreCase("json")) {
+                throw new IllegalArgumentException("format must be ndjson or json");
+            }
+            ndjson = format.equalsIgnoreCase("ndjson");
+            projection = parseFields(fields);
+            fromTime = parseTime("from", from);
+            toTime = parseTime("to", to);
+        } catch (Exception e) {
+            return handleError(e);
+        }
+
+        int batch = batchSize(batchSize);
+        StreamingResponseBody body = out -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), WRITE_BUFFER);
+            if (!ndjson) {
+                writer.write("[");
+            }
+            long[] count = {0};
+            try {
+                metricsService.streamMetrics(projection, fromTime, toTime, batch, document -> {
+                    if (!ndjson && count[0] > 0) {
+                        writer.write(", ");
+                    }
+                    count[0]++;
+                    writer.write(document.toJson(EXPORT_JSON));
+                    if (ndjson) {
+                        writer.write("\n");
+                    }
+                });
+            } catch (RuntimeException e) {
+                if (!ndjson) {
+                    throw new IOException("Export failed after " + count[0] + " documents: " + e.getMessage(), e);
+                }
+                writer.write("{\"error\": " + jsonString(e.getMessage()) + "}\n");
+            }
+            if (!ndjson) {
+                writer.write("]");
+            }
+            writer.flush();
+        };
+        return ResponseEntity.ok()
+                .contentType(ndjson ? NDJSON : MediaType.APPLICATION_JSON)
+                .body(body);
+    }
+
+    /**
+     * Get the collection's indexes and the index advisor's report
+     * GET /api/aura-metrics/indexes
+     *
+     * "advice" lists the filter/sort shapes the query endpoints have run, most frequent first, each with
+     * its run count, the recommended compound index (equality fields, then sort, then range fields) and
+     * the existing index serving it, if any.
+     */
+    @GetMapping("/indexes")
+    public ResponseEntity<Map<String, Object>> getIndexes() {
+        try {
+            Map<String, Object> response = new HashMap<>(indexService.getReport());
+            response.put("success", true);
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            return handleError(e);
+        }
+    }
+
+    /**
+     * Create the recommended indexes for query shapes run at least minCount times that no index serves
+     * POST /api/aura-metrics/indexes/apply?minCount=1
+     */
+    @PostMapping("/indexes/apply")
+    public ResponseEntity<Map<String, Object>> applyIndexAdvice(@RequestParam(defaultValue = "1") long minCount) {
+        try {
+            List<Document> created = indexService.createMissingIndexes(minCount);
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
-            response.put("data", results);
-            response.put("count", results.size());
+            response.put("created", created);
+            response.put("count", created.size());
+            response.put("stats", indexService.getStats());
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            return handleError(e);
+        }
+    }
+
+    /**
+     * Create the unique index on the natural key (site_id, kpi_timestamp, service_type) that ingest upserts on
+     * POST /api/aura-metrics/indexes/natural-key?removeDuplicates=false
+     *
+     * The index is also created at startup, but not while the collection holds duplicate samples;
+     * removeDuplicates=true first deletes all but the most recently inserted document of each key.
+     */
+    @PostMapping("/indexes/natural-key")
+    public ResponseEntity<Map<String, Object>> ensureNaturalKey(
+            @RequestParam(defaultValue = "false") boolean removeDuplicates) {
+        try {
+            Map<String, Object> response = new HashMap<>(indexService.ensureNaturalKey(removeDuplicates));
+            if (!response.get("removed").equals(0L)) {
+                metricsService.invalidateAllResults();
+            }
+            response.put("success", response.get("unique"));
             return ResponseEntity.ok(response);
         } catch (Exception e) {
             return handleError(e);
         }
     }
 
+    /**
+     * Get result cache statistics
+     * GET /api/aura-metrics/cache
+     *
+     * Entries and bytes held, hit ratio, evictions and invalidations of the cache in front of /query and
+     * the AI pipeline's queries.
+     */
+    @GetMapping("/cache")
+    public ResponseEntity<Map<String, Object>> getCacheStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("resultCache", metricsService.getResultCacheStats());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Get write-behind buffer statistics
+     * GET /api/aura-metrics/write-buffer
+     *
+     * Queued documents, committed/failed/rejected counters, batches and their average size, retries and,
+     * with a write-ahead log, documents replayed at startup.
+     */
+    @GetMapping("/write-buffer")
+    public ResponseEntity<Map<String, Object>> getWriteBufferStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("writeBuffer", metricsService.getWriteBufferStats());
+        return ResponseEntity.ok(response);
+    }
+
     /**
      * Get metric by ID
      * GET /api/aura-metrics/{id}
@@ -98,17 +336,60 @@ public class AuraGeneralMetricsController {
 
     /**
      * Create new metrics
-     * POST /api/aura-metrics/create
+     * POST /api/aura-metrics/create?sync=false
+     *
+     * With the write-behind buffer enabled, the metrics are queued and committed with others in the next
+     * batch: the response is 202 Accepted, without an id since they may update a stored sample. sync=true
+     * waits until they are written (201 Created, with the id they are stored under). A full buffer answers
+     * 429 Too Many Requests.
      */
     @PostMapping("/create")
-    public ResponseEntity<Map<String, Object>> createMetrics(@RequestBody AuraGeneralMetrics metrics) {
+    public ResponseEntity<Map<String, Object>> createMetrics(@RequestBody AuraGeneralMetrics metrics,
+                                                             @RequestParam(defaultValue = "false") boolean sync) {
         try {
-            AuraGeneralMetrics saved = metricsService.saveMetrics(metrics);
+            boolean buffered = !sync && metricsService.isWriteBehindEnabled();
+            AuraGeneralMetrics saved = metricsService.saveMetrics(metrics, sync);
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
-            response.put("message", "Metrics created successfully");
+            response.put("message", buffered ? "Metrics accepted for writing" : "Metrics created successfully");
+            response.put("buffered", buffered);
             response.put("data", saved);
-            return ResponseEntity.status(HttpStatus.CREATED).body(response);
+            return ResponseEntity.status(buffered ? HttpStatus.ACCEPTED : HttpStatus.CREATED).body(response);
+        } catch (RejectedExecutionException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("error", e.getMessage());
+            response.put("timestamp", System.currentTimeMillis());
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(response);
+        } catch (Exception e) {
+            return handleError(e);
+        }
+    }
+
+    /**
+     * Bulk insert metrics
+     * POST /api/aura-metrics/bulk?batchSize=1000
+     *
+     * Body: a JSON array of metrics (Content-Type: application/json) or one metrics object per line
+     * (Content-Type: application/x-ndjson). Samples are parsed as they arrive and upserted on their natural
+     * key (site_id, kpi_timestamp, service_type) in unordered bulk writes of batchSize (default
+     * aura.metrics.ingest.batch-size, capped at aura.metrics.ingest.max-batch-size). The response counts
+     * received, inserted, updated (already stored) and failed samples, lists the samples that could not be
+     * read and reports each batch with its write errors. A malformed array stops at the break ("aborted");
+     * in NDJSON only the broken line fails.
+     */
+    @PostMapping(value = "/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, "application/x-ndjson"})
+    public ResponseEntity<Map<String, Object>> bulkIngest(HttpServletRequest request,
+                                                          @RequestParam(required = false) Integer batchSize) {
+        try {
+            boolean ndjson = request.getContentType() != null
+                    && MediaType.parseMediaType(request.getContentType()).isCompatibleWith(NDJSON);
+            Map<String, Object> response = new HashMap<>(
+                    metricsService.bulkIngest(request.getInputStream(), ndjson, batchSize));
+            response.put("success", !response.containsKey("aborted") && response.get("failed").equals(0L));
+            return ResponseEntity.ok(response);
         } catch (Exception e) {
             return handleError(e);
         }
@@ -151,6 +432,56 @@ public class AuraGeneralMetricsController {
         }
     }
 
+    /**
+     * Requested cursor batch size, defaulting to aura.metrics.export.batch-size and capped at
+     * aura.metrics.export.max-batch-size
+     */
+    private int batchSize(Integer requested) {
+        if (requested == null || requested <= 0) {
+            return exportBatchSize;
+        }
+        return Math.min(requested, exportMaxBatchSize);
+    }
+
+    private static void putPage(Map<String, Object> response, KeysetPage.Page<?> page) {
+        response.put("data", page.rows());
+        response.put("count", page.rows().size());
+        response.put("nextCursor", page.nextCursor());
+        response.put("hasMore", page.nextCursor() != null);
+    }
+
+    private static List<String> parseFields(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return List.of();
+        }
+        List<String> names = Arrays.stream(fields.split(",")).map(String::trim).filter(name -> !name.isEmpty()).toList();
+        for (String name : names) {
+            if (name.startsWith("$")) {
+                throw new IllegalArgumentException("Invalid field name: " + name);
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Parse an ISO date (start of day) or date-time request parameter
+     */
+    private static LocalDateTime parseTime(String name, String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return value.length() == 10 ? LocalDate.parse(value).atStartOfDay() : LocalDateTime.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid " + name + " (expected ISO date or date-time): " + value);
+        }
+    }
+
+    private static String jsonString(String value) {
+        String json = new Document("v", String.valueOf(value)).toJson();
+        return json.substring(json.indexOf(':') + 1, json.length() - 1).trim();
+    }
+
     /**
      * Handle errors and return standardized error response
      */
@@ -168,6 +499,9 @@ public class AuraGeneralMetricsController {
     public static class QueryRequest {
         private String type; // "query" or "aggregation"
         private String data; // JSON string for query or pipeline
+        private Integer pageSize;
+        private String sort;
+        private String cursor;
 
         public QueryRequest() {
         }
@@ -192,6 +526,30 @@ public class AuraGeneralMetricsController {
         public void setData(String data) {
             this.data = data;
         }
+
+        public Integer getPageSize() {
+            return pageSize;
+        }
+
+        public void setPageSize(Integer pageSize) {
+            this.pageSize = pageSize;
+        }
+
+        public String getSort() {
+            return sort;
+        }
+
+        public void setSort(String sort) {
+            this.sort = sort;
+        }
+
+        public String getCursor() {
+            return cursor;
+        }
+
+        public void setCursor(String cursor) {
+            this.cursor = cursor;
+        }
     }
 }
 
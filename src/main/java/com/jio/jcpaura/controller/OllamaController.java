@@ -1,12 +1,21 @@
 package com.jio.jcpaura.controller;
 
+import com.jio.jcpaura.service.Cancellation;
+import com.jio.jcpaura.service.GenerationOptions;
+import com.jio.jcpaura.service.OllamaOverloadedException;
 import com.jio.jcpaura.service.OllamaService;
+import com.jio.jcpaura.service.RequestPriority;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
 @RestController
 @RequestMapping("/api/ollama")
@@ -15,6 +24,12 @@ public class OllamaController {
     @Autowired
     private OllamaService ollamaService;
 
+    @Autowired
+    private ExecutorService streamingExecutor;
+
+    @Value("${ollama.stream-timeout-ms:300000}")
+    private long streamTimeoutMs;
+
     /**
      * Generate response using Ollama Qwen2.5-coder model
      * POST /api/ollama/generate
@@ -22,7 +37,8 @@ public class OllamaController {
      * Request body:
      * {
      *   "systemPrompt": "You are a helpful coding assistant",
-     *   "userPrompt": "How do I sort a list in Python?"
+     *   "userPrompt": "How do I sort a list in Python?",
+     *   "bypassCache": false
      * }
      */
     @PostMapping("/generate")
@@ -41,9 +57,12 @@ public class OllamaController {
             }
 
             // Generate response
-            String response = ollamaService.generateResponse(
+            String response = ollamaService.generate(
                     request.getSystemPrompt(),
-                    request.getUserPrompt()
+                    request.getUserPrompt(),
+                    GenerationOptions.defaults()
+                            .bypassCache(Boolean.TRUE.equals(request.getBypassCache()))
+                            .priority(RequestPriority.BATCH)
             );
 
             // Return success response
@@ -56,6 +75,8 @@ public class OllamaController {
 
             return ResponseEntity.ok(result);
 
+        } catch (OllamaOverloadedException e) {
+            return overloadedResponse(e);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(
                     createErrorResponse(e.getMessage())
@@ -63,6 +84,51 @@ public class OllamaController {
         }
     }
 
+    /**
+     * Generate response using Ollama, streamed to the client as Server-Sent Events
+     * POST /api/ollama/generate/stream
+     *
+     * Same request body as /generate. Emits one "token" event per chunk produced by the model,
+     * then a final "done" event carrying the full response (or an "error" event on failure).
+     */
+    @PostMapping(value = "/generate/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<?> generateResponseStream(@RequestBody GenerateRequest request) {
+        if (request.getSystemPrompt() == null || request.getSystemPrompt().trim().isEmpty()) {
+            return ResponseEntity.badRequest().contentType(MediaType.APPLICATION_JSON)
+                    .body(createErrorResponse("systemPrompt cannot be empty"));
+        }
+        if (request.getUserPrompt() == null || request.getUserPrompt().trim().isEmpty()) {
+            return ResponseEntity.badRequest().contentType(MediaType.APPLICATION_JSON)
+                    .body(createErrorResponse("userPrompt cannot be empty"));
+        }
+
+        SseEmitter emitter = new SseEmitter(streamTimeoutMs);
+        Cancellation cancellation = SseEvents.cancelOnClose(emitter);
+        streamingExecutor.execute(() -> {
+            try {
+                String response = ollamaService.generateStream(
+                        request.getSystemPrompt(),
+                        request.getUserPrompt(),
+                        GenerationOptions.defaults()
+                                .bypassCache(Boolean.TRUE.equals(request.getBypassCache()))
+                                .priority(RequestPriority.BATCH)
+                                .cancellation(cancellation),
+                        token -> SseEvents.send(emitter, "token", token)
+                );
+
+                Map<String, Object> result = new HashMap<>();
+                result.put("success", true);
+                result.put("response", response);
+                result.put("timestamp", System.currentTimeMillis());
+                emitter.send(SseEmitter.event().name("done").data(result, MediaType.APPLICATION_JSON));
+                emitter.complete();
+            } catch (Exception e) {
+                SseEvents.sendErrorAndComplete(emitter, e);
+            }
+        });
+        return ResponseEntity.ok(emitter);
+    }
+
     /**
      * Generate response with custom parameters
      * POST /api/ollama/generate-advanced
@@ -73,7 +139,8 @@ public class OllamaController {
      *   "userPrompt": "How do I sort a list in Python?",
      *   "temperature": 0.7,
      *   "topP": 0.9,
-     *   "topK": 40
+     *   "topK": 40,
+     *   "bypassCache": false
      * }
      */
     @PostMapping("/generate-advanced")
@@ -107,12 +174,15 @@ public class OllamaController {
             }
 
             // Generate response
-            String response = ollamaService.generateResponseWithParams(
+            String response = ollamaService.generate(
                     request.getSystemPrompt(),
                     request.getUserPrompt(),
-                    request.getTemperature(),
-                    request.getTopP(),
-                    request.getTopK()
+                    new GenerationOptions()
+                            .temperature(request.getTemperature())
+                            .topP(request.getTopP())
+                            .topK(request.getTopK())
+                            .bypassCache(Boolean.TRUE.equals(request.getBypassCache()))
+                            .priority(RequestPriority.BATCH)
             );
 
             // Return success response
@@ -130,6 +200,8 @@ public class OllamaController {
 
             return ResponseEntity.ok(result);
 
+        } catch (OllamaOverloadedException e) {
+            return overloadedResponse(e);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(
                     createErrorResponse(e.getMessage())
@@ -140,6 +212,8 @@ public class OllamaController {
     /**
      * Health check - verify Ollama service is running
      * GET /api/ollama/health
+     *
+     * Reports the state of every backend from the background probes; healthy if any backend is.
      */
     @GetMapping("/health")
     public ResponseEntity<Map<String, Object>> healthCheck() {
@@ -147,6 +221,7 @@ public class OllamaController {
         Map<String, Object> result = new HashMap<>();
         result.put("success", isAvailable);
         result.put("status", isAvailable ? "Ollama service is running" : "Ollama service is not available");
+        result.put("backends", ollamaService.getBackendStatus());
         result.put("timestamp", System.currentTimeMillis());
 
         return isAvailable ? ResponseEntity.ok(result) :
@@ -164,6 +239,7 @@ public class OllamaController {
             Map<String, Object> result = new HashMap<>();
             result.put("success", true);
             result.put("models", models);
+            result.put("backends", ollamaService.getBackendStatus());
             result.put("timestamp", System.currentTimeMillis());
 
             return ResponseEntity.ok(result);
@@ -174,6 +250,43 @@ public class OllamaController {
         }
     }
 
+    /**
+     * Get Ollama client statistics (connection pool, in-flight and failed requests)
+     * GET /api/ollama/stats
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, Object>> getStats() {
+        Map<String, Object> result = new HashMap<>(ollamaService.getStats());
+        result.put("success", true);
+        result.put("timestamp", System.currentTimeMillis());
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * Clear the completion cache
+     * DELETE /api/ollama/cache
+     */
+    @DeleteMapping("/cache")
+    public ResponseEntity<Map<String, Object>> clearCache() {
+        ollamaService.clearCache();
+        Map<String, Object> result = new HashMap<>();
+        result.put("success", true);
+        result.put("message", "Completion cache cleared");
+        result.put("timestamp", System.currentTimeMillis());
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * Fast rejection when the model scheduler does not admit the call: 429 (queue full) or 503 (queue deadline)
+     */
+    private ResponseEntity<Map<String, Object>> overloadedResponse(OllamaOverloadedException e) {
+        Map<String, Object> errorResponse = createErrorResponse(e.getMessage());
+        errorResponse.put("reason", e.getReason().name());
+        return ResponseEntity.status(e.getHttpStatus())
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(errorResponse);
+    }
+
     /**
      * Helper method to create error response
      */
@@ -191,6 +304,7 @@ public class OllamaController {
     public static class GenerateRequest {
         private String systemPrompt;
         private String userPrompt;
+        private Boolean bypassCache;
 
         public GenerateRequest() {
         }
@@ -215,6 +329,14 @@ public class OllamaController {
         public void setUserPrompt(String userPrompt) {
             this.userPrompt = userPrompt;
         }
+
+        public Boolean getBypassCache() {
+            return bypassCache;
+        }
+
+        public void setBypassCache(Boolean bypassCache) {
+            this.bypassCache = bypassCache;
+        }
     }
 
     /**
@@ -226,6 +348,7 @@ public class OllamaController {
         private Double temperature;
         private Double topP;
         private Integer topK;
+        private Boolean bypassCache;
 
         public GenerateAdvancedRequest() {
         }
@@ -278,6 +401,14 @@ public class OllamaController {
         public void setTopK(Integer topK) {
             this.topK = topK;
         }
+
+        public Boolean getBypassCache() {
+            return bypassCache;
+        }
+
+        public void setBypassCache(Boolean bypassCache) {
+            this.bypassCache = bypassCache;
+        }
     }
 }
 
@@ -0,0 +1,63 @@
+package com.jio.jcpaura.controller;
+
+import com.jio.jcpaura.service.Cancellation;
+import com.jio.jcpaura.service.OllamaOverloadedException;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Server-Sent Events helpers shared by the streaming endpoints
+ */
+final class SseEvents {
+
+    private SseEvents() {
+    }
+
+    /**
+     * Cancellation signal fired when the stream ends for any reason (completed, timed out or the client went
+     * away), so the work still producing events for it is aborted
+     */
+    static Cancellation cancelOnClose(SseEmitter emitter) {
+        Cancellation cancellation = new Cancellation();
+        emitter.onCompletion(cancellation::cancel);
+        emitter.onTimeout(cancellation::cancel);
+        emitter.onError(error -> cancellation.cancel());
+        return cancellation;
+    }
+
+    /**
+     * Send a single SSE event, surfacing client disconnects as unchecked exceptions so the
+     * producing loop stops reading from Ollama
+     */
+    static void send(SseEmitter emitter, String name, Object data) {
+        try {
+            emitter.send(SseEmitter.event().name(name).data(data));
+        } catch (IOException e) {
+            throw new IllegalStateException("Client disconnected", e);
+        }
+    }
+
+    /**
+     * Emit a final "error" event and close the stream; if the client is already gone, only close it
+     */
+    static void sendErrorAndComplete(SseEmitter emitter, Exception e) {
+        try {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("error", e.getMessage());
+            errorResponse.put("timestamp", System.currentTimeMillis());
+            if (e instanceof OllamaOverloadedException overloaded) {
+                errorResponse.put("reason", overloaded.getReason().name());
+                errorResponse.put("status", overloaded.getHttpStatus());
+            }
+            emitter.send(SseEmitter.event().name("error").data(errorResponse, MediaType.APPLICATION_JSON));
+            emitter.complete();
+        } catch (Exception sendFailure) {
+            emitter.completeWithError(e);
+        }
+    }
+}
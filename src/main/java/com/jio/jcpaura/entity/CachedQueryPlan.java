@@ -0,0 +1,138 @@
+package com.jio.jcpaura.entity;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.time.LocalDateTime;
+
+/**
+ * A MongoDB query generated for a question and validated by executing it,
+ * reused for later questions with the same plan key
+ */
+@Document(collection = "aiQueryPlans")
+public class CachedQueryPlan {
+
+    @Id
+    @JsonProperty("_id")
+    private String id;
+
+    @Field("plan_key")
+    @JsonProperty("plan_key")
+    private String planKey;
+
+    @Field("question")
+    @JsonProperty("question")
+    private String question;
+
+    @Field("entity_identification")
+    @JsonProperty("entity_identification")
+    private String entityIdentification;
+
+    @Field("mongo_query")
+    @JsonProperty("mongo_query")
+    private String mongoQuery;
+
+    @Field("hit_count")
+    @JsonProperty("hit_count")
+    private Long hitCount;
+
+    @Field("created_at")
+    @JsonProperty("created_at")
+    private LocalDateTime createdAt;
+
+    @Field("last_used_at")
+    @JsonProperty("last_used_at")
+    private LocalDateTime lastUsedAt;
+
+    // Constructors
+    public CachedQueryPlan() {
+    }
+
+    public CachedQueryPlan(String id, String planKey, String question, String entityIdentification,
+                           String mongoQuery, LocalDateTime createdAt) {
+        this.id = id;
+        this.planKey = planKey;
+        this.question = question;
+        this.entityIdentification = entityIdentification;
+        this.mongoQuery = mongoQuery;
+        this.hitCount = 0L;
+        this.createdAt = createdAt;
+        this.lastUsedAt = createdAt;
+    }
+
+    // Getters and Setters
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getPlanKey() {
+        return planKey;
+    }
+
+    public void setPlanKey(String planKey) {
+        this.planKey = planKey;
+    }
+
+    public String getQuestion() {
+        return question;
+    }
+
+    public void setQuestion(String question) {
+        this.question = question;
+    }
+
+    public String getEntityIdentification() {
+        return entityIdentification;
+    }
+
+    public void setEntityIdentification(String entityIdentification) {
+        this.entityIdentification = entityIdentification;
+    }
+
+    public String getMongoQuery() {
+        return mongoQuery;
+    }
+
+    public void setMongoQuery(String mongoQuery) {
+        this.mongoQuery = mongoQuery;
+    }
+
+    public Long getHitCount() {
+        return hitCount;
+    }
+
+    public void setHitCount(Long hitCount) {
+        this.hitCount = hitCount;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public LocalDateTime getLastUsedAt() {
+        return lastUsedAt;
+    }
+
+    public void setLastUsedAt(LocalDateTime lastUsedAt) {
+        this.lastUsedAt = lastUsedAt;
+    }
+
+    @Override
+    public String toString() {
+        return "CachedQueryPlan{" +
+                "id='" + id + '\'' +
+                ", planKey='" + planKey + '\'' +
+                ", mongoQuery='" + mongoQuery + '\'' +
+                ", hitCount=" + hitCount +
+                '}';
+    }
+}
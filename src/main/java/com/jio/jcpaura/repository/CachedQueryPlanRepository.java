@@ -0,0 +1,10 @@
+package com.jio.jcpaura.repository;
+
+import com.jio.jcpaura.entity.CachedQueryPlan;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface CachedQueryPlanRepository extends MongoRepository<CachedQueryPlan, String> {
+    // Basic CRUD operations inherited from MongoRepository
+}
@@ -0,0 +1,181 @@
+package com.jio.jcpaura.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * One AI question submitted through the job API: its state, its outcome once finished, and the
+ * signals that abort it. State moves QUEUED to RUNNING to one of the terminal states; the first
+ * terminal transition wins, so a cancel racing the pipeline's completion is reported only once.
+ */
+public class AiJob {
+
+    public enum Status {
+        QUEUED,
+        RUNNING,
+        SUCCEEDED,
+        FAILED,
+        CANCELLED;
+
+        public boolean isTerminal() {
+            return this == SUCCEEDED || this == FAILED || this == CANCELLED;
+        }
+    }
+
+    private final String id;
+    private final String message;
+    private final boolean includeTimings;
+    private final long submittedAt;
+    private final Cancellation cancellation = new Cancellation();
+    private final List<Consumer<AiJob>> listeners = new ArrayList<>();
+
+    private Status status = Status.QUEUED;
+    private long startedAt;
+    private long finishedAt;
+    private Map<String, Object> result;
+    private String error;
+    private Future<?> future;
+
+    public AiJob(String id, String message, boolean includeTimings, long submittedAt) {
+        this.id = id;
+        this.message = message;
+        this.includeTimings = includeTimings;
+        this.submittedAt = submittedAt;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public boolean isIncludeTimings() {
+        return includeTimings;
+    }
+
+    /**
+     * Signal handed to the pipeline's model calls; fired on {@link #cancel}
+     */
+    public Cancellation getCancellation() {
+        return cancellation;
+    }
+
+    public synchronized Status getStatus() {
+        return status;
+    }
+
+    public synchronized long getFinishedAt() {
+        return finishedAt;
+    }
+
+    /**
+     * The worker task running this job, interrupted on {@link #cancel} to abort blocking MongoDB work
+     */
+    public synchronized void setFuture(Future<?> future) {
+        this.future = future;
+        if (status == Status.CANCELLED) {
+            future.cancel(true);
+        }
+    }
+
+    /**
+     * Move from QUEUED to RUNNING
+     * @return false if the job was cancelled while queued and must not run
+     */
+    public synchronized boolean start(long now) {
+        if (status != Status.QUEUED) {
+            return false;
+        }
+        status = Status.RUNNING;
+        startedAt = now;
+        return true;
+    }
+
+    /**
+     * Record the pipeline's outcome, unless the job already reached a terminal state
+     */
+    public void finish(Status outcome, Map<String, Object> result, String error, long now) {
+        List<Consumer<AiJob>> notify;
+        synchronized (this) {
+            if (status.isTerminal()) {
+                return;
+            }
+            status = outcome;
+            this.result = result;
+            this.error = error;
+            finishedAt = now;
+            notify = new ArrayList<>(listeners);
+            listeners.clear();
+        }
+        notify.forEach(listener -> listener.accept(this));
+    }
+
+    /**
+     * Cancel the job: a queued job never starts; a running one has its model calls aborted and its
+     * worker interrupted
+     * @return false if the job had already finished
+     */
+    public boolean cancel(long now) {
+        Future<?> running;
+        synchronized (this) {
+            if (status.isTerminal()) {
+                return false;
+            }
+            running = future;
+        }
+        finish(Status.CANCELLED, null, "Cancelled", now);
+        cancellation.cancel();
+        if (running != null) {
+            running.cancel(true);
+        }
+        return true;
+    }
+
+    /**
+     * Run {@code listener} once the job finishes, or right away if it already has
+     */
+    public void onFinish(Consumer<AiJob> listener) {
+        synchronized (this) {
+            if (!status.isTerminal()) {
+                listeners.add(listener);
+                return;
+            }
+        }
+        listener.accept(this);
+    }
+
+    /**
+     * @return Map of id, status and timestamps, plus the pipeline result or error once finished
+     */
+    public synchronized Map<String, Object> toMap() {
+        Map<String, Object> map = new HashMap<>();
+        map.put("jobId", id);
+        map.put("status", status.name());
+        map.put("message", message);
+        map.put("submittedAt", submittedAt);
+        if (startedAt > 0) {
+            map.put("startedAt", startedAt);
+            map.put("queuedMs", startedAt - submittedAt);
+        }
+        if (finishedAt > 0) {
+            map.put("finishedAt", finishedAt);
+        }
+        if (result != null) {
+            Map<String, Object> copy = new HashMap<>(result);
+            if (!includeTimings) {
+                copy.remove("timings");
+            }
+            map.put("result", copy);
+        }
+        if (error != null) {
+            map.put("error", error);
+        }
+        return map;
+    }
+}
@@ -0,0 +1,178 @@
+package com.jio.jcpaura.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs AI questions as background jobs, for questions that may outlast the HTTP timeout in front of
+ * the service. A fixed number of workers run {@link AuraAIQueryService#processQuery(String, Cancellation)}
+ * from a bounded queue; a full queue rejects the submission. Jobs are kept in memory until
+ * {@code aura.ai.jobs.result-ttl-seconds} after they finish, so clients can poll for the result.
+ */
+@Service
+public class AuraAIJobService {
+
+    @Autowired
+    private AuraAIQueryService aiQueryService;
+
+    @Value("${aura.ai.jobs.workers:4}")
+    private int workers;
+
+    @Value("${aura.ai.jobs.max-queued:100}")
+    private int maxQueued;
+
+    @Value("${aura.ai.jobs.max-jobs:1000}")
+    private int maxJobs;
+
+    @Value("${aura.ai.jobs.result-ttl-seconds:900}")
+    private long resultTtlSeconds;
+
+    private ThreadPoolExecutor workerPool;
+
+    private final ConcurrentHashMap<String, AiJob> jobs = new ConcurrentHashMap<>();
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong succeeded = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong cancelled = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        // Workers are virtual threads: a job spends nearly all its time waiting on Ollama and MongoDB
+        workerPool = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(maxQueued), Thread.ofVirtual().name("aura-ai-job-", 0).factory());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        jobs.values().forEach(job -> job.cancel(System.currentTimeMillis()));
+        workerPool.shutdownNow();
+    }
+
+    /**
+     * Queue a question
+     * @param includeTimings Whether the stored result keeps the per-stage latency breakdown
+     * @return The queued job
+     * @throws RejectedExecutionException if the worker queue or the job store is full
+     */
+    public AiJob submit(String message, boolean includeTimings) {
+        if (jobs.size() >= maxJobs) {
+            purgeExpired();
+            if (jobs.size() >= maxJobs) {
+                rejected.incrementAndGet();
+                throw new RejectedExecutionException("Too many stored jobs (" + maxJobs + ")");
+            }
+        }
+
+        AiJob job = new AiJob(UUID.randomUUID().toString(), message, includeTimings, System.currentTimeMillis());
+        jobs.put(job.getId(), job);
+        try {
+            job.setFuture(workerPool.submit(() -> run(job)));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            rejected.incrementAndGet();
+            throw new RejectedExecutionException("Job queue is full (" + maxQueued + " queued)", e);
+        }
+        submitted.incrementAndGet();
+        return job;
+    }
+
+    /**
+     * @return The job, or null if it does not exist or has expired
+     */
+    public AiJob get(String id) {
+        AiJob job = jobs.get(id);
+        if (job != null && isExpired(job, System.currentTimeMillis())) {
+            return null;
+        }
+        return job;
+    }
+
+    /**
+     * Cancel a job, aborting its in-flight model calls and MongoDB work
+     * @return The job, or null if it does not exist or has expired
+     */
+    public AiJob cancel(String id) {
+        AiJob job = get(id);
+        if (job != null && job.cancel(System.currentTimeMillis())) {
+            cancelled.incrementAndGet();
+            workerPool.purge();
+        }
+        return job;
+    }
+
+    /**
+     * Drop finished jobs whose result TTL has passed
+     */
+    @Scheduled(initialDelay = 60000, fixedDelayString = "${aura.ai.jobs.sweep-interval-ms:60000}")
+    public void purgeExpired() {
+        long now = System.currentTimeMillis();
+        jobs.values().removeIf(job -> {
+            if (isExpired(job, now)) {
+                expired.incrementAndGet();
+                return true;
+            }
+            return false;
+        });
+    }
+
+    /**
+     * Get job statistics
+     * @return Map of job counts by outcome, stored jobs and worker pool usage
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("submitted", submitted.get());
+        stats.put("rejected", rejected.get());
+        stats.put("succeeded", succeeded.get());
+        stats.put("failed", failed.get());
+        stats.put("cancelled", cancelled.get());
+        stats.put("expired", expired.get());
+        stats.put("stored", jobs.size());
+        stats.put("workers", workers);
+        stats.put("running", workerPool.getActiveCount());
+        stats.put("queued", workerPool.getQueue().size());
+        stats.put("maxQueued", maxQueued);
+        stats.put("resultTtlSeconds", resultTtlSeconds);
+        return stats;
+    }
+
+    private void run(AiJob job) {
+        if (!job.start(System.currentTimeMillis())) {
+            return;
+        }
+        try {
+            Map<String, Object> result = aiQueryService.processQuery(job.getMessage(), job.getCancellation());
+            boolean success = Boolean.TRUE.equals(result.get("success"));
+            job.finish(success ? AiJob.Status.SUCCEEDED : AiJob.Status.FAILED, result,
+                    success ? null : String.valueOf(result.get("error")), System.currentTimeMillis());
+        } catch (RuntimeException e) {
+            job.finish(AiJob.Status.FAILED, null, e.getMessage(), System.currentTimeMillis());
+        }
+        if (job.getStatus() == AiJob.Status.SUCCEEDED) {
+            succeeded.incrementAndGet();
+        } else if (job.getStatus() == AiJob.Status.FAILED) {
+            failed.incrementAndGet();
+        }
+    }
+
+    private boolean isExpired(AiJob job, long now) {
+        return job.getStatus().isTerminal() && now - job.getFinishedAt() > resultTtlSeconds * 1000;
+    }
+}
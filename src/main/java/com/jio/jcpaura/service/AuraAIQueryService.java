@@ -2,12 +2,27 @@ package com.jio.jcpaura.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jio.jcpaura.entity.AuraGeneralMetrics;
+import com.jio.jcpaura.entity.CachedQueryPlan;
+import jakarta.annotation.PostConstruct;
 import org.bson.Document;
+import org.bson.json.JsonMode;
+import org.bson.json.JsonWriterSettings;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * Service for handling AI-powered queries using multi-step prompting with Ollama
@@ -25,55 +40,729 @@ public class AuraAIQueryService {
     @Autowired
     private AuraGeneralMetricsService metricsService;
 
+    @Autowired
+    private QueryPlanCache queryPlanCache;
+
+    @Autowired
+    private SemanticQueryCache semanticQueryCache;
+
+    @Autowired
+    private ExecutorService pipelineExecutor;
+
+    @Autowired
+    private PipelineMetrics pipelineMetrics;
+
+    @Value("${aura.ai.entity-routing.enabled:true}")
+    private boolean entityRoutingEnabled;
+
+    @Value("${aura.ai.speculative-query-build.enabled:true}")
+    private boolean speculativeQueryBuildEnabled;
+
+    @Value("${aura.ai.fast-path.enabled:true}")
+    private boolean fastPathEnabled;
+
+    @Value("${aura.ai.fast-path.known-values-ttl-seconds:600}")
+    private long knownValuesTtlSeconds;
+
+    @Value("${aura.ai.sessions.enabled:true}")
+    private boolean sessionsEnabled;
+
+    @Value("${aura.ai.sessions.max-sessions:1000}")
+    private int sessionsMaxSessions;
+
+    @Value("${aura.ai.sessions.max-rows-per-session:500}")
+    private int sessionsMaxRowsPerSession;
+
+    @Value("${aura.ai.sessions.max-total-rows:100000}")
+    private long sessionsMaxTotalRows;
+
+    @Value("${aura.ai.sessions.idle-ttl-seconds:1800}")
+    private long sessionsIdleTtlSeconds;
+
+    @Value("${aura.ai.query-guard.enabled:true}")
+    private boolean queryGuardEnabled;
+
+    @Value("${aura.ai.query-guard.max-scan-docs:1000000}")
+    private long queryGuardMaxScanDocs;
+
+    @Value("${aura.ai.query-guard.max-sort-docs:100000}")
+    private long queryGuardMaxSortDocs;
+
+    @Value("${aura.ai.query-guard.default-limit:1000}")
+    private int queryGuardDefaultLimit;
+
+    @Value("${aura.ai.query-guard.max-time-ms:15000}")
+    private long queryGuardMaxTimeMs;
+
+    @Value("${aura.ai.results.token-budget:3000}")
+    private int resultsTokenBudget;
+
+    @Value("${aura.ai.results.max-groups:20}")
+    private int resultsMaxGroups;
+
+    @Value("${aura.ai.results.top-n:3}")
+    private int resultsTopN;
+
+    @Value("${aura.ai.results.sample-size:5}")
+    private int resultsSampleSize;
+
+    private static final JsonWriterSettings RESULT_JSON = JsonWriterSettings.builder()
+            .outputMode(JsonMode.RELAXED)
+            .build();
+
+    /**
+     * Fields whose stored values the fast path recognizes in questions
+     */
+    private static final List<String> FAST_PATH_FILTER_FIELDS = List.of("circle", "service_type", "health_status");
+
+    private static final long KNOWN_VALUES_RETRY_MS = 30_000;
+
     private final ObjectMapper objectMapper = new ObjectMapper();
 
+    private final SingleFlight<String, Map<String, Object>> inFlightQueries = new SingleFlight<>();
+
+    private ResultCondenser resultCondenser;
+
+    private EntityRouter entityRouter;
+
+    private QueryTemplateMatcher queryTemplateMatcher;
+
+    private FollowUpInterpreter followUpInterpreter;
+
+    private ConversationStore conversations;
+
+    private QueryCostGuard queryGuard;
+
+    private Map<String, List<String>> knownValues = Map.of();
+    private long knownValuesLoadedAt;
+
+    private final AtomicLong localEntityRoutes = new AtomicLong();
+    private final AtomicLong llmEntityRoutes = new AtomicLong();
+    private final AtomicLong fastPathQueries = new AtomicLong();
+    private final AtomicLong cachedPathQueries = new AtomicLong();
+    private final AtomicLong semanticPathQueries = new AtomicLong();
+    private final AtomicLong llmPathQueries = new AtomicLong();
+    private final AtomicLong localFollowUps = new AtomicLong();
+    private final AtomicLong queriedFollowUps = new AtomicLong();
+    private final AtomicLong speculationsStarted = new AtomicLong();
+    private final AtomicLong speculationsUsed = new AtomicLong();
+    private final AtomicLong speculationsDiscarded = new AtomicLong();
+    private final AtomicLong speculationsFailed = new AtomicLong();
+
+    /**
+     * Query results as they are put into the response-formatting prompt
+     * @param json Full results, or their summary if they did not fit the token budget
+     * @param condensed Whether {@code json} is a summary
+     * @param limit Row limit the query guard capped the results at, or null if they are every matching row
+     */
+    private record PromptResults(String json, boolean condensed, Integer limit) {
+    }
+
+    /**
+     * Outcome of steps 1 and 2
+     * @param path fast, cached, semantic or llm
+     * @param planId ID of the stored plan, for the cached path
+     * @param guard Semantic cache guard of the question, if it was looked up there
+     * @param semantic Semantic cache lookup: the hit for the semantic path, the miss to store for the LLM path
+     */
+    private record QueryPlan(String entityIdentification, String mongoQuery, String path, String planId,
+                             String guard, SemanticQueryCache.Lookup semantic) {
+    }
+
+    /**
+     * Outcome of the model calls of steps 1 and 2
+     */
+    private record ModelSteps(String entityIdentification, String mongoQuery) {
+    }
+
+    /**
+     * Outcome of steps 1 to 3
+     */
+    private record PlannedResults(QueryPlan plan, List<?> queryResults) {
+    }
+
+    @PostConstruct
+    public void init() {
+        resultCondenser = new ResultCondenser(List.of("circle", "service_type", "health_status"),
+                resultsMaxGroups, resultsTopN, resultsSampleSize);
+        EntityRouter.Entity metrics = EntityRouter.describe(AuraGeneralMetrics.class, "network performance metrics",
+                Map.ofEntries(
+                        Map.entry("active_users", List.of("users", "subscribers", "customers")),
+                        Map.entry("availability_pct", List.of("uptime", "available", "downtime")),
+                        Map.entry("avg_latency_ms", List.of("delay", "ping", "response time", "slow")),
+                        Map.entry("circle", List.of("region", "state", "zone", "area")),
+                        Map.entry("error_rate_pct", List.of("errors", "error rate", "failure", "failures")),
+                        Map.entry("health_status", List.of("healthy", "unhealthy", "good", "warning", "critical")),
+                        Map.entry("kpi_health_score", List.of("health score", "score")),
+                        Map.entry("kpi_timestamp", List.of("time", "date", "today", "yesterday", "latest", "recent")),
+                        Map.entry("packet_loss_pct", List.of("packet loss", "dropped packets", "loss")),
+                        Map.entry("service_type", List.of("service", "5g", "4g", "jio5g", "jio4g", "technology")),
+                        Map.entry("site_id", List.of("site", "tower", "cell")),
+                        Map.entry("throughput_mbps", List.of("speed", "bandwidth", "data rate"))
+                ),
+                List.of("network", "metrics", "kpi", "kpis", "performance"));
+        entityRouter = new EntityRouter(List.of(metrics));
+        queryTemplateMatcher = new QueryTemplateMatcher(metrics);
+        followUpInterpreter = new FollowUpInterpreter(metrics, queryTemplateMatcher);
+        conversations = new ConversationStore(sessionsEnabled ? sessionsMaxSessions : 0, sessionsMaxRowsPerSession,
+                sessionsMaxTotalRows, sessionsIdleTtlSeconds * 1000);
+        queryGuard = new QueryCostGuard(queryGuardMaxScanDocs, queryGuardMaxSortDocs, queryGuardDefaultLimit,
+                queryGuardMaxTimeMs);
+    }
+
     /**
-     * Process a user message through the 4-step AI query pipeline
+     * Process a user message through the 4-step AI query pipeline.
+     * Identical questions (after normalization) arriving while one is already being processed
+     * share that execution instead of running the pipeline again.
      *
      * @param userMessage The user's natural language query
      * @return Map containing the final response and metadata
      */
     public Map<String, Object> processQuery(String userMessage) {
+        SingleFlight.Result<Map<String, Object>> execution = inFlightQueries.execute(
+                QuestionNormalizer.normalize(userMessage),
+                () -> runPipeline(userMessage, null)
+        );
+
+        // Every caller gets its own copy, since controllers add fields to the result
+        Map<String, Object> result = new HashMap<>(execution.value());
+        result.put("originalMessage", userMessage);
+        if (execution.shared()) {
+            result.put("coalesced", true);
+        }
+        return result;
+    }
+
+    /**
+     * Process a user message through the pipeline under a cancellation signal (used by background jobs).
+     * The run is not coalesced with identical questions, since cancelling it must not abort their answers.
+     *
+     * @param userMessage The user's natural language query
+     * @param cancellation Signal that aborts the run's model calls in flight
+     * @return Map containing the final response and metadata
+     */
+    public Map<String, Object> processQuery(String userMessage, Cancellation cancellation) {
+        Map<String, Object> result = runPipeline(userMessage, cancellation);
+        result.put("originalMessage", userMessage);
+        return result;
+    }
+
+    /**
+     * {@link #processQuery} on the pipeline executor (virtual threads): the caller's thread is released
+     * at once and the future completes when the pipeline does
+     *
+     * @param userMessage The user's natural language query
+     * @return Future of the map containing the final response and metadata; completes exceptionally with
+     *         {@link OllamaOverloadedException} when the model does not admit the call
+     */
+    public CompletableFuture<Map<String, Object>> processQueryAsync(String userMessage) {
+        return CompletableFuture.supplyAsync(() -> processQuery(userMessage), pipelineExecutor);
+    }
+
+    /**
+     * Process a user message as the next question of a conversation. Follow-ups that only re-filter,
+     * re-sort or re-slice the previous answer ({@link FollowUpInterpreter}) are answered from that answer's
+     * rows, with a new MongoDB query only when a filter replaces one of the previous query's conditions;
+     * any other question runs through {@link #processQuery}. Every successful answer becomes the session's
+     * last turn.
+     *
+     * @param userMessage The user's natural language query
+     * @param sessionId Conversation the message belongs to, or null for a standalone question
+     * @return Map containing the final response and metadata
+     */
+    public Map<String, Object> processConversation(String userMessage, String sessionId) {
+        if (sessionId == null || !sessionsEnabled) {
+            return processQuery(userMessage);
+        }
+
+        ConversationStore.Turn previous = conversations.get(sessionId);
+        Map<String, Object> result = previous != null ? answerFollowUp(userMessage, previous) : null;
+        if (result == null) {
+            result = processQuery(userMessage);
+        }
+        if (Boolean.TRUE.equals(result.get("success"))) {
+            rememberTurn(sessionId, userMessage, result);
+        }
+        result.put("sessionId", sessionId);
+        return result;
+    }
+
+    /**
+     * {@link #processConversation} on the pipeline executor
+     *
+     * @param userMessage The user's natural language query
+     * @param sessionId Conversation the message belongs to, or null for a standalone question
+     * @return Future of the map containing the final response and metadata
+     */
+    public CompletableFuture<Map<String, Object>> processQueryAsync(String userMessage, String sessionId) {
+        return CompletableFuture.supplyAsync(() -> processConversation(userMessage, sessionId), pipelineExecutor);
+    }
+
+    /**
+     * Forget a conversation
+     * @return true if the session existed
+     */
+    public boolean endSession(String sessionId) {
+        return conversations.remove(sessionId);
+    }
+
+    /**
+     * Get pipeline statistics
+     * @return Map of request coalescing statistics
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("singleFlight", inFlightQueries.getStats());
+
+        Map<String, Object> entityRouting = new HashMap<>();
+        entityRouting.put("enabled", entityRoutingEnabled);
+        entityRouting.put("local", localEntityRoutes.get());
+        entityRouting.put("llm", llmEntityRoutes.get());
+        stats.put("entityRouting", entityRouting);
+
+        Map<String, Object> queryPath = new HashMap<>();
+        queryPath.put("fastPathEnabled", fastPathEnabled);
+        queryPath.put("fast", fastPathQueries.get());
+        queryPath.put("cached", cachedPathQueries.get());
+        queryPath.put("semantic", semanticPathQueries.get());
+        queryPath.put("llm", llmPathQueries.get());
+        stats.put("queryPath", queryPath);
+
+        Map<String, Object> speculation = new HashMap<>();
+        speculation.put("enabled", speculativeQueryBuildEnabled);
+        speculation.put("started", speculationsStarted.get());
+        speculation.put("used", speculationsUsed.get());
+        speculation.put("discarded", speculationsDiscarded.get());
+        speculation.put("failed", speculationsFailed.get());
+        stats.put("speculativeQueryBuild", speculation);
+
+        Map<String, Object> sessions = new HashMap<>(conversations.getStats());
+        sessions.put("enabled", sessionsEnabled);
+        sessions.put("followUpsLocal", localFollowUps.get());
+        sessions.put("followUpsQueried", queriedFollowUps.get());
+        stats.put("sessions", sessions);
+        Map<String, Object> guard = new HashMap<>(queryGuard.getStats());
+        guard.put("enabled", queryGuardEnabled);
+        stats.put("queryGuard", guard);
+        stats.put("planCache", queryPlanCache.getStats());
+        stats.put("semanticCache", semanticQueryCache.getStats());
+        return stats;
+    }
+
+    /**
+     * Run the 4 pipeline steps for a single message
+     * @param cancellation Cancellation signal of the run, or null
+     */
+    private Map<String, Object> runPipeline(String userMessage, Cancellation cancellation) {
         Map<String, Object> result = new HashMap<>();
+        PipelineTimings timings = new PipelineTimings(pipelineMetrics);
 
         try {
-            // Step 1: Identify the entity/table
-            String entityIdentification = stepGetEntities(userMessage);
-            result.put("entityIdentification", entityIdentification);
+            // Steps 1-3: Identify the entity/table, build the MongoDB query and execute it
+            PlannedResults planned = planAndExecute(userMessage, result, timings, cancellation);
+            String entityIdentification = planned.plan().entityIdentification();
+            String mongoQuery = planned.plan().mongoQuery();
+            List<?> queryResults = planned.queryResults();
+            result.put("queryResults", queryResults);
+            result.put("resultCount", queryResults.size());
 
-            // Step 2: Build the MongoDB query
-            String mongoQuery = stepGetQueryBuilder(userMessage, entityIdentification);
-            result.put("mongoQuery", mongoQuery);
+            // Step 4: Get formatted response from the AI, unless a semantic cache hit reuses the earlier one
+            String formattedResponse = reusedResponse(planned.plan(), result);
+            if (formattedResponse == null) {
+                PromptResults promptResults = resultsForPrompt(queryResults, result, timings);
+                result.put("resultsCondensed", promptResults.condensed());
+                formattedResponse = stepGetResponse(userMessage, entityIdentification, mongoQuery, promptResults,
+                        timings, cancellation);
+            }
+            result.put("response", formattedResponse);
+            rememberAnswer(userMessage, planned.plan(), formattedResponse);
+            result.put("success", true);
+            result.put("originalMessage", userMessage);
+
+        } catch (OllamaOverloadedException e) {
+            // Admission failures are reported by the controller as 429/503, not as a failed answer
+            recordPipeline(result, timings, "rejected");
+            throw e;
+        } catch (Exception e) {
+            result.put("success", false);
+            result.put("error", e.getMessage());
+            result.put("originalMessage", userMessage);
+        }
+
+        recordPipeline(result, timings, Boolean.TRUE.equals(result.get("success")) ? "success"
+                : cancellation != null && cancellation.isCancelled() ? "cancelled" : "error");
+        return result;
+    }
 
-            // Step 3: Execute the query
-            List<?> queryResults = stepExecuteQuery(mongoQuery);
+    /**
+     * Process a user message through the 4-step pipeline, streaming the final step.
+     * Steps 1-3 run as usual; their outcome is handed to {@code onMetadata} before the
+     * formatting step starts, and the formatted answer is then forwarded chunk by chunk
+     * to {@code onToken} as the model produces it.
+     *
+     * @param userMessage The user's natural language query
+     * @param cancellation Signal that aborts the run's model calls and query in flight, e.g. when the client
+     *                     disconnects, or null
+     * @param onMetadata Callback receiving entity, query and results once step 3 is done
+     * @param onToken Callback receiving each chunk of the formatted response
+     * @return Map containing the final response and metadata
+     */
+    public Map<String, Object> processQueryStream(String userMessage, Cancellation cancellation,
+                                                  Consumer<Map<String, Object>> onMetadata,
+                                                  Consumer<String> onToken) {
+        Map<String, Object> result = new HashMap<>();
+        PipelineTimings timings = new PipelineTimings(pipelineMetrics);
+
+        try {
+            PlannedResults planned = planAndExecute(userMessage, result, timings, cancellation);
+            String entityIdentification = planned.plan().entityIdentification();
+            String mongoQuery = planned.plan().mongoQuery();
+            List<?> queryResults = planned.queryResults();
             result.put("queryResults", queryResults);
             result.put("resultCount", queryResults.size());
+            String formattedResponse = reusedResponse(planned.plan(), result);
+            PromptResults promptResults = null;
+            if (formattedResponse == null) {
+                promptResults = resultsForPrompt(queryResults, result, timings);
+                result.put("resultsCondensed", promptResults.condensed());
+            }
+            result.put("originalMessage", userMessage);
+            onMetadata.accept(new HashMap<>(result));
 
-            // Step 4: Get formatted response from the AI
-            String formattedResponse = stepGetResponse(userMessage, entityIdentification, mongoQuery, queryResults);
+            if (formattedResponse == null) {
+                formattedResponse = stepGetResponseStream(userMessage, entityIdentification,
+                        mongoQuery, promptResults, onToken, timings, cancellation);
+            } else {
+                onToken.accept(formattedResponse);
+            }
             result.put("response", formattedResponse);
+            rememberAnswer(userMessage, planned.plan(), formattedResponse);
             result.put("success", true);
-            result.put("originalMessage", userMessage);
 
+        } catch (OllamaOverloadedException e) {
+            // Admission failures are reported by the controller as 429/503, not as a failed answer
+            recordPipeline(result, timings, "rejected");
+            throw e;
         } catch (Exception e) {
             result.put("success", false);
             result.put("error", e.getMessage());
             result.put("originalMessage", userMessage);
         }
 
+        recordPipeline(result, timings, Boolean.TRUE.equals(result.get("success")) ? "success" : "error");
+        return result;
+    }
+
+    /**
+     * Steps 1 to 3. A query generated by the model is stored in the plan cache once it has executed
+     * successfully; a cached query (exact or semantic) that no longer executes is dropped and the question
+     * is planned again.
+     * @param cancellation Cancellation signal of the run, or null
+     */
+    private PlannedResults planAndExecute(String userMessage, Map<String, Object> result, PipelineTimings timings,
+                                          Cancellation cancellation) {
+        QueryPlan plan = planQuery(userMessage, result, true, timings, cancellation);
+        List<?> queryResults;
+        try {
+            queryResults = stepExecuteQuery(plan.mongoQuery(), result, timings, cancellation);
+        } catch (RuntimeException e) {
+            if (cancellation != null && cancellation.isCancelled()) {
+                // Aborted, not broken: keep the cached query
+                throw e;
+            } else if (plan.path().equals("cached")) {
+                queryPlanCache.invalidate(plan.planId());
+            } else if (plan.path().equals("semantic")) {
+                semanticQueryCache.invalidate(plan.semantic().hit().value());
+            } else {
+                throw e;
+            }
+            plan = planQuery(userMessage, result, false, timings, cancellation);
+            queryResults = stepExecuteQuery(plan.mongoQuery(), result, timings, cancellation);
+        }
+
+        if (plan.path().equals("llm")) {
+            queryPlanCache.store(userMessage, plan.entityIdentification(), plan.mongoQuery());
+        }
+        return new PlannedResults(plan, queryResults);
+    }
+
+    /**
+     * Steps 1 and 2, cheapest source first: questions that fit a known template are compiled locally
+     * (fast path), questions answered before reuse their validated query (cached path), paraphrases of
+     * them reuse it through the semantic cache (semantic path), and the rest go through entity
+     * identification and the query builder model call (LLM path).
+     * Records entityIdentification, mongoQuery, entityRouting and queryPath in {@code result}.
+     */
+    private QueryPlan planQuery(String userMessage, Map<String, Object> result, boolean useCache,
+                                PipelineTimings timings, Cancellation cancellation) {
+        QueryTemplateMatcher.Match fastPath = fastPathEnabled
+                ? timings.time("fast_path", () -> queryTemplateMatcher.match(userMessage, knownValues())) : null;
+        CachedQueryPlan cached = fastPath == null && useCache
+                ? timings.time("plan_cache", () -> queryPlanCache.lookup(userMessage)) : null;
+        String guard = null;
+        SemanticQueryCache.Lookup semantic = null;
+        if (fastPath == null && cached == null && useCache && semanticQueryCache.isEnabled()) {
+            String semanticGuard = SemanticQueryCache.guard(userMessage, entityRouter.route(userMessage), knownValues());
+            guard = semanticGuard;
+            semantic = timings.time("semantic_cache", () -> semanticQueryCache.lookup(userMessage, semanticGuard));
+        }
+
+        QueryPlan plan;
+        result.remove("queryTemplate");
+        result.remove("semanticSimilarity");
+        if (fastPath != null) {
+            fastPathQueries.incrementAndGet();
+            plan = new QueryPlan(fastPath.identification(), fastPath.mongoQuery(), "fast", null, null, null);
+            result.put("entityRouting", "local");
+            result.put("queryTemplate", fastPath.template());
+        } else if (cached != null) {
+            cachedPathQueries.incrementAndGet();
+            plan = new QueryPlan(cached.getEntityIdentification(), cached.getMongoQuery(), "cached", cached.getId(),
+                    null, null);
+            result.put("entityRouting", "cached");
+        } else if (semantic != null && semantic.hit() != null) {
+            semanticPathQueries.incrementAndGet();
+            SemanticQueryCache.Answer answer = semantic.hit().value();
+            plan = new QueryPlan(answer.entityIdentification(), answer.mongoQuery(), "semantic", null, guard, semantic);
+            result.put("entityRouting", "cached");
+            result.put("semanticSimilarity", semantic.hit().similarity());
+        } else {
+            llmPathQueries.incrementAndGet();
+            EntityRouter.Route route = routeEntity(userMessage);
+            ModelSteps steps = route != null
+                    ? new ModelSteps(route.identification(),
+                            stepGetQueryBuilder(userMessage, route.identification(), cancellation, false, timings))
+                    : identifyAndBuildQuery(userMessage, timings, cancellation);
+            plan = new QueryPlan(steps.entityIdentification(), steps.mongoQuery(), "llm", null, guard, semantic);
+            result.put("entityRouting", route != null ? "local" : "llm");
+        }
+        result.put("queryPath", plan.path());
+
+        result.put("entityIdentification", plan.entityIdentification());
+        result.put("mongoQuery", plan.mongoQuery());
+        return plan;
+    }
+
+    /**
+     * Answer a follow-up from the previous turn of its conversation: filter, sort and slice the previous
+     * rows, or run the previous query with the follow-up's filter when the rows cannot answer it, then
+     * format the answer (step 4) with both questions in the prompt
+     * @return The result, or null if the message is not a follow-up that can be answered this way
+     */
+    private Map<String, Object> answerFollowUp(String userMessage, ConversationStore.Turn previous) {
+        if (previous.rows() == null) {
+            return null;
+        }
+        FollowUpInterpreter.FollowUp followUp = followUpInterpreter.interpret(userMessage, knownValues());
+        if (followUp == null) {
+            return null;
+        }
+        String mongoQuery = previous.mongoQuery();
+        boolean query = false;
+        if (followUp.filter() != null) {
+            mongoQuery = FollowUpInterpreter.refine(previous.mongoQuery(), followUp.filter());
+            if (mongoQuery == null) {
+                return null;
+            }
+            query = FollowUpInterpreter.needsQuery(previous.mongoQuery(), followUp.filter(), previous.rows());
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        PipelineTimings timings = new PipelineTimings(pipelineMetrics);
+        try {
+            List<Document> rows;
+            if (query) {
+                queriedFollowUps.incrementAndGet();
+                List<Document> queried = stepExecuteQuery(mongoQuery, result, timings, null).stream()
+                        .map(metricsService::toDocument).toList();
+                rows = timings.time("follow_up", () -> FollowUpInterpreter.apply(followUp.withoutFilter(), queried));
+            } else {
+                localFollowUps.incrementAndGet();
+                rows = timings.time("follow_up", () -> FollowUpInterpreter.apply(followUp, previous.rows()));
+            }
+            result.put("queryPath", query ? "session_query" : "session");
+            result.put("followUp", followUp.describe());
+            result.put("entityIdentification", previous.entityIdentification());
+            result.put("mongoQuery", mongoQuery);
+            result.put("queryResults", rows);
+            result.put("resultCount", rows.size());
+
+            PromptResults promptResults = resultsForPrompt(rows, result, timings);
+            result.put("resultsCondensed", promptResults.condensed());
+            String question = "Previous question: " + previous.question()
+                    + "\nFollow-up question: " + userMessage + " (applied: " + followUp.describe() + ")";
+            result.put("response", stepGetResponse(question, previous.entityIdentification(), mongoQuery,
+                    promptResults, timings, null));
+            result.put("success", true);
+        } catch (OllamaOverloadedException e) {
+            recordPipeline(result, timings, "rejected");
+            throw e;
+        } catch (Exception e) {
+            result.put("success", false);
+            result.put("error", e.getMessage());
+        }
+        result.put("originalMessage", userMessage);
+
+        recordPipeline(result, timings, Boolean.TRUE.equals(result.get("success")) ? "success" : "error");
         return result;
     }
 
+    /**
+     * Keep an answer as the last turn of its conversation; rows are kept only up to
+     * {@code aura.ai.sessions.max-rows-per-session}
+     */
+    private void rememberTurn(String sessionId, String userMessage, Map<String, Object> result) {
+        Object entityIdentification = result.get("entityIdentification");
+        Object mongoQuery = result.get("mongoQuery");
+        if (entityIdentification == null || mongoQuery == null || !(result.get("queryResults") instanceof List<?> rows)) {
+            conversations.remove(sessionId);
+            return;
+        }
+        List<Document> kept = conversations.keepsRows(rows.size())
+                ? rows.stream().map(metricsService::toDocument).toList() : null;
+        conversations.put(sessionId, new ConversationStore.Turn(userMessage, entityIdentification.toString(),
+                mongoQuery.toString(), kept));
+    }
+
+    /**
+     * Attach the latency breakdown to the result and record the whole run in the pipeline metrics
+     */
+    private void recordPipeline(Map<String, Object> result, PipelineTimings timings, String outcome) {
+        Object path = result.get("queryPath");
+        pipelineMetrics.recordPipeline(path != null ? path.toString() : "none", timings.elapsedNanos(), outcome);
+        result.put("timings", timings.toMap());
+    }
+
+    /**
+     * The stored response of a semantic cache hit, when {@code aura.ai.semantic-cache.reformat} is off
+     * @return The response to reuse, or null if step 4 should run
+     */
+    private String reusedResponse(QueryPlan plan, Map<String, Object> result) {
+        if (!plan.path().equals("semantic") || semanticQueryCache.isReformat()) {
+            return null;
+        }
+        result.put("responseReused", true);
+        return plan.semantic().hit().value().response();
+    }
+
+    /**
+     * Store a completed model-path answer in the semantic cache, so paraphrases of the question can reuse it
+     */
+    private void rememberAnswer(String userMessage, QueryPlan plan, String response) {
+        if (plan.path().equals("llm")) {
+            semanticQueryCache.store(plan.semantic(), plan.guard(),
+                    new SemanticQueryCache.Answer(userMessage, plan.entityIdentification(), plan.mongoQuery(), response));
+        }
+    }
+
+    /**
+     * Values of the equality-filter fields, as used by the fast path. Loaded with a distinct query and
+     * refreshed after {@code aura.ai.fast-path.known-values-ttl-seconds}; if loading fails the previous
+     * values are kept and loading is retried after 30 seconds.
+     */
+    private synchronized Map<String, List<String>> knownValues() {
+        long now = System.currentTimeMillis();
+        if (now - knownValuesLoadedAt < knownValuesTtlSeconds * 1000) {
+            return knownValues;
+        }
+        knownValuesLoadedAt = now;
+        try {
+            Map<String, List<String>> values = new HashMap<>();
+            for (String field : FAST_PATH_FILTER_FIELDS) {
+                values.put(field, metricsService.getDistinctValues(field));
+            }
+            knownValues = values;
+        } catch (Exception e) {
+            // Keep the previous values and retry sooner; the fast path still serves questions without named values
+            knownValuesLoadedAt = now - knownValuesTtlSeconds * 1000 + KNOWN_VALUES_RETRY_MS;
+        }
+        return knownValues;
+    }
+
+    /**
+     * Step 1 without the model: route the question with the local entity registry
+     * @return The route, or null if routing is disabled or the question is ambiguous
+     */
+    private EntityRouter.Route routeEntity(String userMessage) {
+        EntityRouter.Route route = entityRoutingEnabled ? entityRouter.route(userMessage) : null;
+        if (route != null) {
+            localEntityRoutes.incrementAndGet();
+        } else {
+            llmEntityRoutes.incrementAndGet();
+        }
+        return route;
+    }
+
+    /**
+     * Steps 1 and 2 through the model. Step 2 needs step 1's answer, so to overlap them step 2 starts
+     * speculatively with the most likely entity ({@link EntityRouter#guess}) while step 1 runs. If step 1
+     * names that entity the speculative query is used; otherwise it is cancelled and step 2 runs again with
+     * the real answer. The speculative call only takes a free model slot, and is only started once step 1
+     * holds its own, so under load it never queues ahead of calls that are certainly needed. If step 1 is
+     * answered from the completion cache there is nothing to overlap and no speculation.
+     */
+    private ModelSteps identifyAndBuildQuery(String userMessage, PipelineTimings timings, Cancellation cancellation) {
+        EntityRouter.Route guess = speculativeQueryBuildEnabled ? entityRouter.guess(userMessage) : null;
+        if (guess == null) {
+            String entityIdentification = stepGetEntities(userMessage, timings, cancellation, null);
+            return new ModelSteps(entityIdentification,
+                    stepGetQueryBuilder(userMessage, entityIdentification, cancellation, false, timings));
+        }
+
+        Cancellation speculation = new Cancellation();
+        if (cancellation != null) {
+            cancellation.onCancel(speculation::cancel);
+        }
+        AtomicReference<CompletableFuture<String>> speculativeQuery = new AtomicReference<>();
+        Runnable startSpeculation = () -> {
+            speculationsStarted.incrementAndGet();
+            speculativeQuery.set(CompletableFuture.supplyAsync(
+                    () -> stepGetQueryBuilder(userMessage, guess.identification(), speculation, true, timings),
+                    pipelineExecutor));
+        };
+
+        String entityIdentification;
+        try {
+            entityIdentification = stepGetEntities(userMessage, timings, cancellation, startSpeculation);
+        } catch (RuntimeException e) {
+            speculation.cancel();
+            throw e;
+        }
+
+        // Null if step 1 came from the cache
+        CompletableFuture<String> speculative = speculativeQuery.get();
+        if (speculative != null && guess.collection().equals(entityRouter.collectionNamed(entityIdentification))) {
+            try {
+                String mongoQuery = speculative.join();
+                speculationsUsed.incrementAndGet();
+                return new ModelSteps(entityIdentification, mongoQuery);
+            } catch (CompletionException | CancellationException e) {
+                // No free slot for it, or it failed: build the query now
+                speculationsFailed.incrementAndGet();
+            }
+        } else if (speculative != null) {
+            speculation.cancel();
+            speculationsDiscarded.incrementAndGet();
+        }
+        return new ModelSteps(entityIdentification,
+                stepGetQueryBuilder(userMessage, entityIdentification, cancellation, false, timings));
+    }
+
     /**
      * Step 1: Identify the entity/collection that the query is about
      * Uses system prompt with table schema information
      */
-    private String stepGetEntities(String userMessage) {
+    private String stepGetEntities(String userMessage, PipelineTimings timings, Cancellation cancellation,
+                                   Runnable onAdmitted) {
         String systemPrompt = buildEntityIdentificationSystemPrompt();
         try {
-            String response = ollamaService.generateResponse(systemPrompt, userMessage);
+            String response = timings.timeModel("entity", systemPrompt, userMessage,
+                    stats -> ollamaService.generate(systemPrompt, userMessage,
+                            GenerationOptions.deterministic().operation("entity").cancellation(cancellation)
+                                    .onAdmitted(onAdmitted).stats(stats)));
             return response;
+        } catch (OllamaOverloadedException e) {
+            throw e;
         } catch (Exception e) {
             throw new RuntimeException("Error in entity identification step: " + e.getMessage(), e);
         }
@@ -81,23 +770,45 @@ public class AuraAIQueryService {
 
     /**
      * Step 2: Build the MongoDB query based on the identified entity
+     * @param cancellation Cancellation signal of the call, or null
+     * @param speculative Whether the call is speculative (timed as query_build_speculative)
      */
-    private String stepGetQueryBuilder(String userMessage, String entityIdentification) {
+    private String stepGetQueryBuilder(String userMessage, String entityIdentification, Cancellation cancellation,
+                                       boolean speculative, PipelineTimings timings) {
         String systemPrompt = buildQueryBuilderSystemPrompt();
         String userPrompt = "User query: " + userMessage + "\n\nIdentified entity: " + entityIdentification;
+        GenerationOptions options = GenerationOptions.deterministic().operation("query_build")
+                .speculative(speculative).cancellation(cancellation);
 
         try {
-            String response = ollamaService.generateResponse(systemPrompt, userPrompt);
+            String response = timings.timeModel(speculative ? "query_build_speculative" : "query_build",
+                    systemPrompt, userPrompt, stats -> ollamaService.generate(systemPrompt, userPrompt, options.stats(stats)));
             return response;
+        } catch (OllamaOverloadedException e) {
+            throw e;
         } catch (Exception e) {
             throw new RuntimeException("Error in query builder step: " + e.getMessage(), e);
         }
     }
 
     /**
-     * Step 3: Execute the query against MongoDB
+     * Step 3: Execute the query against MongoDB. A cancelled run stops here; a query already running is
+     * aborted by interrupting the worker thread.
+     * Unless aura.ai.query-guard.enabled is off, the generated query is first reviewed against its explain
+     * plan by the {@link QueryCostGuard}, which may reject it or add a limit; its decision is recorded as
+     * queryGuard in {@code result}.
      */
-    private List<?> stepExecuteQuery(String mongoQuery) {
+    private List<?> stepExecuteQuery(String mongoQuery, Map<String, Object> result, PipelineTimings timings,
+                                     Cancellation cancellation) {
+        if (cancellation != null) {
+            cancellation.throwIfCancelled();
+        }
+        List<?> results = executeQuery(mongoQuery, result, timings);
+        timings.detail("execute", "rows", results.size());
+        return results;
+    }
+
+    private List<?> executeQuery(String mongoQuery, Map<String, Object> result, PipelineTimings timings) {
         try {
             // Try to determine if it's an aggregation or simple query
             String trimmedQuery = mongoQuery.trim();
@@ -130,12 +841,36 @@ public class AuraAIQueryService {
             }
 
             if (cleanedQuery.startsWith("[")) {
-                List<Document> results = metricsService.executeAggregation(cleanedQuery);
+                List<Document> pipeline = metricsService.parsePipeline(cleanedQuery);
+                if (!queryGuardEnabled) {
+                    return timings.time("execute", () -> metricsService.executeAggregation(pipeline, 0));
+                }
+                QueryCostGuard.Decision decision = timings.time("guard", () -> metricsService.reviewPipeline(pipeline,
+                        () -> queryGuard.reviewPipeline(pipeline, explain(() -> metricsService.explainAggregation(pipeline)),
+                                metricsService.estimatedCount())));
+                Map<String, Object> guard = recordGuardDecision(decision, result, timings);
+                List<Document> results = timings.time("execute",
+                        () -> metricsService.executeAggregation(decision.pipeline(), decision.maxTimeMs()));
+                if (decision.action() == QueryCostGuard.Action.REWRITE && results.size() >= queryGuardDefaultLimit) {
+                    recordTruncation(guard, result, queryGuardDefaultLimit);
+                }
                 return results;
             } else {
                 // Extract JSON query from potential text response
                 String jsonQuery = extractJsonFromResponse(cleanedQuery);
-                List<?> results = metricsService.executeQuery(jsonQuery);
+                if (!queryGuardEnabled) {
+                    return timings.time("execute", () -> metricsService.executeQuery(jsonQuery));
+                }
+                Document filter = Document.parse(jsonQuery);
+                QueryCostGuard.Decision decision = timings.time("guard", () -> metricsService.reviewQuery(filter,
+                        () -> queryGuard.reviewQuery(explain(() -> metricsService.explainQuery(filter)),
+                                metricsService.estimatedCount())));
+                Map<String, Object> guard = recordGuardDecision(decision, result, timings);
+                List<?> results = timings.time("execute",
+                        () -> metricsService.executeQuery(jsonQuery, decision.limit(), decision.maxTimeMs()));
+                if (results.size() >= decision.limit()) {
+                    recordTruncation(guard, result, decision.limit());
+                }
                 return results;
             }
         } catch (Exception e) {
@@ -143,37 +878,169 @@ public class AuraAIQueryService {
         }
     }
 
+    /**
+     * Explain a query for the cost guard
+     * @return The explain output, or null if explain failed; the query itself then reports the error
+     */
+    private Document explain(Supplier<Document> explain) {
+        try {
+            return explain.get();
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Record that the query guard's limit cut the results short, in the guard decision and as resultLimit in
+     * the response, so the formatting step does not present them as every matching row
+     */
+    private void recordTruncation(Map<String, Object> guard, Map<String, Object> result, int limit) {
+        guard.put("truncated", true);
+        result.put("resultLimit", limit);
+    }
+
+    /**
+     * Record a cost guard decision in the response and the timings, and stop a rejected query
+     * @return The decision as recorded in the response
+     */
+    private Map<String, Object> recordGuardDecision(QueryCostGuard.Decision decision, Map<String, Object> result,
+                                                    PipelineTimings timings) {
+        Map<String, Object> guard = decision.toMap();
+        result.put("queryGuard", guard);
+        timings.detail("guard", "action", decision.action().name().toLowerCase());
+        timings.detail("guard", "planStages", decision.planStages());
+        if (decision.action() == QueryCostGuard.Action.REJECT) {
+            throw new IllegalStateException("Query rejected by cost guard: " + String.join("; ", decision.reasons()));
+        }
+        return guard;
+    }
+
     /**
      * Step 4: Get a formatted response from the AI using the query results
      */
     private String stepGetResponse(String userMessage, String entityIdentification,
-                                   String mongoQuery, List<?> queryResults) {
+                                   String mongoQuery, PromptResults promptResults, PipelineTimings timings,
+                                   Cancellation cancellation) {
         String systemPrompt = buildResponseFormattingSystemPrompt();
+        String userPrompt = buildResponseUserPrompt(userMessage, entityIdentification, mongoQuery, promptResults);
 
-        // Convert results to JSON string for the prompt
-        String resultsJson;
         try {
-            resultsJson = objectMapper.writeValueAsString(queryResults);
+            return timings.timeModel("format", systemPrompt, userPrompt,
+                    stats -> ollamaService.generate(systemPrompt, userPrompt,
+                            GenerationOptions.defaults().operation("format").cancellation(cancellation).stats(stats)));
+        } catch (OllamaOverloadedException e) {
+            throw e;
         } catch (Exception e) {
-            resultsJson = queryResults.toString();
+            throw new RuntimeException("Error in response formatting step: " + e.getMessage(), e);
         }
+    }
 
-        String userPrompt = String.format(
-                "Original user question: %s\n\n" +
-                "Identified entity: %s\n\n" +
-                "Query executed: %s\n\n" +
-                "Query results (in JSON format):\n%s\n\n" +
-                "Please provide a clear, formatted response to the user's original question based on the retrieved data.",
-                userMessage, entityIdentification, mongoQuery, resultsJson
-        );
+    /**
+     * Step 4 (streaming): same prompt as {@link #stepGetResponse}, but chunks are forwarded as they arrive
+     */
+    private String stepGetResponseStream(String userMessage, String entityIdentification,
+                                         String mongoQuery, PromptResults promptResults,
+                                         Consumer<String> onToken, PipelineTimings timings,
+                                         Cancellation cancellation) {
+        String systemPrompt = buildResponseFormattingSystemPrompt();
+        String userPrompt = buildResponseUserPrompt(userMessage, entityIdentification, mongoQuery, promptResults);
 
         try {
-            return ollamaService.generateResponse(systemPrompt, userPrompt);
+            return timings.timeModel("format", systemPrompt, userPrompt,
+                    stats -> ollamaService.generateStream(systemPrompt, userPrompt,
+                            GenerationOptions.defaults().operation("format").cancellation(cancellation).stats(stats),
+                            onToken));
+        } catch (OllamaOverloadedException e) {
+            throw e;
         } catch (Exception e) {
             throw new RuntimeException("Error in response formatting step: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * Results for the response formatting prompt, timed as the "results" stage
+     * @param result The response so far, whose resultLimit says whether the query guard capped the results
+     */
+    private PromptResults resultsForPrompt(List<?> queryResults, Map<String, Object> result, PipelineTimings timings) {
+        PromptResults serialized = timings.time("results", () -> serializeResults(queryResults));
+        PromptResults promptResults = new PromptResults(serialized.json(), serialized.condensed(),
+                (Integer) result.get("resultLimit"));
+        timings.detail("results", "chars", promptResults.json().length());
+        timings.detail("results", "condensed", promptResults.condensed());
+        pipelineMetrics.recordResults(queryResults.size(), promptResults.json().length(), promptResults.condensed());
+        return promptResults;
+    }
+
+    /**
+     * Serialize the query results for the response formatting prompt.
+     * Rows are added until the estimated size (about 4 characters per token) exceeds
+     * {@code aura.ai.results.token-budget}; past that, the model gets a {@link ResultCondenser}
+     * summary of all rows instead, so the prompt stays bounded however many rows matched.
+     * When the first row suggests the rows are near or over the budget, the summary is computed on the
+     * pipeline executor while the rows are serialized, so neither waits for the other.
+     */
+    private PromptResults serializeResults(List<?> queryResults) {
+        long budgetChars = resultsTokenBudget * 4L;
+        List<Document> rows = new ArrayList<>(queryResults.size());
+        for (Object row : queryResults) {
+            rows.add(metricsService.toDocument(row));
+        }
+
+        CompletableFuture<Map<String, Object>> summary = null;
+        if (!rows.isEmpty() && (long) rows.get(0).toJson(RESULT_JSON).length() * rows.size() > budgetChars / 2) {
+            List<Map<String, Object>> snapshot = new ArrayList<>(rows);
+            summary = CompletableFuture.supplyAsync(() -> resultCondenser.condense(snapshot), pipelineExecutor);
+        }
+
+        StringBuilder json = new StringBuilder("[");
+        for (Document row : rows) {
+            if (json.length() > 1) {
+                json.append(", ");
+            }
+            json.append(row.toJson(RESULT_JSON));
+            if (json.length() > budgetChars) {
+                try {
+                    Map<String, Object> condensed = summary != null
+                            ? summary.join() : resultCondenser.condense(new ArrayList<>(rows));
+                    return new PromptResults(objectMapper.writeValueAsString(condensed), true, null);
+                } catch (Exception e) {
+                    throw new RuntimeException("Error condensing query results: " + e.getMessage(), e);
+                }
+            }
+        }
+        if (summary != null) {
+            summary.cancel(false);
+        }
+        return new PromptResults(json.append("]").toString(), false, null);
+    }
+
+    /**
+     * Build the user prompt for the response formatting step
+     */
+    private String buildResponseUserPrompt(String userMessage, String entityIdentification,
+                                           String mongoQuery, PromptResults promptResults) {
+        String rowsCovered = promptResults.limit() == null ? "all matching rows"
+                : "the first " + promptResults.limit() + " matching rows only";
+        String resultsSection = promptResults.condensed()
+                ? "Query results were too large to include in full. Summary computed over " + rowsCovered + " " +
+                  "(rowCount; per-field statistics; statistics per group; highest/lowest rows per field; a sample of rows), in JSON format:\n"
+                : "Query results (in JSON format):\n";
+        if (promptResults.limit() != null) {
+            resultsSection = "Note: the query was capped at " + promptResults.limit() + " rows and more rows match, " +
+                    "so these results are incomplete. Do not present counts, totals or averages as covering all data; " +
+                    "say that the answer is based on the first " + promptResults.limit() + " rows.\n\n" + resultsSection;
+        }
+
+        return String.format(
+                "Original user question: %s\n\n" +
+                "Identified entity: %s\n\n" +
+                "Query executed: %s\n\n" +
+                "%s%s\n\n" +
+                "Please provide a clear, formatted response to the user's original question based on the retrieved data.",
+                userMessage, entityIdentification, mongoQuery, resultsSection, promptResults.json()
+        );
+    }
+
     /**
      * Build system prompt for entity identification step
      */
@@ -1,19 +1,51 @@
 package com.jio.jcpaura.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.jio.jcpaura.entity.AuraGeneralMetrics;
 import com.jio.jcpaura.repository.AuraGeneralMetricsRepository;
+import com.mongodb.ExplainVerbosity;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.WriteModel;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.bson.Document;
+import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.aggregation.Aggregation;
 import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
 import org.springframework.data.mongodb.core.aggregation.AggregationOperationContext;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
 import org.springframework.data.mongodb.core.aggregation.AggregationResults;
 import org.springframework.data.mongodb.core.query.BasicQuery;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
 
 @Service
 public class AuraGeneralMetricsService {
@@ -24,16 +56,150 @@ public class AuraGeneralMetricsService {
     @Autowired
     private MongoTemplate mongoTemplate;
 
+    @Autowired
+    private MetricsIndexService indexService;
+
+    @Value("${aura.metrics.result-cache.enabled:true}")
+    private boolean resultCacheEnabled;
+
+    @Value("${aura.metrics.result-cache.max-bytes:67108864}")
+    private long resultCacheMaxBytes;
+
+    @Value("${aura.metrics.result-cache.max-entry-bytes:8388608}")
+    private long resultCacheMaxEntryBytes;
+
+    @Value("${aura.metrics.result-cache.max-entries:10000}")
+    private int resultCacheMaxEntries;
+
+    @Value("${aura.metrics.result-cache.ttl-seconds:300}")
+    private long resultCacheTtlSeconds;
+
+    @Value("${aura.metrics.ingest.batch-size:1000}")
+    private int ingestBatchSize;
+
+    @Value("${aura.metrics.ingest.max-batch-size:10000}")
+    private int ingestMaxBatchSize;
+
+    @Value("${aura.metrics.write-behind.enabled:true}")
+    private boolean writeBehindEnabled;
+
+    @Value("${aura.metrics.write-behind.capacity:10000}")
+    private int writeBehindCapacity;
+
+    @Value("${aura.metrics.write-behind.batch-size:500}")
+    private int writeBehindBatchSize;
+
+    @Value("${aura.metrics.write-behind.flush-interval-ms:50}")
+    private long writeBehindFlushIntervalMs;
+
+    @Value("${aura.metrics.write-behind.offer-timeout-ms:100}")
+    private long writeBehindOfferTimeoutMs;
+
+    @Value("${aura.metrics.write-behind.retry-delay-ms:1000}")
+    private long writeBehindRetryDelayMs;
+
+    @Value("${aura.metrics.write-behind.sync-timeout-ms:5000}")
+    private long writeBehindSyncTimeoutMs;
+
+    @Value("${aura.metrics.write-behind.shutdown-timeout-ms:10000}")
+    private long writeBehindShutdownTimeoutMs;
+
+    @Value("${aura.metrics.write-behind.wal-dir:}")
+    private String writeBehindWalDir;
+
+    @Value("${aura.metrics.write-behind.wal-segment-bytes:67108864}")
+    private long writeBehindWalSegmentBytes;
+
+    @Value("${aura.metrics.write-behind.wal-fsync:false}")
+    private boolean writeBehindWalFsync;
+
+    @Value("${aura.metrics.page.default-size:100}")
+    private int defaultPageSize;
+
+    @Value("${aura.metrics.page.max-size:1000}")
+    private int maxPageSize;
+
+    private static final String COLLECTION = "auraGeneralMetrics";
+
+    /**
+     * Query pages run newest first by default; aggregation rows have no common field but _id
+     */
+    private static final KeysetPage.Sort QUERY_SORT = new KeysetPage.Sort("kpi_timestamp", true);
+    private static final KeysetPage.Sort AGGREGATION_SORT = new KeysetPage.Sort("_id", false);
+
+    /**
+     * Per-row allowance on top of a cached row's JSON size, for the objects holding it
+     */
+    private static final long ROW_OVERHEAD_BYTES = 64;
+
+    /**
+     * Errors listed per bulk ingest report section; the counts always cover all of them
+     */
+    private static final int MAX_REPORTED_ERRORS = 100;
+
+    private MetricsResultCache resultCache;
+
+    private MetricsWriteBuffer writeBuffer;
+
+    @PostConstruct
+    public void init() {
+        resultCache = new MetricsResultCache(resultCacheMaxBytes, resultCacheMaxEntryBytes,
+                resultCacheEnabled ? resultCacheMaxEntries : 0, resultCacheTtlSeconds * 1000);
+        if (writeBehindEnabled) {
+            MetricsWriteBuffer.Wal wal = writeBehindWalDir.isBlank() ? null : new MetricsWriteBuffer.Wal(
+                    Path.of(writeBehindWalDir), writeBehindWalSegmentBytes, writeBehindWalFsync);
+            try {
+                writeBuffer = new MetricsWriteBuffer(writeBehindCapacity, writeBehindBatchSize,
+                        writeBehindFlushIntervalMs, writeBehindOfferTimeoutMs, writeBehindRetryDelayMs, wal,
+                        this::writeBuffered);
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot open the write-ahead log in " + writeBehindWalDir, e);
+            }
+            writeBuffer.start();
+        }
+    }
+
+    /**
+     * Commit what the write-behind buffer holds before the MongoDB client goes away
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (writeBuffer != null) {
+            writeBuffer.close(writeBehindShutdownTimeoutMs);
+        }
+    }
+
     /**
      * Execute a JSON-based query against the auraGeneralMetrics collection
      * @param jsonQuery JSON string representing MongoDB query
      * @return List of matching AuraGeneralMetrics documents
      */
     public List<AuraGeneralMetrics> executeQuery(String jsonQuery) {
+        return executeQuery(jsonQuery, 0, 0);
+    }
+
+    /**
+     * Execute a JSON-based query against the auraGeneralMetrics collection with a row and time limit
+     * @param jsonQuery JSON string representing MongoDB query
+     * @param limit Maximum number of documents, or 0 for no limit
+     * @param maxTimeMs Server-side time limit in milliseconds, or 0 for none
+     * @return List of matching AuraGeneralMetrics documents
+     */
+    public List<AuraGeneralMetrics> executeQuery(String jsonQuery, int limit, long maxTimeMs) {
         try {
             Document queryDoc = Document.parse(jsonQuery);
-            Query query = new BasicQuery(queryDoc);
-            return mongoTemplate.find(query, AuraGeneralMetrics.class);
+            // Recorded before the cache lookup, so a shape served from the cache still counts for the advisor
+            indexService.record(queryDoc, null);
+            return cached(MetricsResultCache.key("query", queryDoc, limit), MetricsResultCache.scopeOf(queryDoc), () -> {
+                Query query = new BasicQuery(queryDoc);
+                if (limit > 0) {
+                    query.limit(limit);
+                }
+                if (maxTimeMs > 0) {
+                    query.maxTimeMsec(maxTimeMs);
+                }
+                return mongoTemplate.find(query, AuraGeneralMetrics.class);
+            });
         } catch (Exception e) {
             throw new RuntimeException("Error executing query: " + e.getMessage(), e);
         }
@@ -45,28 +211,265 @@ public class AuraGeneralMetricsService {
      * @return List of Document results from aggregation
      */
     public List<Document> executeAggregation(String pipelineJson) {
+        return executeAggregation(parsePipeline(pipelineJson), 0);
+    }
+
+    /**
+     * Execute an aggregation pipeline against the auraGeneralMetrics collection with a time limit
+     * @param pipeline The pipeline stages
+     * @param maxTimeMs Server-side time limit in milliseconds, or 0 for none
+     * @return List of Document results from aggregation
+     */
+    public List<Document> executeAggregation(List<Document> pipeline, long maxTimeMs) {
         try {
-            // Parse the JSON pipeline and execute raw aggregation
-            List<Document> pipeline = parsePipeline(pipelineJson);
-            AggregationResults<Document> result = mongoTemplate.aggregate(
-                    Aggregation.newAggregation(
-                            pipeline.stream()
-                                    .map(doc -> new RawAggregationOperation(doc))
-                                    .toArray(RawAggregationOperation[]::new)
-                    ),
-                    "auraGeneralMetrics",
-                    Document.class
-            );
-            return result.getMappedResults();
+            indexService.recordPipeline(pipeline);
+            return cached(MetricsResultCache.key("aggregation", pipeline), MetricsResultCache.scopeOfPipeline(pipeline), () -> {
+                Aggregation aggregation = Aggregation.newAggregation(
+                        pipeline.stream()
+                                .map(doc -> new RawAggregationOperation(doc))
+                                .toArray(RawAggregationOperation[]::new)
+                );
+                if (maxTimeMs > 0) {
+                    aggregation = aggregation.withOptions(AggregationOptions.builder()
+                            .maxTime(Duration.ofMillis(maxTimeMs))
+                            .build());
+                }
+                AggregationResults<Document> result = mongoTemplate.aggregate(aggregation, "auraGeneralMetrics", Document.class);
+                return result.getMappedResults();
+            });
+        } catch (Exception e) {
+            throw new RuntimeException("Error executing aggregation pipeline: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Get the query planner's plan for a query, without executing it
+     * @param filter Query filter
+     * @return The explain output
+     */
+    public Document explainQuery(Document filter) {
+        return mongoTemplate.getCollection(COLLECTION).find(filter).explain(ExplainVerbosity.QUERY_PLANNER);
+    }
+
+    /**
+     * Get the query planner's plan for an aggregation pipeline, without executing it
+     * @param pipeline The pipeline stages
+     * @return The explain output
+     */
+    public Document explainAggregation(List<Document> pipeline) {
+        return mongoTemplate.getCollection(COLLECTION).aggregate(pipeline).explain(ExplainVerbosity.QUERY_PLANNER);
+    }
+
+    /**
+     * @return Number of documents in the collection, from its metadata
+     */
+    public long estimatedCount() {
+        return mongoTemplate.getCollection(COLLECTION).estimatedDocumentCount();
+    }
+
+    /**
+     * Read one page of a JSON-based query with keyset pagination
+     * @param jsonQuery JSON string representing MongoDB query, or null/blank for every document
+     * @param sortSpec Sort field and direction ("field", "field:desc" or "-field"), default kpi_timestamp descending
+     * @param pageSize Requested page size, defaulting to aura.metrics.page.default-size and capped at
+     *                 aura.metrics.page.max-size
+     * @param cursor Continuation token from the previous page, or null for the first page
+     * @return The page and the token for the next one
+     * @throws IllegalArgumentException if the sort spec or cursor is invalid
+     */
+    public KeysetPage.Page<AuraGeneralMetrics> findPage(String jsonQuery, String sortSpec, Integer pageSize,
+                                                        String cursor) {
+        KeysetPage.Sort sort = KeysetPage.Sort.parse(sortSpec, QUERY_SORT);
+        String queryJson = jsonQuery == null || jsonQuery.isBlank() ? "{}" : jsonQuery;
+        String fingerprint = KeysetPage.fingerprint(queryJson, sort);
+        int size = pageSize(pageSize);
+
+        Document filter;
+        try {
+            filter = Document.parse(queryJson);
+        } catch (Exception e) {
+            throw new RuntimeException("Error executing query: " + e.getMessage(), e);
+        }
+        MetricsResultCache.Scope scope = MetricsResultCache.scopeOf(filter);
+        Document userFilter = filter;
+        if (cursor != null && !cursor.isBlank()) {
+            filter = KeysetPage.and(filter, KeysetPage.after(sort, KeysetPage.decode(cursor, sort, fingerprint)));
+        }
+
+        Document pageFilter = filter;
+        indexService.record(userFilter, sort.toDocument());
+        List<Document> cachedRows = cached(MetricsResultCache.key("page", pageFilter, sort.toDocument(), size + 1), scope, () -> {
+            BasicQuery query = new BasicQuery(pageFilter);
+            query.setSortObject(sort.toDocument());
+            query.limit(size + 1);
+            return mongoTemplate.find(query, Document.class, COLLECTION);
+        });
+        KeysetPage.Page<Document> page = KeysetPage.page(cachedRows, size, sort, fingerprint);
+        List<AuraGeneralMetrics> pageRows = page.rows().stream()
+                .map(row -> mongoTemplate.getConverter().read(AuraGeneralMetrics.class, row))
+                .toList();
+        return new KeysetPage.Page<>(pageRows, page.nextCursor());
+    }
+
+    /**
+     * Read one page of a JSON-based aggregation pipeline with keyset pagination. The keyset condition,
+     * sort and limit are appended to the pipeline, so the rows are ordered by the sort spec and not by any
+     * $sort in the pipeline
+     * @param pipelineJson JSON string representing MongoDB aggregation pipeline
+     * @param sortSpec Sort field and direction ("field", "field:desc" or "-field"), default _id ascending
+     * @param pageSize Requested page size, defaulting to aura.metrics.page.default-size and capped at
+     *                 aura.metrics.page.max-size
+     * @param cursor Continuation token from the previous page, or null for the first page
+     * @return The page and the token for the next one
+     * @throws IllegalArgumentException if the sort spec or cursor is invalid, or the pipeline drops _id
+     */
+    public KeysetPage.Page<Document> aggregatePage(String pipelineJson, String sortSpec, Integer pageSize,
+                                                   String cursor) {
+        KeysetPage.Sort sort = KeysetPage.Sort.parse(sortSpec, AGGREGATION_SORT);
+        String fingerprint = KeysetPage.fingerprint(pipelineJson, sort);
+        int size = pageSize(pageSize);
+
+        List<Document> pipeline = new ArrayList<>(parsePipeline(pipelineJson));
+        if (cursor != null && !cursor.isBlank()) {
+            pipeline.add(new Document("$match", KeysetPage.after(sort, KeysetPage.decode(cursor, sort, fingerprint))));
+        }
+        pipeline.add(new Document("$sort", sort.toDocument()));
+        pipeline.add(new Document("$limit", size + 1));
+        indexService.recordPipeline(pipeline);
+        List<Document> rows;
+        try {
+            rows = cached(MetricsResultCache.key("aggregation", pipeline),
+                    MetricsResultCache.scopeOfPipeline(pipeline), () -> mongoTemplate.getCollection(COLLECTION)
+                            .aggregate(pipeline)
+                            .allowDiskUse(true)
+                            .into(new ArrayList<>()));
         } catch (Exception e) {
             throw new RuntimeException("Error executing aggregation pipeline: " + e.getMessage(), e);
         }
+        return KeysetPage.page(rows, size, sort, fingerprint);
+    }
+
+    private int pageSize(Integer requested) {
+        if (requested == null || requested <= 0) {
+            return defaultPageSize;
+        }
+        return Math.min(requested, maxPageSize);
+    }
+
+    /**
+     * Read through the result cache
+     * @param key Canonical key of the read, from {@link MetricsResultCache#key}
+     * @param scope Circles and service types the read is limited to, for invalidation
+     * @param read Runs the read against MongoDB on a miss
+     * @return The rows, unmodifiable
+     */
+    private <T> List<T> cached(String key, MetricsResultCache.Scope scope, Supplier<List<T>> read) {
+        if (!resultCacheEnabled) {
+            return read.get();
+        }
+        List<T> rows = resultCache.get(key);
+        if (rows != null) {
+            return rows;
+        }
+        long version = resultCache.version();
+        rows = List.copyOf(read.get());
+        resultCache.put(key, rows, weigh(rows), scope, version);
+        return rows;
+    }
+
+    /**
+     * Review a query with the cost guard through the result cache. The decision is cached next to the
+     * query's results, under the same scope, so a repeated query skips the explain and count round trips
+     * until a write it could see drops it (or the entry expires, as the collection grows elsewhere)
+     * @param filter Query filter
+     * @param review Explains the query and reviews it on a miss
+     */
+    public QueryCostGuard.Decision reviewQuery(Document filter, Supplier<QueryCostGuard.Decision> review) {
+        return cachedDecision(MetricsResultCache.key("guard-query", filter), MetricsResultCache.scopeOf(filter),
+                review);
+    }
+
+    /**
+     * {@link #reviewQuery} for an aggregation pipeline
+     */
+    public QueryCostGuard.Decision reviewPipeline(List<Document> pipeline, Supplier<QueryCostGuard.Decision> review) {
+        return cachedDecision(MetricsResultCache.key("guard-aggregation", pipeline),
+                MetricsResultCache.scopeOfPipeline(pipeline), review);
+    }
+
+    private QueryCostGuard.Decision cachedDecision(String key, MetricsResultCache.Scope scope,
+                                                   Supplier<QueryCostGuard.Decision> review) {
+        if (!resultCacheEnabled) {
+            return review.get();
+        }
+        List<QueryCostGuard.Decision> cachedDecision = resultCache.get(key);
+        if (cachedDecision != null) {
+            return cachedDecision.get(0);
+        }
+        long version = resultCache.version();
+        QueryCostGuard.Decision decision = review.get();
+        resultCache.put(key, List.of(decision), 2L * decision.toString().length() + ROW_OVERHEAD_BYTES, scope,
+                version);
+        return decision;
+    }
+
+    /**
+     * Estimated memory held by cached rows: two bytes per character of their JSON plus a per-row allowance.
+     * Counting stops once the rows are too big to be cached anyway
+     */
+    private long weigh(List<?> rows) {
+        long bytes = 0;
+        for (Object row : rows) {
+            bytes += 2L * toDocument(row).toJson().length() + ROW_OVERHEAD_BYTES;
+            if (!resultCache.fits(bytes)) {
+                break;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Drop the cached results that writes of these documents could change
+     */
+    private void invalidateResults(List<AuraGeneralMetrics> written) {
+        if (resultCacheEnabled) {
+            resultCache.invalidate(written.stream()
+                    .map(metrics -> new MetricsResultCache.Write(metrics.getCircle(), metrics.getServiceType()))
+                    .toList());
+        }
+    }
+
+    private void invalidateDocuments(List<Document> written) {
+        if (resultCacheEnabled) {
+            resultCache.invalidate(written.stream()
+                    .map(document -> new MetricsResultCache.Write(
+                            document.get("circle", String.class), document.get("service_type", String.class)))
+                    .toList());
+        }
+    }
+
+    /**
+     * Drop every cached result, e.g. after duplicates were removed
+     * @return Number of entries dropped
+     */
+    public int invalidateAllResults() {
+        return resultCache.invalidateAll();
+    }
+
+    /**
+     * Get result cache statistics
+     * @return Map of entries, bytes held, hit ratio, evictions and invalidations
+     */
+    public Map<String, Object> getResultCacheStats() {
+        Map<String, Object> stats = new HashMap<>(resultCache.getStats());
+        stats.put("enabled", resultCacheEnabled);
+        return stats;
     }
 
     /**
      * Parse JSON pipeline string to list of Documents
      */
-    private List<Document> parsePipeline(String pipelineJson) {
+    public List<Document> parsePipeline(String pipelineJson) {
         List<Document> pipeline = new java.util.ArrayList<>();
         try {
             // Parse as array and convert to list of Documents
@@ -102,11 +505,87 @@ public class AuraGeneralMetricsService {
     }
 
     /**
-     * Get all metrics
-     * @return List of all AuraGeneralMetrics documents
+     * Convert a query or aggregation result row to a Document with the stored field names
+     * @param row An AuraGeneralMetrics entity or an aggregation result Document
+     * @return The row as a Document
      */
-    public List<AuraGeneralMetrics> getAllMetrics() {
-        return repository.findAll();
+    public Document toDocument(Object row) {
+        if (row instanceof Document document) {
+            return document;
+        }
+        Document document = new Document();
+        mongoTemplate.getConverter().write(row, document);
+        document.remove("_class");
+        return document;
+    }
+
+    /**
+     * Get the distinct values of a text field
+     * @param field Stored field name, e.g. "circle"
+     * @return List of distinct values
+     */
+    public List<String> getDistinctValues(String field) {
+        return mongoTemplate.findDistinct(new Query(), field, "auraGeneralMetrics", String.class);
+    }
+
+    /**
+     * Walk the auraGeneralMetrics collection with a cursor, handing each document to {@code sink} as it
+     * arrives, so memory use depends on the batch size and not on the collection size
+     * @param fields Stored field names to return, or empty for every field
+     * @param from Lower bound (inclusive) on kpi_timestamp, or null
+     * @param to Upper bound (exclusive) on kpi_timestamp, or null
+     * @param batchSize Documents fetched per round trip
+     * @param sink Receives every document, in natural order
+     * @return Number of documents streamed
+     * @throws IOException if the sink fails (e.g. the client went away); the cursor is closed
+     */
+    public long streamMetrics(List<String> fields, LocalDateTime from, LocalDateTime to, int batchSize,
+                              DocumentSink sink) throws IOException {
+        Document filter = new Document();
+        if (from != null || to != null) {
+            Document range = new Document();
+            if (from != null) {
+                range.put("$gte", toDate(from));
+            }
+            if (to != null) {
+                range.put("$lt", toDate(to));
+            }
+            filter.put("kpi_timestamp", range);
+        }
+
+        Document projection = new Document();
+        if (fields.isEmpty()) {
+            projection.put("_class", 0);
+        } else {
+            fields.forEach(field -> projection.put(field, 1));
+        }
+
+        long count = 0;
+        try (MongoCursor<Document> cursor = mongoTemplate.getCollection(COLLECTION).find(filter)
+                .projection(projection)
+                .batchSize(batchSize)
+                .cursor()) {
+            while (cursor.hasNext()) {
+                sink.accept(cursor.next());
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Receiver of streamed documents
+     */
+    @FunctionalInterface
+    public interface DocumentSink {
+        void accept(Document document) throws IOException;
+    }
+
+    /**
+     * kpi_timestamp values are stored as dates in the server's time zone, as Spring Data converts LocalDateTime
+     */
+    private static Date toDate(LocalDateTime value) {
+        return Date.from(value.atZone(ZoneId.systemDefault()).toInstant());
     }
 
     /**
@@ -119,12 +598,280 @@ public class AuraGeneralMetricsService {
     }
 
     /**
-     * Save or update metrics
+     * Store samples from a JSON array or NDJSON stream as unordered bulk writes of {@code batchSize}
+     * documents. Samples are parsed as they are read, so only one batch is held in memory whatever the
+     * size of the request, and a failed write does not stop the rest of its batch. Samples are upserted on
+     * their natural key (see {@link MetricsUpserts}), so sending a sample again updates it instead of adding
+     * a copy.
+     * @param in The request body
+     * @param ndjson true for one JSON object per line, false for a JSON array
+     * @param batchSize Requested batch size, defaulting to aura.metrics.ingest.batch-size and capped at
+     *                  aura.metrics.ingest.max-batch-size
+     * @return Map of received, inserted, updated (already stored) and failed counts, the samples that could
+     * not be read, one report per batch and, if malformed JSON ended the input early, why
+     * @throws IOException if the request body cannot be read
+     */
+    public Map<String, Object> bulkIngest(InputStream in, boolean ndjson, Integer batchSize) throws IOException {
+        int size = batchSize == null || batchSize <= 0 ? ingestBatchSize : Math.min(batchSize, ingestMaxBatchSize);
+        List<MetricsRecordReader.Record> batch = new ArrayList<>(size);
+        List<Map<String, Object>> batches = new ArrayList<>();
+        List<Map<String, Object>> invalid = new ArrayList<>();
+        long received = 0;
+        long invalidCount = 0;
+        long inserted = 0;
+        long updated = 0;
+        String aborted = null;
+
+        try (MetricsRecordReader reader = new MetricsRecordReader(in, ndjson)) {
+            MetricsRecordReader.Record record;
+            while ((record = reader.next()) != null) {
+                received++;
+                if (record.error() != null) {
+                    invalidCount++;
+                    if (invalid.size() < MAX_REPORTED_ERRORS) {
+                        invalid.add(ingestError(record.index(), null, record.error()));
+                    }
+                    continue;
+                }
+                batch.add(record);
+                if (batch.size() == size) {
+                    Map<String, Object> report = writeBatch(batch, batches);
+                    inserted += (long) report.get("inserted");
+                    updated += (long) report.get("updated");
+                    batch.clear();
+                }
+            }
+        } catch (JsonProcessingException e) {
+            aborted = "Malformed JSON after " + received + " records: " + e.getOriginalMessage();
+        }
+        if (!batch.isEmpty()) {
+            Map<String, Object> report = writeBatch(batch, batches);
+            inserted += (long) report.get("inserted");
+            updated += (long) report.get("updated");
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("received", received);
+        result.put("inserted", inserted);
+        result.put("updated", updated);
+        result.put("failed", received - inserted - updated);
+        result.put("invalid", invalidCount);
+        result.put("invalidRecords", invalid);
+        result.put("batchSize", size);
+        result.put("batches", batches);
+        if (aborted != null) {
+            result.put("aborted", aborted);
+        }
+        return result;
+    }
+
+    /**
+     * Store one batch with an unordered bulk write and report on it
+     * @return The batch's report, added to {@code reports}
+     */
+    private Map<String, Object> writeBatch(List<MetricsRecordReader.Record> batch, List<Map<String, Object>> reports) {
+        List<WriteModel<Document>> writes = new ArrayList<>(batch.size());
+        for (MetricsRecordReader.Record record : batch) {
+            Document document = new Document();
+            mongoTemplate.getConverter().write(record.metrics(), document);
+            writes.add(MetricsUpserts.writeModel(document));
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("batch", reports.size());
+        report.put("firstRecord", batch.get(0).index());
+        report.put("lastRecord", batch.get(batch.size() - 1).index());
+        report.put("size", batch.size());
+        List<Map<String, Object>> errors = new ArrayList<>();
+        BulkWriteResult result = null;
+        try {
+            result = mongoTemplate.getCollection(COLLECTION).bulkWrite(writes, new BulkWriteOptions().ordered(false));
+        } catch (MongoBulkWriteException e) {
+            result = e.getWriteResult();
+            for (BulkWriteError error : e.getWriteErrors()) {
+                if (errors.size() < MAX_REPORTED_ERRORS) {
+                    errors.add(ingestError(batch.get(error.getIndex()).index(), error.getCode(), error.getMessage()));
+                }
+            }
+        } catch (RuntimeException e) {
+            // The whole batch failed, e.g. the connection was lost
+            report.put("error", e.getMessage());
+        }
+        long inserted = result == null ? 0 : MetricsUpserts.inserted(result);
+        long updated = result == null ? 0 : MetricsUpserts.updated(result);
+        report.put("inserted", inserted);
+        report.put("updated", updated);
+        report.put("failed", batch.size() - inserted - updated);
+        report.put("errors", errors);
+        reports.add(report);
+
+        if (updated > 0) {
+            // An upsert that matched may have moved a stored sample out of its previous circle/service_type,
+            // which only a read before the write could tell
+            invalidateAllResults();
+        } else {
+            invalidateResults(batch.stream().map(MetricsRecordReader.Record::metrics).toList());
+        }
+        return report;
+    }
+
+    private static Map<String, Object> ingestError(int record, Integer code, String message) {
+        Map<String, Object> error = new LinkedHashMap<>();
+        error.put("record", record);
+        if (code != null) {
+            error.put("code", code);
+        }
+        error.put("message", message);
+        return error;
+    }
+
+    /**
+     * Whether new metrics go through the write-behind buffer
+     */
+    public boolean isWriteBehindEnabled() {
+        return writeBuffer != null;
+    }
+
+    /**
+     * Get write-behind buffer statistics
+     * @return Map of queued documents, committed/failed/rejected counters and batch sizes
+     */
+    public Map<String, Object> getWriteBufferStats() {
+        Map<String, Object> stats = writeBuffer != null ? new HashMap<>(writeBuffer.getStats()) : new HashMap<>();
+        stats.put("enabled", writeBuffer != null);
+        return stats;
+    }
+
+    /**
+     * Save new metrics through the write-behind buffer, if enabled
+     * New metrics are committed with others in the next batch; updates are written directly, as they replace
+     * a document that may be in cached results. New metrics are upserted on their natural key, so if the
+     * sample is already stored that document is updated and keeps its own id.
+     * @param metrics AuraGeneralMetrics document to save
+     * @param waitForCommit Whether to commit the buffer now and return once the document is written, rather
+     *                      than as soon as it is queued
+     * @return The metrics with the id they are stored under, or with no id if they were only queued: until
+     * the batch is written it is not known whether they update a stored sample
+     * @throws java.util.concurrent.RejectedExecutionException if the buffer stayed full
+     * @throws IllegalStateException if the document was not written, or not within
+     * aura.metrics.write-behind.sync-timeout-ms
+     */
+    public AuraGeneralMetrics saveMetrics(AuraGeneralMetrics metrics, boolean waitForCommit) {
+        if (writeBuffer == null || metrics.getId() != null) {
+            return saveMetrics(metrics);
+        }
+        // The id the document is inserted with if its natural key is not stored yet
+        metrics.setId(new ObjectId().toHexString());
+        Document document = new Document();
+        mongoTemplate.getConverter().write(metrics, document);
+        CompletableFuture<Document> committed = writeBuffer.offer(document, waitForCommit);
+        if (!waitForCommit) {
+            metrics.setId(null);
+            return metrics;
+        }
+        try {
+            Document stored = committed.get(writeBehindSyncTimeoutMs, TimeUnit.MILLISECONDS);
+            Object id = stored.get("_id");
+            metrics.setId(id instanceof ObjectId objectId ? objectId.toHexString() : String.valueOf(id));
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause().getMessage(), e.getCause());
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Metrics for site " + metrics.getSiteId() + " not committed within "
+                    + writeBehindSyncTimeoutMs + " ms; they remain queued");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for metrics for site " + metrics.getSiteId());
+        }
+        return metrics;
+    }
+
+    /**
+     * Write a batch from the write-behind buffer with an unordered bulk upsert. A document that updated a
+     * sample already stored gets that sample's _id, so whoever waits for it sees the id it is stored under
+     * @return Error message by position, for the documents that were not written
+     */
+    private Map<Integer, String> writeBuffered(List<Document> batch) {
+        List<WriteModel<Document>> writes = new ArrayList<>(batch.size());
+        batch.forEach(document -> writes.add(MetricsUpserts.writeModel(document)));
+        Map<Integer, String> errors = new HashMap<>();
+        BulkWriteResult result;
+        try {
+            result = mongoTemplate.getCollection(COLLECTION).bulkWrite(writes, new BulkWriteOptions().ordered(false));
+        } catch (MongoBulkWriteException e) {
+            result = e.getWriteResult();
+            e.getWriteErrors().forEach(error -> errors.put(error.getIndex(), error.getMessage()));
+        }
+        List<Integer> matched = MetricsUpserts.matched(batch, result, errors.keySet());
+        if (matched.isEmpty()) {
+            invalidateDocuments(batch);
+        } else {
+            resolveStoredIds(matched.stream().map(batch::get).toList());
+            // As in writeBatch: the updated samples may have left their previous scope
+            invalidateAllResults();
+        }
+        return errors;
+    }
+
+    /**
+     * Replace the _id of documents that updated a stored sample with the one it is stored under, read back
+     * by natural key in one query
+     */
+    private void resolveStoredIds(List<Document> documents) {
+        Map<Document, Document> byKey = new HashMap<>();
+        documents.forEach(document -> byKey.put(MetricsUpserts.naturalKey(document), document));
+        Document projection = new Document("_id", 1);
+        MetricsIndexService.NATURAL_KEY.keySet().forEach(field -> projection.append(field, 1));
+        Document filter = new Document("$or", new ArrayList<>(byKey.keySet()));
+        for (Document stored : mongoTemplate.getCollection(COLLECTION).find(filter).projection(projection)) {
+            Document document = byKey.get(MetricsUpserts.naturalKey(stored));
+            if (document != null) {
+                document.put("_id", stored.get("_id"));
+            }
+        }
+    }
+
+    /**
+     * Save or update metrics, writing directly. New metrics with a site_id and kpi_timestamp are upserted on
+     * their natural key, so a sample sent twice is stored once
      * @param metrics AuraGeneralMetrics document to save
      * @return Saved AuraGeneralMetrics document
      */
     public AuraGeneralMetrics saveMetrics(AuraGeneralMetrics metrics) {
-        return repository.save(metrics);
+        if (metrics.getId() == null && metrics.getSiteId() != null && metrics.getKpiTimestamp() != null) {
+            return upsertMetrics(metrics);
+        }
+        // An update can move a document out of the results it was in, as well as into new ones
+        List<AuraGeneralMetrics> written = new ArrayList<>();
+        if (resultCacheEnabled && metrics.getId() != null) {
+            repository.findById(metrics.getId()).ifPresent(written::add);
+        }
+        AuraGeneralMetrics saved = repository.save(metrics);
+        written.add(saved);
+        invalidateResults(written);
+        return saved;
+    }
+
+    /**
+     * Upsert new metrics on their natural key in one round trip; the document it replaces, if any, gives the
+     * id and the results to invalidate
+     */
+    private AuraGeneralMetrics upsertMetrics(AuraGeneralMetrics metrics) {
+        metrics.setId(new ObjectId().toHexString());
+        Document document = new Document();
+        mongoTemplate.getConverter().write(metrics, document);
+        Document previous = mongoTemplate.getCollection(COLLECTION).findOneAndUpdate(
+                MetricsUpserts.naturalKey(document), MetricsUpserts.update(document),
+                new FindOneAndUpdateOptions().upsert(true).returnDocument(ReturnDocument.BEFORE));
+
+        List<AuraGeneralMetrics> written = new ArrayList<>();
+        if (previous != null) {
+            AuraGeneralMetrics existing = mongoTemplate.getConverter().read(AuraGeneralMetrics.class, previous);
+            metrics.setId(existing.getId());
+            written.add(existing);
+        }
+        written.add(metrics);
+        invalidateResults(written);
+        return metrics;
     }
 
     /**
@@ -132,7 +879,9 @@ public class AuraGeneralMetricsService {
      * @param id Document ID to delete
      */
     public void deleteMetrics(String id) {
+        Optional<AuraGeneralMetrics> existing = resultCacheEnabled ? repository.findById(id) : Optional.empty();
         repository.deleteById(id);
+        existing.ifPresent(metrics -> invalidateResults(List.of(metrics)));
     }
 
     /**
@@ -0,0 +1,150 @@
+package com.jio.jcpaura.service;
+
+import org.bson.Document;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded in-process memory of conversations: the last answered turn of each session (question,
+ * entity, query and result rows), so follow-up questions can be answered from it.
+ * Sessions are evicted least-recently-used once there are more than {@code maxSessions} or their rows
+ * add up to more than {@code maxTotalRows}, and expire after {@code idleTtlMillis} without a question.
+ * A turn with more than {@code maxRowsPerSession} rows is kept without its rows.
+ */
+public class ConversationStore {
+
+    /**
+     * One answered question
+     * @param rows Result rows, or null if there were too many to keep
+     */
+    public record Turn(String question, String entityIdentification, String mongoQuery, List<Document> rows) {
+
+        int rowCount() {
+            return rows != null ? rows.size() : 0;
+        }
+    }
+
+    private record Entry(Turn turn, long lastAccess) {
+    }
+
+    private final int maxSessions;
+    private final int maxRowsPerSession;
+    private final long maxTotalRows;
+    private final long idleTtlMillis;
+    private final LongSupplier clock;
+    private final LinkedHashMap<String, Entry> sessions = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalRows;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+
+    public ConversationStore(int maxSessions, int maxRowsPerSession, long maxTotalRows, long idleTtlMillis) {
+        this(maxSessions, maxRowsPerSession, maxTotalRows, idleTtlMillis, System::currentTimeMillis);
+    }
+
+    public ConversationStore(int maxSessions, int maxRowsPerSession, long maxTotalRows, long idleTtlMillis,
+                             LongSupplier clock) {
+        this.maxSessions = maxSessions;
+        this.maxRowsPerSession = maxRowsPerSession;
+        this.maxTotalRows = maxTotalRows;
+        this.idleTtlMillis = idleTtlMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * Look up the last turn of a session
+     * @return The turn, or null if the session is unknown, evicted or expired
+     */
+    public synchronized Turn get(String sessionId) {
+        Entry entry = sessions.get(sessionId);
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        if (clock.getAsLong() - entry.lastAccess() > idleTtlMillis) {
+            remove(sessionId);
+            expirations.incrementAndGet();
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.turn();
+    }
+
+    /**
+     * Whether a result of {@code rows} rows would be kept with its rows
+     */
+    public boolean keepsRows(int rows) {
+        return rows <= maxRowsPerSession;
+    }
+
+    /**
+     * Replace the last turn of a session, evicting least recently used sessions to stay within the limits
+     */
+    public synchronized void put(String sessionId, Turn turn) {
+        if (maxSessions <= 0) {
+            return;
+        }
+        if (turn.rows() != null && !keepsRows(turn.rows().size())) {
+            turn = new Turn(turn.question(), turn.entityIdentification(), turn.mongoQuery(), null);
+        }
+        remove(sessionId);
+        sessions.put(sessionId, new Entry(turn, clock.getAsLong()));
+        totalRows += turn.rowCount();
+
+        Iterator<Map.Entry<String, Entry>> eldest = sessions.entrySet().iterator();
+        while ((sessions.size() > maxSessions || totalRows > maxTotalRows) && eldest.hasNext()) {
+            Map.Entry<String, Entry> session = eldest.next();
+            if (session.getKey().equals(sessionId)) {
+                continue;
+            }
+            totalRows -= session.getValue().turn().rowCount();
+            eldest.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    /**
+     * Forget a session
+     * @return true if it existed
+     */
+    public synchronized boolean remove(String sessionId) {
+        Entry removed = sessions.remove(sessionId);
+        if (removed == null) {
+            return false;
+        }
+        totalRows -= removed.turn().rowCount();
+        return true;
+    }
+
+    public synchronized int size() {
+        return sessions.size();
+    }
+
+    /**
+     * Get session statistics
+     * @return Map of sessions and rows held, limits, hit/miss counters, evictions and expirations
+     */
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("sessions", sessions.size());
+        stats.put("rows", totalRows);
+        stats.put("maxSessions", maxSessions);
+        stats.put("maxRowsPerSession", maxRowsPerSession);
+        stats.put("maxTotalRows", maxTotalRows);
+        stats.put("idleTtlSeconds", idleTtlMillis / 1000);
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("evictions", evictions.get());
+        stats.put("expirations", expirations.get());
+        return stats;
+    }
+}
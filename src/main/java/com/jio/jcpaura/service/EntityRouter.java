@@ -0,0 +1,190 @@
+package com.jio.jcpaura.service;
+
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Local replacement for the entity identification step.
+ * Every registered entity is described by its collection name, its stored field names (read from the
+ * {@link Field} annotations of the entity class) and keywords/synonyms for those fields. A question is
+ * routed locally when exactly one entity matches at least one keyword; when none or several match,
+ * {@link #route} returns null and the caller falls back to the model.
+ */
+public class EntityRouter {
+
+    /**
+     * Field-name parts too generic to identify a field on their own
+     */
+    private static final Set<String> GENERIC_PARTS = Set.of("avg", "pct", "ms", "mbps", "id", "kpi", "rate", "score", "status", "type");
+
+    /**
+     * A routable entity
+     * @param collection MongoDB collection name
+     * @param description Short description used in the routing answer
+     * @param fieldKeywords Stored field name to the words that refer to it
+     * @param fieldTypes Stored field name to its Java type
+     * @param entityKeywords Words that refer to the entity as a whole
+     */
+    public record Entity(String collection, String description, Map<String, Set<String>> fieldKeywords,
+                         Map<String, Class<?>> fieldTypes, Set<String> entityKeywords) {
+    }
+
+    /**
+     * Routing decision
+     * @param collection The chosen collection
+     * @param matchedFields Fields the question refers to, in schema order
+     * @param identification Text in the same form as the model's step-1 answer
+     */
+    public record Route(String collection, List<String> matchedFields, String identification) {
+    }
+
+    private final List<Entity> entities;
+
+    public EntityRouter(List<Entity> entities) {
+        this.entities = entities;
+    }
+
+    /**
+     * Build an entity description from a mapped class.
+     * Each {@link Field} name contributes itself (underscores as spaces) and its specific parts
+     * ("avg_latency_ms" gives "avg latency ms" and "latency") as keywords, plus the given synonyms.
+     * @param type Class annotated with {@link Document}
+     * @param description Short description of what the collection holds
+     * @param synonyms Extra keywords per stored field name
+     * @param entityKeywords Words that refer to the collection as a whole
+     */
+    public static Entity describe(Class<?> type, String description, Map<String, List<String>> synonyms,
+                                  List<String> entityKeywords) {
+        Document document = type.getAnnotation(Document.class);
+        String collection = document != null && !document.collection().isEmpty()
+                ? document.collection() : type.getSimpleName();
+
+        Map<String, Set<String>> fieldKeywords = new LinkedHashMap<>();
+        Map<String, Class<?>> fieldTypes = new LinkedHashMap<>();
+        for (java.lang.reflect.Field field : type.getDeclaredFields()) {
+            Field mapped = field.getAnnotation(Field.class);
+            if (mapped == null) {
+                continue;
+            }
+            String name = mapped.value().isEmpty() ? field.getName() : mapped.value();
+            Set<String> keywords = new LinkedHashSet<>();
+            keywords.add(name.replace('_', ' '));
+            for (String part : name.split("_")) {
+                if (!GENERIC_PARTS.contains(part)) {
+                    keywords.add(part);
+                }
+            }
+            for (String synonym : synonyms.getOrDefault(name, List.of())) {
+                keywords.add(synonym.toLowerCase());
+            }
+            fieldKeywords.put(name, keywords);
+            fieldTypes.put(name, field.getType());
+        }
+
+        Set<String> ownKeywords = new LinkedHashSet<>(entityKeywords);
+        ownKeywords.add(collection.toLowerCase());
+        return new Entity(collection, description, fieldKeywords, fieldTypes, ownKeywords);
+    }
+
+    /**
+     * Route a question to an entity without calling the model
+     * @param message The user's question
+     * @return The route, or null if no entity or more than one entity matches
+     */
+    public Route route(String message) {
+        String text = " " + String.join(" ", words(message)) + " ";
+
+        Route match = null;
+        for (Entity entity : entities) {
+            List<String> matchedFields = matchedFields(entity, text);
+            if (matchedFields.isEmpty() && !mentionsAny(text, entity.entityKeywords())) {
+                continue;
+            }
+            if (match != null) {
+                return null;
+            }
+            match = new Route(entity.collection(), matchedFields, identification(entity, matchedFields));
+        }
+        return match;
+    }
+
+    /**
+     * Most likely entity for a question that {@link #route} could not settle: the one with the most matched
+     * fields, the first registered on a tie. Used to start the query builder speculatively while the model
+     * identifies the entity.
+     * @param message The user's question
+     * @return The guessed route, or null if no entity is registered
+     */
+    public Route guess(String message) {
+        String text = " " + String.join(" ", words(message)) + " ";
+
+        Route best = null;
+        for (Entity entity : entities) {
+            List<String> matchedFields = matchedFields(entity, text);
+            if (best == null || matchedFields.size() > best.matchedFields().size()) {
+                best = new Route(entity.collection(), matchedFields, identification(entity, matchedFields));
+            }
+        }
+        return best;
+    }
+
+    /**
+     * The registered collection an entity identification names
+     * @param identification Step 1 output
+     * @return The collection, or null if it names none or several
+     */
+    public String collectionNamed(String identification) {
+        String named = null;
+        for (Entity entity : entities) {
+            if (identification != null && identification.contains(entity.collection())) {
+                if (named != null) {
+                    return null;
+                }
+                named = entity.collection();
+            }
+        }
+        return named;
+    }
+
+    private static List<String> matchedFields(Entity entity, String text) {
+        List<String> matchedFields = new ArrayList<>();
+        entity.fieldKeywords().forEach((field, keywords) -> {
+            if (mentionsAny(text, keywords)) {
+                matchedFields.add(field);
+            }
+        });
+        return matchedFields;
+    }
+
+    private static String identification(Entity entity, List<String> matchedFields) {
+        String fields = matchedFields.isEmpty() ? "" : " (fields: " + String.join(", ", matchedFields) + ")";
+        return "Entity: " + entity.collection() + " - The user is asking about " + entity.description() + fields + ".";
+    }
+
+    /**
+     * Whether the space-padded text contains a keyword as whole word(s), allowing a plural "s"
+     */
+    private static boolean mentionsAny(String text, Set<String> keywords) {
+        for (String keyword : keywords) {
+            String phrase = String.join(" ", words(keyword));
+            if (!phrase.isEmpty() && (text.contains(" " + phrase + " ") || text.contains(" " + phrase + "s "))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<String> words(String text) {
+        return Arrays.stream(text.toLowerCase().split("[^a-z0-9]+"))
+                .filter(word -> !word.isEmpty())
+                .toList();
+    }
+}
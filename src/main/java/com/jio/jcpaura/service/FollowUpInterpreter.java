@@ -0,0 +1,422 @@
+package com.jio.jcpaura.service;
+
+import org.bson.Document;
+import org.bson.json.JsonMode;
+import org.bson.json.JsonWriterSettings;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Recognizes follow-up questions that only re-filter, re-sort or re-slice the previous answer of a
+ * conversation, so they can be answered from that answer's rows:
+ * - filter: "and what about Gujarat?", "only the critical ones", "just those with latency above 50 ms"
+ * - sort: "sort that by latency", "order them by throughput descending"
+ * - slice: "top 5", "bottom 3 by availability", "first 10"
+ * Filters are compiled with the {@link QueryTemplateMatcher} lookup and threshold templates, so they use
+ * the fast path's vocabulary. A question must open with (or contain) a follow-up marker, and every word must
+ * be explained; anything else returns null and the question goes through the pipeline.
+ */
+public class FollowUpInterpreter {
+
+    /**
+     * Phrases that mark a question as referring to the previous answer
+     */
+    private static final Pattern LEADING_MARKER = Pattern.compile(
+            "^ (and|but|what about|how about|now|then|only|just|same for|sort|order|rank|top|bottom|first|last|filter|of those|of these|among those|among them) ");
+
+    private static final Pattern REFERENCE_MARKER = Pattern.compile(" (those|these|them|ones|instead) ");
+
+    /**
+     * Words that carry no meaning besides marking the follow-up
+     */
+    private static final Set<String> FOLLOW_UP_WORDS = Set.of(
+            "and", "but", "what", "about", "how", "now", "then", "only", "just", "same", "for", "filter", "of",
+            "those", "these", "them", "ones", "one", "instead", "among", "the", "that", "it", "results", "rows",
+            "sites", "show", "me", "please", "with", "to", "in", "list", "give", "can", "you", "again");
+
+    private static final Pattern SLICE = Pattern.compile(" (top|first|bottom|last|limit to|only show|show only) (\\d{1,4}) ");
+
+    private static final Pattern SORT = Pattern.compile(
+            " (sort|sorted|order|ordered|rank|ranked)(?: (?:them|that|those|these|it|the results|results|the rows|rows))? by ");
+
+    private static final Pattern BY = Pattern.compile(" by ");
+
+    private static final Pattern DIRECTION = Pattern.compile(
+            " (asc|ascending|increasing|lowest first|smallest first|desc|descending|decreasing|highest first|largest first) ");
+
+    private static final JsonWriterSettings QUERY_JSON = JsonWriterSettings.builder()
+            .outputMode(JsonMode.RELAXED)
+            .build();
+
+    /**
+     * What to do to the previous answer's rows
+     * @param filter Conditions to keep rows by (equality, $in, $gt, $gte, $lt, $lte), or null
+     * @param sortField Field to sort by, or null
+     * @param descending Sort direction
+     * @param limit Number of rows to keep after sorting, or null
+     */
+    public record FollowUp(Document filter, String sortField, boolean descending, Integer limit) {
+
+        public FollowUp withoutFilter() {
+            return new FollowUp(null, sortField, descending, limit);
+        }
+
+        /**
+         * @return Short description of the operations, e.g. "filter {"circle": "Gujarat"}, sort by avg_latency_ms descending"
+         */
+        public String describe() {
+            List<String> parts = new ArrayList<>();
+            if (filter != null) {
+                parts.add("filter " + filter.toJson(QUERY_JSON));
+            }
+            if (sortField != null) {
+                parts.add("sort by " + sortField + (descending ? " descending" : " ascending"));
+            }
+            if (limit != null) {
+                parts.add("first " + limit);
+            }
+            return String.join(", ", parts);
+        }
+    }
+
+    private final EntityRouter.Entity entity;
+    private final QueryTemplateMatcher matcher;
+
+    public FollowUpInterpreter(EntityRouter.Entity entity, QueryTemplateMatcher matcher) {
+        this.entity = entity;
+        this.matcher = matcher;
+    }
+
+    /**
+     * Interpret a question as a follow-up of the previous answer
+     * @param message The user's question
+     * @param knownValues Stored field name to the values it takes, used for equality filters
+     * @return The operations, or null if the question is not a follow-up this interpreter can answer
+     */
+    public FollowUp interpret(String message, Map<String, List<String>> knownValues) {
+        String text = normalize(message);
+        if (!LEADING_MARKER.matcher(text).find() && !REFERENCE_MARKER.matcher(text).find()) {
+            return null;
+        }
+
+        Integer limit = null;
+        Boolean descending = null;
+        String sliceWord = null;
+        Matcher slice = SLICE.matcher(text);
+        if (slice.find()) {
+            limit = Integer.parseInt(slice.group(2));
+            sliceWord = slice.group(1);
+            if (sliceWord.equals("top")) {
+                descending = true;
+            } else if (sliceWord.equals("bottom")) {
+                descending = false;
+            }
+            text = cut(text, slice.start(), slice.end());
+        }
+
+        // "sort them by latency", or "top 5 by latency"
+        String sortField = null;
+        Matcher sort = SORT.matcher(text);
+        boolean sorted = sort.find();
+        if (!sorted && limit != null) {
+            sort = BY.matcher(text);
+            sorted = sort.find();
+        }
+        if (sorted) {
+            String keyword = keywordAt(text, sort.end());
+            if (keyword == null) {
+                return null;
+            }
+            sortField = fieldOf(keyword);
+            text = cut(text, sort.start(), sort.end() + keyword.length());
+        }
+
+        Matcher direction = DIRECTION.matcher(text);
+        if (direction.find()) {
+            if (sortField == null) {
+                return null;
+            }
+            String word = direction.group(1);
+            descending = word.startsWith("desc") || word.equals("decreasing") || word.startsWith("highest")
+                    || word.startsWith("largest");
+            text = cut(text, direction.start(), direction.end());
+        }
+
+        Document filter = null;
+        List<String> rest = Arrays.stream(text.trim().split(" +"))
+                .filter(word -> !word.isEmpty() && !FOLLOW_UP_WORDS.contains(word))
+                .toList();
+        if (!rest.isEmpty()) {
+            QueryTemplateMatcher.Match match = matcher.match(String.join(" ", rest), knownValues);
+            if (match == null || match.template().equals("aggregate")) {
+                return null;
+            }
+            filter = Document.parse(match.mongoQuery());
+        }
+
+        if (filter == null && sortField == null && limit == null) {
+            return null;
+        }
+        if (limit != null && sortField == null && (sliceWord.equals("bottom") || sliceWord.equals("last"))) {
+            // "last 5" with no field could mean the latest or the lowest ones
+            return null;
+        }
+        return new FollowUp(filter, sortField, descending != null && descending, limit);
+    }
+
+    /**
+     * Apply the operations to rows: filter, then sort (missing values last), then slice
+     */
+    public static List<Document> apply(FollowUp followUp, List<Document> rows) {
+        List<Document> result = new ArrayList<>();
+        for (Document row : rows) {
+            if (followUp.filter() == null || matches(row, followUp.filter())) {
+                result.add(row);
+            }
+        }
+        if (followUp.sortField() != null && !result.isEmpty()) {
+            String key = resolveKey(result, followUp.sortField());
+            int direction = followUp.descending() ? -1 : 1;
+            result.sort((a, b) -> {
+                Object left = a.get(key);
+                Object right = b.get(key);
+                if (left == null || right == null) {
+                    return left == null ? (right == null ? 0 : 1) : -1;
+                }
+                return direction * compareValues(left, right);
+            });
+        }
+        if (followUp.limit() != null && result.size() > followUp.limit()) {
+            return new ArrayList<>(result.subList(0, followUp.limit()));
+        }
+        return result;
+    }
+
+    /**
+     * Whether filtering needs a new query instead of the previous rows: the previous query already
+     * constrains one of the filtered fields (so the rows cannot contain other values), or the rows do
+     * not carry the field (e.g. grouped aggregation results)
+     */
+    public static boolean needsQuery(String previousQuery, Document filter, List<Document> rows) {
+        Document previousFilter = firstFilter(previousQuery);
+        for (String field : filter.keySet()) {
+            if (previousFilter != null && previousFilter.containsKey(field)) {
+                return true;
+            }
+            if (!rows.isEmpty() && !rows.get(0).containsKey(field)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Add filter conditions to a query, replacing conditions on the same fields: into the filter object,
+     * or into the leading $match stage of a pipeline (one is added if the pipeline does not start with one)
+     * @return The refined query, or null if the query cannot be parsed or uses top-level logical operators
+     */
+    public static String refine(String query, Document filter) {
+        String json = jsonPart(query);
+        if (json == null) {
+            return null;
+        }
+        try {
+            if (json.startsWith("[")) {
+                List<Document> pipeline = new ArrayList<>(parsePipeline(json));
+                Document match = !pipeline.isEmpty() && pipeline.get(0).get("$match") instanceof Document first
+                        ? first : null;
+                if (match == null) {
+                    match = new Document();
+                    pipeline.add(0, new Document("$match", match));
+                }
+                if (!merge(match, filter)) {
+                    return null;
+                }
+                StringBuilder refined = new StringBuilder("[");
+                for (Document stage : pipeline) {
+                    if (refined.length() > 1) {
+                        refined.append(", ");
+                    }
+                    refined.append(stage.toJson(QUERY_JSON));
+                }
+                return refined.append("]").toString();
+            }
+            Document document = Document.parse(json);
+            return merge(document, filter) ? document.toJson(QUERY_JSON) : null;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static boolean merge(Document target, Document filter) {
+        if (target.keySet().stream().anyMatch(key -> key.startsWith("$"))) {
+            return false;
+        }
+        target.putAll(filter);
+        return true;
+    }
+
+    /**
+     * The filter object of a query, or the leading $match of a pipeline
+     */
+    private static Document firstFilter(String query) {
+        String json = jsonPart(query);
+        if (json == null) {
+            return null;
+        }
+        try {
+            if (json.startsWith("[")) {
+                List<Document> pipeline = parsePipeline(json);
+                return !pipeline.isEmpty() && pipeline.get(0).get("$match") instanceof Document match ? match : null;
+            }
+            return Document.parse(json);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static List<Document> parsePipeline(String json) {
+        return Document.parse("{\"pipeline\": " + json + "}").getList("pipeline", Document.class);
+    }
+
+    /**
+     * The JSON object or array in a query as the model returned it (surrounding text dropped)
+     */
+    private static String jsonPart(String query) {
+        if (query == null) {
+            return null;
+        }
+        int start = -1;
+        int end = -1;
+        for (int i = 0; i < query.length(); i++) {
+            if (query.charAt(i) == '{' || query.charAt(i) == '[') {
+                start = i;
+                break;
+            }
+        }
+        for (int i = query.length() - 1; i >= 0; i--) {
+            if (query.charAt(i) == '}' || query.charAt(i) == ']') {
+                end = i;
+                break;
+            }
+        }
+        return start >= 0 && start < end ? query.substring(start, end + 1) : null;
+    }
+
+    private static boolean matches(Document row, Document filter) {
+        for (Map.Entry<String, Object> condition : filter.entrySet()) {
+            Object value = row.get(condition.getKey());
+            if (condition.getValue() instanceof Document operators) {
+                for (Map.Entry<String, Object> operator : operators.entrySet()) {
+                    if (!matchesOperator(value, operator.getKey(), operator.getValue())) {
+                        return false;
+                    }
+                }
+            } else if (!sameValue(value, condition.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean matchesOperator(Object value, String operator, Object operand) {
+        if (operator.equals("$in")) {
+            return operand instanceof List<?> options && options.stream().anyMatch(option -> sameValue(value, option));
+        }
+        if (value == null) {
+            return false;
+        }
+        int comparison = compareValues(value, operand);
+        return switch (operator) {
+            case "$gt" -> comparison > 0;
+            case "$gte" -> comparison >= 0;
+            case "$lt" -> comparison < 0;
+            case "$lte" -> comparison <= 0;
+            default -> false;
+        };
+    }
+
+    private static boolean sameValue(Object value, Object expected) {
+        if (value instanceof Number && expected instanceof Number) {
+            return compareValues(value, expected) == 0;
+        }
+        return value != null && expected != null && value.toString().equalsIgnoreCase(expected.toString());
+    }
+
+    private static int compareValues(Object a, Object b) {
+        if (a instanceof Number left && b instanceof Number right) {
+            return Double.compare(left.doubleValue(), right.doubleValue());
+        }
+        if (a instanceof Date left && b instanceof Date right) {
+            return left.compareTo(right);
+        }
+        return a.toString().compareToIgnoreCase(b.toString());
+    }
+
+    /**
+     * The row key holding a field: the field itself, or an aggregate of it ("avg_avg_latency_ms")
+     */
+    private static String resolveKey(List<Document> rows, String field) {
+        for (String key : rows.get(0).keySet()) {
+            if (key.equals(field)) {
+                return key;
+            }
+        }
+        for (String key : rows.get(0).keySet()) {
+            if (key.endsWith("_" + field)) {
+                return key;
+            }
+        }
+        return field;
+    }
+
+    /**
+     * The longest field keyword (or its plural) starting at {@code position}
+     */
+    private String keywordAt(String text, int position) {
+        String best = null;
+        for (Set<String> keywords : entity.fieldKeywords().values()) {
+            for (String keyword : keywords) {
+                for (String form : List.of(keyword + "s", keyword)) {
+                    if (text.startsWith(form + " ", position) && (best == null || form.length() > best.length())) {
+                        best = form;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    private String fieldOf(String keyword) {
+        for (Map.Entry<String, Set<String>> field : entity.fieldKeywords().entrySet()) {
+            if (field.getValue().contains(keyword)
+                    || (keyword.endsWith("s") && field.getValue().contains(keyword.substring(0, keyword.length() - 1)))) {
+                return field.getKey();
+            }
+        }
+        return null;
+    }
+
+    private static String cut(String text, int start, int end) {
+        return text.substring(0, start) + " " + text.substring(end);
+    }
+
+    /**
+     * Lower-case, keep letters, digits, decimal points, % and comparison signs, pad with spaces
+     */
+    private static String normalize(String text) {
+        String cleaned = text.toLowerCase()
+                .replaceAll("[^a-z0-9.%<>=]+", " ")
+                .replaceAll("(?<!\\d)\\.|\\.(?!\\d)", " ")
+                .replaceAll(" +", " ")
+                .trim();
+        return " " + cleaned + " ";
+    }
+}
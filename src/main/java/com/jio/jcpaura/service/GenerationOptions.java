@@ -0,0 +1,146 @@
+package com.jio.jcpaura.service;
+
+/**
+ * Per-call options for an Ollama generation.
+ * Sampling parameters left null are not sent, so the model's own defaults apply.
+ */
+public class GenerationOptions {
+
+    private Double temperature;
+    private Double topP;
+    private Integer topK;
+    private boolean bypassCache;
+    private RequestPriority priority = RequestPriority.INTERACTIVE;
+    private String operation = "generate";
+    private boolean speculative;
+    private Cancellation cancellation;
+    private Runnable onAdmitted;
+    private ModelCallStats stats;
+
+    /**
+     * Default options: temperature 0.7, top_p 0.9, top_k 40, cache enabled
+     */
+    public static GenerationOptions defaults() {
+        return new GenerationOptions().temperature(0.7).topP(0.9).topK(40);
+    }
+
+    /**
+     * Options for pipeline steps whose output should depend only on the prompt
+     * (entity identification, query building): greedy decoding, so cached answers are exact
+     */
+    public static GenerationOptions deterministic() {
+        return new GenerationOptions().temperature(0.0).topP(0.9).topK(40);
+    }
+
+    public GenerationOptions temperature(Double temperature) {
+        this.temperature = temperature;
+        return this;
+    }
+
+    public GenerationOptions topP(Double topP) {
+        this.topP = topP;
+        return this;
+    }
+
+    public GenerationOptions topK(Integer topK) {
+        this.topK = topK;
+        return this;
+    }
+
+    /**
+     * Skip the completion cache for this call (the fresh result is still stored)
+     */
+    public GenerationOptions bypassCache(boolean bypassCache) {
+        this.bypassCache = bypassCache;
+        return this;
+    }
+
+    /**
+     * Scheduling class used when the model is saturated (default INTERACTIVE)
+     */
+    public GenerationOptions priority(RequestPriority priority) {
+        this.priority = priority;
+        return this;
+    }
+
+    /**
+     * Name the call's latency is tracked under; hedge delays and adaptive timeouts are per operation
+     */
+    public GenerationOptions operation(String operation) {
+        this.operation = operation;
+        return this;
+    }
+
+    /**
+     * Run only if a model slot is free right now: a speculative call never queues, and fails with
+     * {@link OllamaOverloadedException} instead, so it cannot delay calls that are certainly needed
+     */
+    public GenerationOptions speculative(boolean speculative) {
+        this.speculative = speculative;
+        return this;
+    }
+
+    /**
+     * Signal that aborts the call in flight, or keeps it from being sent if it fires while the call waits for a slot
+     */
+    public GenerationOptions cancellation(Cancellation cancellation) {
+        this.cancellation = cancellation;
+        return this;
+    }
+
+    /**
+     * Callback run once the call holds its model slot, just before it is sent; not run on a cache hit
+     */
+    public GenerationOptions onAdmitted(Runnable onAdmitted) {
+        this.onAdmitted = onAdmitted;
+        return this;
+    }
+
+    /**
+     * Holder that receives the token counts and model timings Ollama reports for this call
+     */
+    public GenerationOptions stats(ModelCallStats stats) {
+        this.stats = stats;
+        return this;
+    }
+
+    public Double getTemperature() {
+        return temperature;
+    }
+
+    public Double getTopP() {
+        return topP;
+    }
+
+    public Integer getTopK() {
+        return topK;
+    }
+
+    public boolean isBypassCache() {
+        return bypassCache;
+    }
+
+    public RequestPriority getPriority() {
+        return priority;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public boolean isSpeculative() {
+        return speculative;
+    }
+
+    public Cancellation getCancellation() {
+        return cancellation;
+    }
+
+    public Runnable getOnAdmitted() {
+        return onAdmitted;
+    }
+
+    public ModelCallStats getStats() {
+        return stats;
+    }
+}
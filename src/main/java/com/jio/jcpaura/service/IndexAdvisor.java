@@ -0,0 +1,259 @@
+package com.jio.jcpaura.service;
+
+import org.bson.Document;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Records the shapes of the filters and sorts sent to the metrics collection (which fields are matched
+ * by equality, sorted on, or matched by range) and recommends one compound index per shape, ordered
+ * equality, sort, range, so the index serves the filter and the sort without an in-memory sort.
+ * Only the first {@code maxShapes} distinct shapes are tracked; later ones are only counted.
+ */
+public class IndexAdvisor {
+
+    private static final Set<String> RANGE_OPERATORS = Set.of("$gt", "$gte", "$lt", "$lte", "$ne", "$nin", "$regex",
+            "$exists");
+
+    /**
+     * What an index needs to serve a query
+     * @param equality Fields matched by value or $in, in name order (their order in the index does not matter)
+     * @param sort Sort fields and directions, in sort order
+     * @param range Fields matched by range, in name order
+     */
+    public record Shape(List<String> equality, LinkedHashMap<String, Integer> sort, List<String> range) {
+
+        public boolean isEmpty() {
+            return equality.isEmpty() && sort.isEmpty() && range.isEmpty();
+        }
+
+        /**
+         * The recommended index keys: equality fields, then sort fields, then range fields
+         */
+        public Document indexKeys() {
+            Document keys = new Document();
+            equality.forEach(field -> keys.put(field, 1));
+            sort.forEach((field, direction) -> keys.putIfAbsent(field, direction));
+            range.forEach(field -> keys.putIfAbsent(field, 1));
+            return keys;
+        }
+
+        /**
+         * Whether an index with these keys serves the shape: the recommended fields are a prefix of it, with
+         * the equality fields in any order and the sort directions all the same or all reversed
+         */
+        public boolean isServedBy(Document index) {
+            List<String> fields = new ArrayList<>(index.keySet());
+            Document keys = indexKeys();
+            if (fields.size() < keys.size()) {
+                return false;
+            }
+            if (!new TreeSet<>(fields.subList(0, equality.size())).equals(new TreeSet<>(equality))) {
+                return false;
+            }
+            Boolean reversed = null;
+            List<String> wanted = new ArrayList<>(keys.keySet());
+            for (int i = equality.size(); i < wanted.size(); i++) {
+                String field = wanted.get(i);
+                if (!fields.get(i).equals(field)) {
+                    return false;
+                }
+                Integer direction = sort.get(field);
+                if (direction != null && index.get(field) instanceof Number indexDirection) {
+                    boolean same = indexDirection.intValue() == direction;
+                    if (reversed != null && reversed == same) {
+                        return false;
+                    }
+                    reversed = !same;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return "eq" + equality + " sort" + sort + " range" + range;
+        }
+    }
+
+    private static final class Usage {
+        final Shape shape;
+        final AtomicLong count = new AtomicLong();
+        volatile long lastSeen;
+
+        Usage(Shape shape) {
+            this.shape = shape;
+        }
+    }
+
+    private final int maxShapes;
+    private final LongSupplier clock;
+    private final ConcurrentHashMap<String, Usage> shapes = new ConcurrentHashMap<>();
+
+    private final AtomicLong recorded = new AtomicLong();
+    private final AtomicLong unindexable = new AtomicLong();
+    private final AtomicLong untracked = new AtomicLong();
+
+    public IndexAdvisor(int maxShapes) {
+        this(maxShapes, System::currentTimeMillis);
+    }
+
+    public IndexAdvisor(int maxShapes, LongSupplier clock) {
+        this.maxShapes = maxShapes;
+        this.clock = clock;
+    }
+
+    /**
+     * Work out the shape of a filter and sort
+     * @param filter Query filter; $or, $nor, $expr and other top-level operators except $and are ignored
+     * @param sort Sort document, or null
+     */
+    public static Shape shapeOf(Document filter, Document sort) {
+        Set<String> equality = new TreeSet<>();
+        Set<String> range = new TreeSet<>();
+        collect(filter, equality, range);
+        LinkedHashMap<String, Integer> sortFields = new LinkedHashMap<>();
+        if (sort != null) {
+            sort.forEach((field, direction) -> {
+                if (direction instanceof Number number && !field.equals("_id")) {
+                    sortFields.put(field, number.intValue() < 0 ? -1 : 1);
+                }
+            });
+        }
+        sortFields.keySet().forEach(range::remove);
+        range.removeAll(equality);
+        return new Shape(List.copyOf(equality), sortFields, List.copyOf(range));
+    }
+
+    /**
+     * Work out the shape of the part of a pipeline that can use an index: its leading $match stages and
+     * a $sort right after them
+     */
+    public static Shape shapeOfPipeline(List<Document> pipeline) {
+        List<Document> matches = new ArrayList<>();
+        Document sort = null;
+        for (Document stage : pipeline) {
+            if (stage.get("$match") instanceof Document match) {
+                matches.add(match);
+            } else {
+                if (stage.get("$sort") instanceof Document sortStage) {
+                    sort = sortStage;
+                }
+                break;
+            }
+        }
+        Document filter = matches.size() == 1 ? matches.get(0) : new Document("$and", matches);
+        return shapeOf(filter, sort);
+    }
+
+    private static void collect(Document filter, Set<String> equality, Set<String> range) {
+        if (filter == null) {
+            return;
+        }
+        filter.forEach((field, condition) -> {
+            if (field.equals("$and") && condition instanceof List<?> clauses) {
+                clauses.stream()
+                        .filter(Document.class::isInstance)
+                        .forEach(clause -> collect((Document) clause, equality, range));
+            } else if (field.startsWith("$")) {
+                // $or, $nor, $expr, $text: not served by a single compound index
+            } else if (condition instanceof Document operators && !operators.isEmpty()
+                    && operators.keySet().iterator().next().startsWith("$")) {
+                if (operators.containsKey("$eq") || operators.containsKey("$in")) {
+                    equality.add(field);
+                } else if (operators.keySet().stream().anyMatch(RANGE_OPERATORS::contains)) {
+                    range.add(field);
+                }
+            } else {
+                equality.add(field);
+            }
+        });
+    }
+
+    /**
+     * Count one run of a query
+     */
+    public void record(Shape shape) {
+        if (shape.isEmpty()) {
+            unindexable.incrementAndGet();
+            return;
+        }
+        recorded.incrementAndGet();
+        String key = shape.toString();
+        Usage usage = shapes.get(key);
+        if (usage == null) {
+            if (shapes.size() >= maxShapes) {
+                untracked.incrementAndGet();
+                return;
+            }
+            usage = shapes.computeIfAbsent(key, k -> new Usage(shape));
+        }
+        usage.count.incrementAndGet();
+        usage.lastSeen = clock.getAsLong();
+    }
+
+    /**
+     * Recommendations for the recorded shapes, most frequent first
+     * @param indexes Key documents of the existing indexes
+     * @return One entry per shape: shape, count, lastSeen, recommended index keys and the existing index
+     * serving it, if any
+     */
+    public List<Map<String, Object>> report(List<Document> indexes) {
+        List<Map<String, Object>> report = new ArrayList<>();
+        shapes.values().stream()
+                .sorted(Comparator.comparingLong((Usage usage) -> usage.count.get()).reversed())
+                .forEach(usage -> {
+                    Map<String, Object> entry = new LinkedHashMap<>();
+                    entry.put("shape", usage.shape.toString());
+                    entry.put("count", usage.count.get());
+                    entry.put("lastSeen", usage.lastSeen);
+                    entry.put("index", usage.shape.indexKeys());
+                    Document servedBy = indexes.stream().filter(usage.shape::isServedBy).findFirst().orElse(null);
+                    entry.put("covered", servedBy != null);
+                    entry.put("coveredBy", servedBy);
+                    report.add(entry);
+                });
+        return report;
+    }
+
+    /**
+     * Recommended index keys for shapes seen at least {@code minCount} times that no existing index serves
+     */
+    public List<Document> missing(List<Document> indexes, long minCount) {
+        List<Document> missing = new ArrayList<>();
+        for (Usage usage : shapes.values()) {
+            if (usage.count.get() < minCount || indexes.stream().anyMatch(usage.shape::isServedBy)) {
+                continue;
+            }
+            Document keys = usage.shape.indexKeys();
+            if (!missing.contains(keys) && missing.stream().noneMatch(usage.shape::isServedBy)) {
+                missing.add(keys);
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * Get advisor statistics
+     * @return Map of recorded, unindexable and untracked query counts and tracked shapes
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("recorded", recorded.get());
+        stats.put("unindexable", unindexable.get());
+        stats.put("untracked", untracked.get());
+        stats.put("shapes", shapes.size());
+        stats.put("maxShapes", maxShapes);
+        return stats;
+    }
+}
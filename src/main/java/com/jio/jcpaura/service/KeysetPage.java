@@ -0,0 +1,192 @@
+package com.jio.jcpaura.service;
+
+import org.bson.Document;
+import org.bson.json.JsonMode;
+import org.bson.json.JsonWriterSettings;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Keyset (cursor) pagination: each page is read with a condition "after the last row of the previous page"
+ * on the sort field plus _id as a tie-breaker, instead of skipping the rows before it, so a deep page costs
+ * the same as the first. The position is handed to clients as an opaque continuation token bound to the
+ * query and sort it was issued for.
+ * Missing/null sort values sort lowest, as in MongoDB: last in descending order, first in ascending order.
+ */
+public final class KeysetPage {
+
+    private static final JsonWriterSettings TOKEN_JSON = JsonWriterSettings.builder()
+            .outputMode(JsonMode.EXTENDED)
+            .build();
+
+    /**
+     * Page order
+     * @param field Stored field name
+     * @param descending Direction; _id breaks ties in the same direction
+     */
+    public record Sort(String field, boolean descending) {
+
+        /**
+         * Parse "field", "field:asc", "field:desc" or "-field"
+         * @param spec The sort spec, or null/blank for {@code defaultSort}
+         * @throws IllegalArgumentException if the spec is malformed
+         */
+        public static Sort parse(String spec, Sort defaultSort) {
+            if (spec == null || spec.isBlank()) {
+                return defaultSort;
+            }
+            String field = spec.trim();
+            boolean descending = false;
+            if (field.startsWith("-")) {
+                descending = true;
+                field = field.substring(1);
+            } else if (field.contains(":")) {
+                String direction = field.substring(field.indexOf(':') + 1).trim().toLowerCase();
+                field = field.substring(0, field.indexOf(':')).trim();
+                if (!direction.equals("asc") && !direction.equals("desc")) {
+                    throw new IllegalArgumentException("Sort direction must be asc or desc: " + spec);
+                }
+                descending = direction.equals("desc");
+            }
+            if (field.isEmpty() || field.startsWith("$")) {
+                throw new IllegalArgumentException("Invalid sort field: " + spec);
+            }
+            return new Sort(field, descending);
+        }
+
+        /**
+         * @return The $sort document: the field, then _id
+         */
+        public Document toDocument() {
+            int direction = descending ? -1 : 1;
+            Document sort = new Document(field, direction);
+            if (!field.equals("_id")) {
+                sort.append("_id", direction);
+            }
+            return sort;
+        }
+    }
+
+    /**
+     * Position after the last row of a page
+     */
+    public record Position(Object value, Object id) {
+    }
+
+    /**
+     * One page
+     * @param rows The page's rows
+     * @param nextCursor Token for the next page, or null if this is the last one
+     */
+    public record Page<T>(List<T> rows, String nextCursor) {
+    }
+
+    private KeysetPage() {
+    }
+
+    /**
+     * Condition selecting the rows after {@code position} in {@code sort} order
+     */
+    public static Document after(Sort sort, Position position) {
+        String operator = sort.descending() ? "$lt" : "$gt";
+        if (sort.field().equals("_id")) {
+            return new Document("_id", new Document(operator, position.id()));
+        }
+
+        Document sameValueLaterId = new Document(sort.field(), position.value())
+                .append("_id", new Document(operator, position.id()));
+        List<Document> branches = new ArrayList<>();
+        if (position.value() == null) {
+            if (!sort.descending()) {
+                // Nulls come first in ascending order: every non-null value is still ahead
+                branches.add(new Document(sort.field(), new Document("$ne", null)));
+            }
+        } else {
+            branches.add(new Document(sort.field(), new Document(operator, position.value())));
+            if (sort.descending()) {
+                // Nulls come last in descending order
+                branches.add(new Document(sort.field(), null));
+            }
+        }
+        branches.add(sameValueLaterId);
+        return branches.size() == 1 ? branches.get(0) : new Document("$or", branches);
+    }
+
+    /**
+     * Combine a filter with the keyset condition
+     */
+    public static Document and(Document filter, Document after) {
+        if (filter.isEmpty()) {
+            return after;
+        }
+        List<Document> both = List.of(filter, after);
+        return new Document("$and", both);
+    }
+
+    /**
+     * The position of a row in {@code sort} order
+     * @throws IllegalArgumentException if the row has no _id: the next page could not be selected after it
+     */
+    public static Position positionOf(Document row, Sort sort) {
+        Object id = row.get("_id");
+        if (id == null) {
+            throw new IllegalArgumentException("Keyset pagination needs a unique, non-null _id on every row; "
+                    + "keep _id in the pipeline's output");
+        }
+        return new Position(sort.field().equals("_id") ? null : row.get(sort.field()), id);
+    }
+
+    /**
+     * Encode a position as a continuation token
+     * @param fingerprint Identifies the query and sort the token is valid for
+     */
+    public static String encode(Sort sort, Position position, String fingerprint) {
+        Document token = new Document("s", sort.field())
+                .append("d", sort.descending())
+                .append("v", position.value())
+                .append("i", position.id())
+                .append("q", fingerprint);
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(token.toJson(TOKEN_JSON).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a continuation token
+     * @throws IllegalArgumentException if the token is malformed or was issued for another query or sort
+     */
+    public static Position decode(String token, Sort sort, String fingerprint) {
+        Document decoded;
+        try {
+            decoded = Document.parse(new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        if (!sort.field().equals(decoded.getString("s")) || sort.descending() != decoded.getBoolean("d", false)
+                || !fingerprint.equals(decoded.getString("q"))) {
+            throw new IllegalArgumentException("Cursor does not belong to this query and sort");
+        }
+        return new Position(decoded.get("v"), decoded.get("i"));
+    }
+
+    /**
+     * Fingerprint of a query (filter or pipeline JSON) and sort, checked when a token comes back
+     */
+    public static String fingerprint(String query, Sort sort) {
+        return Integer.toHexString((query + "|" + sort.field() + "|" + sort.descending()).hashCode());
+    }
+
+    /**
+     * Turn the rows read with limit size + 1 into a page: the extra row only signals that another page exists
+     * @throws IllegalArgumentException if another page exists but the last row has no _id to continue from
+     */
+    public static Page<Document> page(List<Document> rows, int size, Sort sort, String fingerprint) {
+        if (rows.size() <= size) {
+            return new Page<>(rows, null);
+        }
+        List<Document> pageRows = new ArrayList<>(rows.subList(0, size));
+        return new Page<>(pageRows, encode(sort, positionOf(pageRows.get(size - 1), sort), fingerprint));
+    }
+}
@@ -0,0 +1,59 @@
+package com.jio.jcpaura.service;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Sliding window of the most recent call latencies, used to derive percentiles
+ */
+public class LatencyTracker {
+
+    private final long[] samples;
+    private int next;
+    private int count;
+
+    public LatencyTracker(int windowSize) {
+        this.samples = new long[windowSize];
+    }
+
+    public synchronized void record(long latencyMillis) {
+        samples[next] = latencyMillis;
+        next = (next + 1) % samples.length;
+        if (count < samples.length) {
+            count++;
+        }
+    }
+
+    public synchronized int getCount() {
+        return count;
+    }
+
+    /**
+     * Latency at the given percentile of the current window
+     * @param percentile Between 0.0 and 1.0, e.g. 0.95
+     * @return The latency in milliseconds, or -1 if no samples were recorded yet
+     */
+    public synchronized long percentile(double percentile) {
+        if (count == 0) {
+            return -1;
+        }
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile * count) - 1;
+        return sorted[Math.max(0, Math.min(count - 1, index))];
+    }
+
+    /**
+     * Get window statistics
+     * @return Map of sample count and p50/p95/p99 in milliseconds
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("samples", getCount());
+        stats.put("p50Ms", percentile(0.50));
+        stats.put("p95Ms", percentile(0.95));
+        stats.put("p99Ms", percentile(0.99));
+        return stats;
+    }
+}
@@ -0,0 +1,274 @@
+package com.jio.jcpaura.service;
+
+import com.mongodb.client.model.IndexOptions;
+import jakarta.annotation.PostConstruct;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Indexes on the auraGeneralMetrics collection: creates the indexes for the known access paths at
+ * startup, and runs an {@link IndexAdvisor} over the queries and pipelines the metrics service executes,
+ * so missing compound indexes can be reported and, if enabled, created.
+ * Indexes are created under MongoDB's default names, so creating one that already exists is a no-op.
+ * The natural key of a sample (site, timestamp, service type) gets a unique index, which ingest upserts
+ * rely on to keep one document per sample; it cannot be created while duplicates exist, which
+ * {@link #ensureNaturalKey(boolean)} can remove.
+ */
+@Service
+public class MetricsIndexService {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Value("${aura.metrics.indexes.provision:true}")
+    private boolean provision;
+
+    @Value("${aura.metrics.index-advisor.enabled:true}")
+    private boolean advisorEnabled;
+
+    @Value("${aura.metrics.index-advisor.max-shapes:200}")
+    private int maxShapes;
+
+    @Value("${aura.metrics.index-advisor.auto-create:false}")
+    private boolean autoCreate;
+
+    @Value("${aura.metrics.index-advisor.min-count:100}")
+    private long minCount;
+
+    private static final String COLLECTION = "auraGeneralMetrics";
+
+    /**
+     * Filters on circle, service_type, site_id and health_status, newest first, and the default keyset order
+     */
+    private static final List<Document> PROVISIONED = List.of(
+            new Document("circle", 1).append("service_type", 1).append("kpi_timestamp", -1),
+            new Document("service_type", 1).append("kpi_timestamp", -1),
+            new Document("site_id", 1).append("kpi_timestamp", -1),
+            new Document("health_status", 1).append("kpi_timestamp", -1),
+            new Document("kpi_timestamp", -1).append("_id", -1));
+
+    /**
+     * One document per site, timestamp and service type. Samples without a site_id or kpi_timestamp are
+     * inserted as they are, so the index leaves them out
+     */
+    public static final Document NATURAL_KEY = new Document("site_id", 1).append("kpi_timestamp", 1)
+            .append("service_type", 1);
+
+    private static final String NATURAL_KEY_INDEX = "natural_key";
+
+    private static final Document NATURAL_KEY_FILTER = new Document("site_id", new Document("$exists", true))
+            .append("kpi_timestamp", new Document("$exists", true));
+
+    /**
+     * Duplicate ids deleted per round trip
+     */
+    private static final int DELETE_BATCH = 1000;
+
+    private IndexAdvisor advisor;
+
+    private final AtomicLong indexesEnsured = new AtomicLong();
+    private final AtomicLong createFailures = new AtomicLong();
+    private final AtomicLong duplicatesRemoved = new AtomicLong();
+    private volatile boolean naturalKeyUnique;
+    private volatile String lastError;
+
+    @PostConstruct
+    public void init() {
+        advisor = new IndexAdvisor(maxShapes);
+        if (provision) {
+            // Building an index on a large collection takes a while: don't hold up startup
+            Thread.ofVirtual().name("aura-index-provisioning").start(() -> {
+                createIndexes(PROVISIONED);
+                createNaturalKeyIndex();
+            });
+        }
+    }
+
+    /**
+     * Record the filter and sort of a query for the advisor
+     */
+    public void record(Document filter, Document sort) {
+        if (advisorEnabled) {
+            advisor.record(IndexAdvisor.shapeOf(filter, sort));
+        }
+    }
+
+    /**
+     * Record the index-eligible part of a pipeline for the advisor
+     */
+    public void recordPipeline(List<Document> pipeline) {
+        if (advisorEnabled) {
+            advisor.record(IndexAdvisor.shapeOfPipeline(pipeline));
+        }
+    }
+
+    /**
+     * @return Key documents of the collection's indexes
+     */
+    public List<Document> getIndexKeys() {
+        List<Document> keys = new ArrayList<>();
+        for (Document index : mongoTemplate.getCollection(COLLECTION).listIndexes()) {
+            keys.add(index.get("key", Document.class));
+        }
+        return keys;
+    }
+
+    /**
+     * Existing indexes and the advisor's recommendations, most frequent query shape first
+     * @return Map of indexes, advice and stats
+     */
+    public Map<String, Object> getReport() {
+        Map<String, Object> report = new LinkedHashMap<>();
+        List<Document> indexes = new ArrayList<>();
+        for (Document index : mongoTemplate.getCollection(COLLECTION).listIndexes()) {
+            indexes.add(new Document("name", index.getString("name")).append("key", index.get("key")));
+        }
+        report.put("indexes", indexes);
+        report.put("advice", advisor.report(indexes.stream().map(index -> index.get("key", Document.class)).toList()));
+        report.put("stats", getStats());
+        return report;
+    }
+
+    /**
+     * Create the recommended indexes for query shapes seen at least {@code minCount} times that no
+     * existing index serves
+     * @return Key documents of the indexes created
+     */
+    public List<Document> createMissingIndexes(long minCount) {
+        return createIndexes(advisor.missing(getIndexKeys(), minCount));
+    }
+
+    /**
+     * Periodically create missing indexes, if aura.metrics.index-advisor.auto-create is set
+     */
+    @Scheduled(initialDelay = 300000, fixedDelayString = "${aura.metrics.index-advisor.interval-ms:300000}")
+    public void autoCreateMissingIndexes() {
+        if (autoCreate && advisorEnabled) {
+            try {
+                createMissingIndexes(minCount);
+            } catch (Exception e) {
+                createFailures.incrementAndGet();
+                lastError = e.getMessage();
+            }
+        }
+    }
+
+    /**
+     * Create the unique natural key index, optionally deleting duplicate samples first
+     * @param removeDuplicates Whether to delete all but the most recently inserted document of each
+     *                         site, timestamp and service type
+     * @return Map of duplicates removed, whether the unique index is in place and, if not, why
+     */
+    public Map<String, Object> ensureNaturalKey(boolean removeDuplicates) {
+        long removed = removeDuplicates ? removeDuplicates() : 0;
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("removed", removed);
+        result.put("unique", createNaturalKeyIndex());
+        if (!naturalKeyUnique) {
+            result.put("error", lastError);
+        }
+        return result;
+    }
+
+    private boolean createNaturalKeyIndex() {
+        try {
+            mongoTemplate.getCollection(COLLECTION).createIndex(NATURAL_KEY, new IndexOptions()
+                    .name(NATURAL_KEY_INDEX)
+                    .unique(true)
+                    .partialFilterExpression(NATURAL_KEY_FILTER));
+            indexesEnsured.incrementAndGet();
+            naturalKeyUnique = true;
+        } catch (Exception e) {
+            // Typically E11000: the collection already holds duplicates
+            createFailures.incrementAndGet();
+            lastError = NATURAL_KEY.toJson() + " (unique): " + e.getMessage();
+        }
+        return naturalKeyUnique;
+    }
+
+    /**
+     * Delete all but the most recently inserted (highest _id) document of each natural key
+     * @return Number of documents deleted
+     */
+    private long removeDuplicates() {
+        List<Document> pipeline = List.of(
+                new Document("$match", NATURAL_KEY_FILTER),
+                new Document("$group", new Document("_id", new Document("site_id", "$site_id")
+                        .append("kpi_timestamp", "$kpi_timestamp")
+                        .append("service_type", "$service_type"))
+                        .append("keep", new Document("$max", "$_id"))
+                        .append("ids", new Document("$push", "$_id"))
+                        .append("count", new Document("$sum", 1))),
+                new Document("$match", new Document("count", new Document("$gt", 1))));
+
+        long removed = 0;
+        List<Object> doomed = new ArrayList<>(DELETE_BATCH);
+        for (Document group : mongoTemplate.getCollection(COLLECTION).aggregate(pipeline).allowDiskUse(true)) {
+            Object keep = group.get("keep");
+            for (Object id : group.getList("ids", Object.class)) {
+                if (!id.equals(keep)) {
+                    doomed.add(id);
+                }
+            }
+            if (doomed.size() >= DELETE_BATCH) {
+                removed += deleteIds(doomed);
+            }
+        }
+        if (!doomed.isEmpty()) {
+            removed += deleteIds(doomed);
+        }
+        duplicatesRemoved.addAndGet(removed);
+        return removed;
+    }
+
+    private long deleteIds(List<Object> ids) {
+        long deleted = mongoTemplate.getCollection(COLLECTION)
+                .deleteMany(new Document("_id", new Document("$in", ids)))
+                .getDeletedCount();
+        ids.clear();
+        return deleted;
+    }
+
+    private List<Document> createIndexes(List<Document> indexes) {
+        List<Document> created = new ArrayList<>();
+        for (Document keys : indexes) {
+            try {
+                mongoTemplate.getCollection(COLLECTION).createIndex(keys);
+                indexesEnsured.incrementAndGet();
+                created.add(keys);
+            } catch (Exception e) {
+                createFailures.incrementAndGet();
+                lastError = keys.toJson() + ": " + e.getMessage();
+            }
+        }
+        return created;
+    }
+
+    /**
+     * Get index statistics
+     * @return Map of advisor counters, indexes created or already present, failures and the last error
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>(advisor.getStats());
+        stats.put("advisorEnabled", advisorEnabled);
+        stats.put("autoCreate", autoCreate);
+        stats.put("minCount", minCount);
+        stats.put("indexesEnsured", indexesEnsured.get());
+        stats.put("createFailures", createFailures.get());
+        stats.put("naturalKeyUnique", naturalKeyUnique);
+        stats.put("duplicatesRemoved", duplicatesRemoved.get());
+        stats.put("lastError", lastError);
+        return stats;
+    }
+}
@@ -0,0 +1,170 @@
+package com.jio.jcpaura.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.jio.jcpaura.entity.AuraGeneralMetrics;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Reads AuraGeneralMetrics samples one at a time from a JSON array or an NDJSON stream, so a request of
+ * any size is parsed with constant memory.
+ * A sample that is not a valid AuraGeneralMetrics is returned as an error and reading goes on. Broken
+ * JSON ends an array (its structure is lost), but in NDJSON only fails its own line.
+ * kpi_timestamp may be an ISO local date-time (server time zone), an ISO date-time with offset, an ISO
+ * date or epoch milliseconds.
+ */
+public class MetricsRecordReader implements Closeable {
+
+    /**
+     * One sample
+     * @param index Position in the request, from 0
+     * @param metrics The sample, or null if it could not be read
+     * @param error Why it could not be read, or null
+     */
+    public record Record(int index, AuraGeneralMetrics metrics, String error) {
+    }
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+            .registerModule(new SimpleModule().addDeserializer(LocalDateTime.class,
+                    new StdDeserializer<LocalDateTime>(LocalDateTime.class) {
+                        @Override
+                        public LocalDateTime deserialize(JsonParser parser, DeserializationContext context)
+                                throws IOException {
+                            if (parser.currentToken() == JsonToken.VALUE_NUMBER_INT) {
+                                return LocalDateTime.ofInstant(Instant.ofEpochMilli(parser.getLongValue()),
+                                        ZoneId.systemDefault());
+                            }
+                            try {
+                                return parseTimestamp(parser.getValueAsString());
+                            } catch (DateTimeParseException e) {
+                                return (LocalDateTime) context.handleWeirdStringValue(LocalDateTime.class,
+                                        parser.getValueAsString(), "not an ISO date or date-time");
+                            }
+                        }
+                    }));
+
+    private final boolean ndjson;
+    private final BufferedReader lines;
+    private final JsonParser parser;
+    private boolean started;
+    private int index;
+
+    /**
+     * @param in The request body
+     * @param ndjson true for one JSON object per line, false for a JSON array (or a single object)
+     */
+    public MetricsRecordReader(InputStream in, boolean ndjson) throws IOException {
+        this.ndjson = ndjson;
+        if (ndjson) {
+            this.lines = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            this.parser = null;
+        } else {
+            this.lines = null;
+            this.parser = MAPPER.getFactory().createParser(in);
+        }
+    }
+
+    /**
+     * Read the next sample
+     * @return The sample, or null at the end of the input
+     * @throws IOException if the input cannot be read, or a JSON array is malformed
+     */
+    public Record next() throws IOException {
+        return ndjson ? nextLine() : nextElement();
+    }
+
+    private Record nextLine() throws IOException {
+        String line;
+        do {
+            line = lines.readLine();
+            if (line == null) {
+                return null;
+            }
+        } while (line.isBlank());
+        int recordIndex = index++;
+        try {
+            return read(recordIndex, MAPPER.readTree(line));
+        } catch (JsonProcessingException e) {
+            return new Record(recordIndex, null, "Invalid JSON: " + e.getOriginalMessage());
+        }
+    }
+
+    private Record nextElement() throws IOException {
+        JsonToken token = parser.nextToken();
+        if (!started) {
+            started = true;
+            if (token == JsonToken.START_ARRAY) {
+                token = parser.nextToken();
+            }
+        }
+        if (token == null || token == JsonToken.END_ARRAY) {
+            return null;
+        }
+        int recordIndex = index++;
+        if (token != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return new Record(recordIndex, null, "Expected a JSON object, found " + token);
+        }
+        return read(recordIndex, MAPPER.readTree(parser));
+    }
+
+    private static Record read(int index, JsonNode node) {
+        if (!node.isObject()) {
+            return new Record(index, null, "Expected a JSON object");
+        }
+        try {
+            return new Record(index, MAPPER.treeToValue(node, AuraGeneralMetrics.class), null);
+        } catch (JsonProcessingException e) {
+            return new Record(index, null, e.getOriginalMessage());
+        } catch (IllegalArgumentException e) {
+            return new Record(index, null, e.getMessage());
+        }
+    }
+
+    /**
+     * Parse a kpi_timestamp: ISO local date-time, ISO date-time with offset (converted to the server time
+     * zone) or ISO date (start of day)
+     */
+    static LocalDateTime parseTimestamp(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return LocalDateTime.parse(value);
+        } catch (DateTimeParseException e) {
+            if (value.length() == 10) {
+                return LocalDate.parse(value).atStartOfDay();
+            }
+            return OffsetDateTime.parse(value).atZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (ndjson) {
+            lines.close();
+        } else {
+            parser.close();
+        }
+    }
+}
@@ -0,0 +1,340 @@
+package com.jio.jcpaura.service;
+
+import org.bson.Document;
+import org.bson.json.JsonMode;
+import org.bson.json.JsonWriterSettings;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded in-process cache of query and aggregation results on the metrics collection.
+ * Entries are keyed by the canonical form of the query, weighted by their estimated size in bytes, and
+ * evicted least-recently-used once they add up to more than {@code maxBytes} or {@code maxEntries};
+ * they expire {@code ttlMillis} after they were stored, which bounds staleness from writes made outside
+ * this service.
+ * Each entry records the circles and service types its filter is limited to, so a write only
+ * invalidates the entries that could contain the written document. A result that was being read while
+ * a write invalidated entries is not stored.
+ */
+public class MetricsResultCache {
+
+    private static final JsonWriterSettings KEY_JSON = JsonWriterSettings.builder()
+            .outputMode(JsonMode.EXTENDED)
+            .build();
+
+    private static final Set<String> JOIN_STAGES = Set.of("$lookup", "$graphLookup", "$unionWith");
+
+    /**
+     * The circles and service types a result is limited to; null means any
+     */
+    public record Scope(Set<String> circles, Set<String> serviceTypes) {
+
+        public static final Scope ANY = new Scope(null, null);
+
+        /**
+         * Whether a document with this circle and service type could be part of the result
+         */
+        public boolean touches(String circle, String serviceType) {
+            return (circles == null || circle != null && circles.contains(circle))
+                    && (serviceTypes == null || serviceType != null && serviceTypes.contains(serviceType));
+        }
+    }
+
+    /**
+     * Circle and service type of a document written, before or after the write
+     */
+    public record Write(String circle, String serviceType) {
+    }
+
+    private record Entry(List<?> rows, long bytes, Scope scope, long storedAt) {
+    }
+
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final LongSupplier clock;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    private long version;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+    private final AtomicLong oversized = new AtomicLong();
+    private final AtomicLong stale = new AtomicLong();
+
+    public MetricsResultCache(long maxBytes, long maxEntryBytes, int maxEntries, long ttlMillis) {
+        this(maxBytes, maxEntryBytes, maxEntries, ttlMillis, System::currentTimeMillis);
+    }
+
+    public MetricsResultCache(long maxBytes, long maxEntryBytes, int maxEntries, long ttlMillis, LongSupplier clock) {
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = Math.min(maxEntryBytes, maxBytes);
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * Canonical cache key: the kind of read, its parameters and the query with the keys of every document
+     * sorted, except inside $sort, where order matters
+     * @param kind e.g. "query" or "aggregation"
+     * @param query A filter Document or a pipeline (List of Documents)
+     * @param params Everything else that changes the result (sort, limit)
+     */
+    public static String key(String kind, Object query, Object... params) {
+        StringBuilder key = new StringBuilder(kind);
+        for (Object param : params) {
+            key.append('|').append(param instanceof Document document ? document.toJson(KEY_JSON) : param);
+        }
+        Object canonical = canonical(query, false);
+        String json = canonical instanceof Document document
+                ? document.toJson(KEY_JSON)
+                : new Document("p", canonical).toJson(KEY_JSON);
+        return key.append('|').append(json).toString();
+    }
+
+    private static Object canonical(Object value, boolean keepOrder) {
+        if (value instanceof Document document) {
+            Map<String, Object> fields = keepOrder ? new LinkedHashMap<>() : new TreeMap<>();
+            document.forEach((field, fieldValue) -> fields.put(field, canonical(fieldValue, field.equals("$sort"))));
+            return new Document(fields);
+        }
+        if (value instanceof List<?> list) {
+            List<Object> items = new ArrayList<>(list.size());
+            list.forEach(item -> items.add(canonical(item, false)));
+            return items;
+        }
+        return value;
+    }
+
+    /**
+     * The circles and service types a filter is limited to, from its equality and $in conditions on
+     * circle and service_type, at the top level or in a top-level $and
+     */
+    public static Scope scopeOf(Document filter) {
+        return new Scope(valuesOf(filter, "circle"), valuesOf(filter, "service_type"));
+    }
+
+    /**
+     * The scope of a pipeline's leading $match stages. Stages that read other documents ($lookup,
+     * $graphLookup, $unionWith, also inside $facet or a sub-pipeline) can reach outside that scope, so such
+     * a pipeline is scoped to everything; any other stage only narrows the result
+     */
+    public static Scope scopeOfPipeline(List<Document> pipeline) {
+        if (readsOtherDocuments(pipeline)) {
+            return Scope.ANY;
+        }
+        List<Document> matches = new ArrayList<>();
+        for (Document stage : pipeline) {
+            if (!(stage.get("$match") instanceof Document match)) {
+                break;
+            }
+            matches.add(match);
+        }
+        return scopeOf(new Document("$and", matches));
+    }
+
+    private static boolean readsOtherDocuments(Object value) {
+        if (value instanceof Document document) {
+            for (Map.Entry<String, Object> entry : document.entrySet()) {
+                if (JOIN_STAGES.contains(entry.getKey()) || readsOtherDocuments(entry.getValue())) {
+                    return true;
+                }
+            }
+        } else if (value instanceof List<?> values) {
+            for (Object element : values) {
+                if (readsOtherDocuments(element)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static Set<String> valuesOf(Document filter, String field) {
+        Object condition = filter.get(field);
+        if (condition instanceof String value) {
+            return Set.of(value);
+        }
+        if (condition instanceof Document operators) {
+            if (operators.get("$eq") instanceof String value) {
+                return Set.of(value);
+            }
+            if (operators.get("$in") instanceof List<?> values && values.stream().allMatch(String.class::isInstance)) {
+                Set<String> set = new LinkedHashSet<>();
+                values.forEach(value -> set.add((String) value));
+                return set;
+            }
+            return null;
+        }
+        if (condition == null && filter.get("$and") instanceof List<?> clauses) {
+            for (Object clause : clauses) {
+                if (clause instanceof Document document) {
+                    Set<String> values = valuesOf(document, field);
+                    if (values != null) {
+                        return values;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Look up a result
+     * @return The cached rows, or null if absent or expired
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized <T> List<T> get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        if (clock.getAsLong() - entry.storedAt() > ttlMillis) {
+            remove(key);
+            expirations.incrementAndGet();
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return (List<T>) entry.rows();
+    }
+
+    /**
+     * @return The current version; read it before running a query and pass it to {@link #put}
+     */
+    public synchronized long version() {
+        return version;
+    }
+
+    /**
+     * Whether a result of this many bytes would be stored
+     */
+    public boolean fits(long entryBytes) {
+        return entryBytes <= maxEntryBytes;
+    }
+
+    /**
+     * Store a result, evicting least recently used entries to stay within the limits
+     * @param rows The rows; callers must not modify them afterwards
+     * @param entryBytes Estimated size of the rows
+     * @param readVersion {@link #version()} from before the query ran: if anything was invalidated since,
+     *                    the result may be stale and is not stored
+     * @return true if stored
+     */
+    public synchronized boolean put(String key, List<?> rows, long entryBytes, Scope scope, long readVersion) {
+        if (maxEntries <= 0) {
+            return false;
+        }
+        if (readVersion != version) {
+            stale.incrementAndGet();
+            return false;
+        }
+        if (!fits(entryBytes)) {
+            oversized.incrementAndGet();
+            return false;
+        }
+        remove(key);
+        entries.put(key, new Entry(rows, entryBytes, scope, clock.getAsLong()));
+        bytes += entryBytes;
+
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || bytes > maxBytes) && eldest.hasNext()) {
+            Map.Entry<String, Entry> entry = eldest.next();
+            if (entry.getKey().equals(key)) {
+                continue;
+            }
+            bytes -= entry.getValue().bytes();
+            eldest.remove();
+            evictions.incrementAndGet();
+        }
+        return true;
+    }
+
+    /**
+     * Drop the results that a write of documents with these circles and service types could change
+     * @param written Circles and service types of the documents written, before and after the write
+     * @return Number of entries dropped
+     */
+    public synchronized int invalidate(Collection<Write> written) {
+        version++;
+        int dropped = 0;
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (written.stream().anyMatch(write -> entry.scope().touches(write.circle(), write.serviceType()))) {
+                bytes -= entry.bytes();
+                iterator.remove();
+                dropped++;
+            }
+        }
+        invalidations.addAndGet(dropped);
+        return dropped;
+    }
+
+    /**
+     * Drop every result
+     * @return Number of entries dropped
+     */
+    public synchronized int invalidateAll() {
+        version++;
+        int dropped = entries.size();
+        entries.clear();
+        bytes = 0;
+        invalidations.addAndGet(dropped);
+        return dropped;
+    }
+
+    private void remove(String key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            bytes -= removed.bytes();
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Get cache statistics
+     * @return Map of entries and bytes held, limits, hit/miss counters and hit ratio, evictions,
+     * expirations, invalidations and results not stored
+     */
+    public synchronized Map<String, Object> getStats() {
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("entries", entries.size());
+        stats.put("bytes", bytes);
+        stats.put("maxEntries", maxEntries);
+        stats.put("maxBytes", maxBytes);
+        stats.put("maxEntryBytes", maxEntryBytes);
+        stats.put("ttlSeconds", ttlMillis / 1000);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRatio", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+        stats.put("evictions", evictions.get());
+        stats.put("expirations", expirations.get());
+        stats.put("invalidations", invalidations.get());
+        stats.put("oversized", oversized.get());
+        stats.put("stale", stale.get());
+        return stats;
+    }
+}
@@ -0,0 +1,102 @@
+package com.jio.jcpaura.service;
+
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.bulk.BulkWriteUpsert;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Write models that store metrics samples idempotently, and what their bulk write results mean.
+ * A sample with a site_id and kpi_timestamp is upserted on its natural key (site_id, kpi_timestamp,
+ * service_type), which the unique index from {@link MetricsIndexService#NATURAL_KEY} backs: a retried sample
+ * updates the document already stored, which keeps its _id. Without those fields it has no natural key and
+ * is inserted as it is.
+ */
+public final class MetricsUpserts {
+
+    private MetricsUpserts() {
+    }
+
+    /**
+     * Whether the sample can be upserted on its natural key
+     */
+    public static boolean hasNaturalKey(Document document) {
+        return document.get("site_id") != null && document.get("kpi_timestamp") != null;
+    }
+
+    /**
+     * Write model that stores a sample idempotently
+     * @param document The converted sample, with or without an _id
+     */
+    public static WriteModel<Document> writeModel(Document document) {
+        if (!hasNaturalKey(document)) {
+            return new InsertOneModel<>(document);
+        }
+        return new UpdateOneModel<>(naturalKey(document), update(document), new UpdateOptions().upsert(true));
+    }
+
+    /**
+     * Filter on the natural key fields of a sample; a missing service_type matches stored samples without one
+     */
+    public static Document naturalKey(Document document) {
+        Document filter = new Document();
+        MetricsIndexService.NATURAL_KEY.keySet().forEach(field -> filter.append(field, document.get(field)));
+        return filter;
+    }
+
+    /**
+     * $set of every field of the sample; its _id, if any, is only used when the upsert inserts
+     */
+    public static Document update(Document document) {
+        Document fields = new Document(document);
+        Object id = fields.remove("_id");
+        Document update = new Document("$set", fields);
+        if (id != null) {
+            update.append("$setOnInsert", new Document("_id", id));
+        }
+        return update;
+    }
+
+    /**
+     * Samples a bulk write added: plain inserts plus upserts that found no stored sample
+     */
+    public static long inserted(BulkWriteResult result) {
+        return result.getInsertedCount() + result.getUpserts().size();
+    }
+
+    /**
+     * Samples a bulk write applied to one already stored
+     */
+    public static long updated(BulkWriteResult result) {
+        return result.getMatchedCount();
+    }
+
+    /**
+     * Positions of the upserts of a bulk write that updated a stored sample instead of inserting, so the
+     * _id they were sent with is not the one they are stored under
+     * @param batch The documents written, in order
+     * @param result The result of writing them with {@link #writeModel}
+     * @param failed Positions that were not written
+     */
+    public static List<Integer> matched(List<Document> batch, BulkWriteResult result, Set<Integer> failed) {
+        Set<Integer> inserted = new HashSet<>();
+        for (BulkWriteUpsert upsert : result.getUpserts()) {
+            inserted.add(upsert.getIndex());
+        }
+        List<Integer> matched = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            if (hasNaturalKey(batch.get(i)) && !inserted.contains(i) && !failed.contains(i)) {
+                matched.add(i);
+            }
+        }
+        return matched;
+    }
+}
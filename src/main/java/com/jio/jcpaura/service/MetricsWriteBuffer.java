@@ -0,0 +1,432 @@
+package com.jio.jcpaura.service;
+
+import org.bson.Document;
+import org.bson.json.JsonMode;
+import org.bson.json.JsonWriterSettings;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Write-behind buffer for documents ingested one at a time.
+ * Producers add documents to a lock-free queue bounded by {@code capacity} permits: when it is full they
+ * wait up to {@code offerTimeoutMs} for room, then are rejected. A single flusher thread commits the queue
+ * in batches of up to {@code maxBatch} documents, as soon as a batch is full or {@code flushIntervalMs}
+ * after the previous commit, whichever comes first; a caller that waits for its document can ask for an
+ * immediate commit, which still takes whatever else is queued along with it.
+ * A batch that fails as a whole (e.g. MongoDB is down) is retried every {@code retryDelayMs}, so while it
+ * is failing the queue fills up and producers are pushed back instead of documents being dropped.
+ * With a write-ahead log, each document is appended to a local segment file before it is queued, and the
+ * segments are cleared once everything in them is committed; segments left by a crash are written again
+ * when the buffer starts, so the sink must be idempotent: a document may be written again if the crash
+ * came after its batch was committed but before the log was cleared.
+ */
+public class MetricsWriteBuffer {
+
+    private static final JsonWriterSettings WAL_JSON = JsonWriterSettings.builder()
+            .outputMode(JsonMode.EXTENDED)
+            .build();
+
+    private static final String SEGMENT_SUFFIX = ".wal";
+
+    /**
+     * Writes a batch to the database. It may update a document in place, e.g. with the _id it is stored
+     * under, before the offer's future completes with it
+     */
+    @FunctionalInterface
+    public interface Sink {
+        /**
+         * @return Error message by position in the batch, for each document that was not written
+         * @throws RuntimeException if the batch failed as a whole and should be retried
+         */
+        Map<Integer, String> write(List<Document> batch);
+    }
+
+    /**
+     * Write-ahead log settings
+     * @param dir Directory of the segment files
+     * @param segmentBytes Size at which a new segment is started
+     * @param sync Whether every append is forced to disk, so documents also survive a power loss
+     */
+    public record Wal(Path dir, long segmentBytes, boolean sync) {
+    }
+
+    private record Pending(Document document, long seq, CompletableFuture<Document> committed) {
+    }
+
+    private record Segment(Path path, long lastSeq) {
+    }
+
+    private final int capacity;
+    private final int maxBatch;
+    private final long flushIntervalNanos;
+    private final long offerTimeoutMs;
+    private final long retryDelayNanos;
+    private final Wal wal;
+    private final Sink sink;
+
+    private final ConcurrentLinkedQueue<Pending> queue = new ConcurrentLinkedQueue<>();
+    private final Semaphore slots;
+    private final AtomicInteger depth = new AtomicInteger();
+    private volatile Thread flusher;
+    private volatile boolean closed;
+    private volatile long closeDeadline;
+
+    // Write-ahead log, guarded by walLock
+    private final Object walLock = new Object();
+    private final List<Path> recovered;
+    private final ArrayDeque<Segment> fullSegments = new ArrayDeque<>();
+    private final String segmentPrefix = "metrics-" + System.currentTimeMillis() + "-";
+    private int segmentNumber;
+    private FileChannel segment;
+    private Path segmentPath;
+    private long segmentBytes;
+    private long segmentLastSeq;
+    private long lastSeq;
+
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong committed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong replayed = new AtomicLong();
+    private final AtomicLong replayFailed = new AtomicLong();
+    private final AtomicLong walFailures = new AtomicLong();
+    private volatile String lastError;
+
+    /**
+     * @param wal Write-ahead log settings, or null to keep queued documents in memory only
+     * @throws IOException if the write-ahead log directory cannot be created or listed
+     */
+    public MetricsWriteBuffer(int capacity, int maxBatch, long flushIntervalMs, long offerTimeoutMs,
+                              long retryDelayMs, Wal wal, Sink sink) throws IOException {
+        this.capacity = capacity;
+        this.maxBatch = Math.max(1, maxBatch);
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, flushIntervalMs));
+        this.offerTimeoutMs = offerTimeoutMs;
+        this.retryDelayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, retryDelayMs));
+        this.wal = wal;
+        this.sink = sink;
+        this.slots = new Semaphore(capacity);
+        if (wal != null) {
+            Files.createDirectories(wal.dir());
+            try (Stream<Path> files = Files.list(wal.dir())) {
+                recovered = files.filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                        .sorted()
+                        .toList();
+            }
+        } else {
+            recovered = List.of();
+        }
+    }
+
+    /**
+     * Start the flusher, which first writes the documents left in the write-ahead log by a previous run
+     */
+    public void start() {
+        flusher = Thread.ofVirtual().name("aura-metrics-write-behind").start(this::run);
+    }
+
+    /**
+     * Queue a document
+     * @param document The document, with its _id set
+     * @param flushNow Whether to commit the queue now rather than at the next full batch or interval
+     * @return Completes with the document once it is committed, or exceptionally if it was not written
+     * @throws RejectedExecutionException if the queue stayed full for offerTimeoutMs
+     * @throws IllegalStateException if the buffer is closed
+     * @throws UncheckedIOException if the document could not be appended to the write-ahead log
+     */
+    public CompletableFuture<Document> offer(Document document, boolean flushNow) {
+        if (closed) {
+            throw new IllegalStateException("Write buffer is closed");
+        }
+        try {
+            if (!slots.tryAcquire(offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+                rejected.incrementAndGet();
+                throw new RejectedExecutionException("Write buffer full (" + capacity + " documents)");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for room in the write buffer");
+        }
+
+        CompletableFuture<Document> future = new CompletableFuture<>();
+        if (wal == null) {
+            queue.add(new Pending(document, 0, future));
+        } else {
+            // Appends and enqueues happen together, so the log and the queue are in the same order
+            synchronized (walLock) {
+                try {
+                    append(document, lastSeq + 1);
+                } catch (IOException e) {
+                    slots.release();
+                    walFailures.incrementAndGet();
+                    lastError = e.getMessage();
+                    throw new UncheckedIOException("Could not append to the write-ahead log", e);
+                }
+                queue.add(new Pending(document, ++lastSeq, future));
+            }
+        }
+        accepted.incrementAndGet();
+        if (depth.incrementAndGet() >= maxBatch || flushNow) {
+            LockSupport.unpark(flusher);
+        }
+        return future;
+    }
+
+    /**
+     * Stop accepting documents and commit what is queued
+     * @param timeoutMs How long to keep retrying a failing batch; whatever is left after that stays in the
+     *                  write-ahead log, if there is one, and is lost otherwise
+     */
+    public void close(long timeoutMs) {
+        closeDeadline = System.currentTimeMillis() + timeoutMs;
+        closed = true;
+        Thread thread = flusher;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            try {
+                thread.join(Math.max(1, timeoutMs) + TimeUnit.NANOSECONDS.toMillis(retryDelayNanos));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (wal != null) {
+            synchronized (walLock) {
+                closeSegment();
+            }
+        }
+    }
+
+    private void run() {
+        for (Path path : recovered) {
+            if (!replay(path)) {
+                return;
+            }
+        }
+        List<Pending> batch = new ArrayList<>(maxBatch);
+        while (!closed || depth.get() > 0) {
+            if (!closed && depth.get() < maxBatch) {
+                LockSupport.parkNanos(this, flushIntervalNanos);
+            }
+            Pending pending;
+            while (batch.size() < maxBatch && (pending = queue.poll()) != null) {
+                batch.add(pending);
+            }
+            if (batch.isEmpty()) {
+                continue;
+            }
+            depth.addAndGet(-batch.size());
+            commit(batch);
+            batch.clear();
+        }
+    }
+
+    private void commit(List<Pending> batch) {
+        Map<Integer, String> errors = writeWithRetry(batch.stream().map(Pending::document).toList());
+        // Permits come back only now, so a batch being retried still counts against the capacity
+        slots.release(batch.size());
+        if (errors == null) {
+            String message = wal != null
+                    ? "Not written before shutdown; kept in the write-ahead log"
+                    : "Not written before shutdown";
+            failed.addAndGet(batch.size());
+            batch.forEach(pending -> pending.committed().completeExceptionally(new IllegalStateException(message)));
+            return;
+        }
+        batches.incrementAndGet();
+        for (int i = 0; i < batch.size(); i++) {
+            Pending pending = batch.get(i);
+            String error = errors.get(i);
+            if (error == null) {
+                committed.incrementAndGet();
+                pending.committed().complete(pending.document());
+            } else {
+                failed.incrementAndGet();
+                pending.committed().completeExceptionally(new IllegalStateException(error));
+            }
+        }
+        if (wal != null) {
+            committedThrough(batch.get(batch.size() - 1).seq());
+        }
+    }
+
+    /**
+     * Write a batch, retrying while it fails as a whole
+     * @return Per-document errors, or null if the buffer was closed and the close timeout passed
+     */
+    private Map<Integer, String> writeWithRetry(List<Document> documents) {
+        while (true) {
+            try {
+                return sink.write(documents);
+            } catch (RuntimeException e) {
+                lastError = e.getMessage();
+                if (closed && System.currentTimeMillis() >= closeDeadline) {
+                    return null;
+                }
+                retries.incrementAndGet();
+                LockSupport.parkNanos(this, retryDelayNanos);
+            }
+        }
+    }
+
+    /**
+     * Write the documents of a segment left by a previous run, then delete it. A line cut short by the
+     * crash is skipped
+     * @return false if the buffer was closed before the segment could be written
+     */
+    private boolean replay(Path path) {
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            List<Document> batch = new ArrayList<>(maxBatch);
+            String line;
+            boolean more = true;
+            while (more) {
+                line = reader.readLine();
+                more = line != null;
+                if (more && !line.isBlank()) {
+                    try {
+                        batch.add(Document.parse(line));
+                    } catch (RuntimeException e) {
+                        // The last line, cut short by the crash
+                        replayFailed.incrementAndGet();
+                    }
+                }
+                if (batch.size() == maxBatch || !more && !batch.isEmpty()) {
+                    Map<Integer, String> errors = writeWithRetry(batch);
+                    if (errors == null) {
+                        return false;
+                    }
+                    replayed.addAndGet(batch.size() - errors.size());
+                    replayFailed.addAndGet(errors.size());
+                    batch.clear();
+                }
+            }
+        } catch (IOException e) {
+            walFailures.incrementAndGet();
+            lastError = e.getMessage();
+            return true;
+        }
+        delete(path);
+        return true;
+    }
+
+    private void append(Document document, long seq) throws IOException {
+        if (segment == null || segmentBytes >= wal.segmentBytes()) {
+            closeSegment();
+            segmentPath = wal.dir().resolve(String.format("%s%06d%s", segmentPrefix, ++segmentNumber, SEGMENT_SUFFIX));
+            segment = FileChannel.open(segmentPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+            segmentBytes = 0;
+        }
+        ByteBuffer bytes = StandardCharsets.UTF_8.encode(document.toJson(WAL_JSON) + "\n");
+        segmentBytes += bytes.remaining();
+        while (bytes.hasRemaining()) {
+            segment.write(bytes);
+        }
+        if (wal.sync()) {
+            segment.force(false);
+        }
+        segmentLastSeq = seq;
+    }
+
+    /**
+     * Drop the log of everything up to seq, which has been committed
+     */
+    private void committedThrough(long seq) {
+        synchronized (walLock) {
+            while (!fullSegments.isEmpty() && fullSegments.peek().lastSeq() <= seq) {
+                delete(fullSegments.poll().path());
+            }
+            if (segment != null && segmentBytes > 0 && segmentLastSeq <= seq) {
+                try {
+                    segment.truncate(0);
+                    segmentBytes = 0;
+                } catch (IOException e) {
+                    walFailures.incrementAndGet();
+                    lastError = e.getMessage();
+                }
+            }
+        }
+    }
+
+    /**
+     * Close the current segment: deleted if empty, otherwise kept until its documents are committed
+     */
+    private void closeSegment() {
+        if (segment == null) {
+            return;
+        }
+        try {
+            segment.close();
+        } catch (IOException e) {
+            walFailures.incrementAndGet();
+            lastError = e.getMessage();
+        }
+        if (segmentBytes == 0) {
+            delete(segmentPath);
+        } else {
+            fullSegments.add(new Segment(segmentPath, segmentLastSeq));
+        }
+        segment = null;
+    }
+
+    private void delete(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            walFailures.incrementAndGet();
+            lastError = e.getMessage();
+        }
+    }
+
+    /**
+     * Get buffer statistics
+     * @return Map of queued documents, accepted/rejected/committed/failed counters, batches and their
+     * average size, retries, documents replayed from the write-ahead log and the last error
+     */
+    public Map<String, Object> getStats() {
+        long batchCount = batches.get();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("capacity", capacity);
+        stats.put("maxBatch", maxBatch);
+        stats.put("flushIntervalMs", TimeUnit.NANOSECONDS.toMillis(flushIntervalNanos));
+        stats.put("queued", Math.max(0, depth.get()));
+        stats.put("accepted", accepted.get());
+        stats.put("rejected", rejected.get());
+        stats.put("committed", committed.get());
+        stats.put("failed", failed.get());
+        stats.put("batches", batchCount);
+        stats.put("avgBatchSize", batchCount == 0 ? 0.0 : (double) (committed.get() + failed.get()) / batchCount);
+        stats.put("retries", retries.get());
+        stats.put("writeAheadLog", wal != null);
+        if (wal != null) {
+            stats.put("replayed", replayed.get());
+            stats.put("replayFailed", replayFailed.get());
+            stats.put("walFailures", walFailures.get());
+        }
+        stats.put("lastError", lastError);
+        return stats;
+    }
+}
@@ -0,0 +1,86 @@
+package com.jio.jcpaura.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * What Ollama reported about one generation: token counts and its own timings
+ * (load, prompt evaluation, generation), from the final response object or stream chunk.
+ * Filled in by {@link OllamaService} when passed through {@link GenerationOptions#stats}.
+ */
+public class ModelCallStats {
+
+    private volatile boolean cached;
+    private volatile long promptTokens;
+    private volatile long completionTokens;
+    private volatile long loadNanos;
+    private volatile long promptEvalNanos;
+    private volatile long evalNanos;
+    private volatile long totalNanos;
+
+    /**
+     * The completion was served from the completion cache; the model did no work
+     */
+    public void markCached() {
+        cached = true;
+    }
+
+    /**
+     * Read prompt_eval_count, eval_count and the *_duration fields (nanoseconds) of a done response
+     */
+    public void fill(JsonNode response) {
+        promptTokens = response.path("prompt_eval_count").asLong(0);
+        completionTokens = response.path("eval_count").asLong(0);
+        loadNanos = response.path("load_duration").asLong(0);
+        promptEvalNanos = response.path("prompt_eval_duration").asLong(0);
+        evalNanos = response.path("eval_duration").asLong(0);
+        totalNanos = response.path("total_duration").asLong(0);
+    }
+
+    public boolean isCached() {
+        return cached;
+    }
+
+    public long getPromptTokens() {
+        return promptTokens;
+    }
+
+    public long getCompletionTokens() {
+        return completionTokens;
+    }
+
+    public long getLoadNanos() {
+        return loadNanos;
+    }
+
+    public long getPromptEvalNanos() {
+        return promptEvalNanos;
+    }
+
+    public long getEvalNanos() {
+        return evalNanos;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    /**
+     * @return Map of cached flag, token counts and durations in milliseconds
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("cached", cached);
+        if (!cached) {
+            map.put("promptTokens", promptTokens);
+            map.put("completionTokens", completionTokens);
+            map.put("loadMs", loadNanos / 1_000_000.0);
+            map.put("promptEvalMs", promptEvalNanos / 1_000_000.0);
+            map.put("evalMs", evalNanos / 1_000_000.0);
+            map.put("totalMs", totalNanos / 1_000_000.0);
+        }
+        return map;
+    }
+}
@@ -0,0 +1,139 @@
+package com.jio.jcpaura.service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One Ollama server: its routing state (outstanding requests, health) and the result of the last probe
+ */
+public class OllamaBackend {
+
+    private final String baseUrl;
+    private final CircuitBreaker circuitBreaker;
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final AtomicLong totalRequests = new AtomicLong();
+    private final AtomicLong failedRequests = new AtomicLong();
+
+    private volatile boolean healthy = true;
+    private volatile int consecutiveFailures;
+    private volatile long lastProbeAt;
+    private volatile long lastProbeLatencyMs;
+    private volatile String lastError;
+    private volatile String modelsJson;
+    private volatile List<String> modelNames = List.of();
+    private volatile Boolean modelPreloaded;
+
+    public OllamaBackend(String baseUrl, CircuitBreaker circuitBreaker) {
+        this.baseUrl = baseUrl;
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    public boolean isHealthy() {
+        return healthy;
+    }
+
+    /**
+     * Breaker tracking failures of real calls to this backend (probes do not count)
+     */
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public int getOutstanding() {
+        return outstanding.get();
+    }
+
+    /**
+     * Mark a request as started on this backend
+     */
+    public void begin() {
+        outstanding.incrementAndGet();
+        totalRequests.incrementAndGet();
+    }
+
+    /**
+     * Mark a request as finished on this backend
+     */
+    public void end() {
+        outstanding.decrementAndGet();
+    }
+
+    /**
+     * Record a successful probe; re-admits an ejected backend
+     */
+    public synchronized void recordSuccess() {
+        consecutiveFailures = 0;
+        healthy = true;
+    }
+
+    /**
+     * Record a failed probe; ejects the backend once {@code ejectThreshold} failures happen in a row
+     */
+    public synchronized void recordFailure(String error, int ejectThreshold) {
+        consecutiveFailures++;
+        lastError = error;
+        if (consecutiveFailures >= ejectThreshold) {
+            healthy = false;
+        }
+    }
+
+    public void recordRequestFailure() {
+        failedRequests.incrementAndGet();
+    }
+
+    /**
+     * Store the outcome of a successful /api/tags probe
+     */
+    public void recordProbe(long latencyMs, String modelsJson, List<String> modelNames) {
+        this.lastProbeAt = System.currentTimeMillis();
+        this.lastProbeLatencyMs = latencyMs;
+        this.modelsJson = modelsJson;
+        this.modelNames = modelNames;
+    }
+
+    /**
+     * Record whether the startup model preload succeeded on this backend
+     */
+    public void recordPreload(boolean success) {
+        this.modelPreloaded = success;
+    }
+
+    public void recordProbeAttempt() {
+        this.lastProbeAt = System.currentTimeMillis();
+    }
+
+    /**
+     * Raw /api/tags response from the last successful probe, or null if never probed
+     */
+    public String getModelsJson() {
+        return modelsJson;
+    }
+
+    /**
+     * Get backend state
+     * @return Map of health, load and last probe details
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("url", baseUrl);
+        status.put("healthy", healthy);
+        status.put("outstanding", outstanding.get());
+        status.put("totalRequests", totalRequests.get());
+        status.put("failedRequests", failedRequests.get());
+        status.put("consecutiveFailures", consecutiveFailures);
+        status.put("lastProbeAt", lastProbeAt);
+        status.put("lastProbeLatencyMs", lastProbeLatencyMs);
+        status.put("lastError", lastError);
+        status.put("models", modelNames);
+        status.put("modelPreloaded", modelPreloaded);
+        status.put("circuitBreaker", circuitBreaker.getStats());
+        return status;
+    }
+}
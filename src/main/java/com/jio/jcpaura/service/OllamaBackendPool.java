@@ -0,0 +1,173 @@
+package com.jio.jcpaura.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The set of Ollama servers calls are spread across.
+ * Each call goes to the healthy backend with the fewest outstanding requests (ties rotate).
+ * Backends are probed in the background via /api/tags; repeated probe failures eject a backend and a
+ * successful probe re-admits it. Failures of real calls feed each backend's {@link CircuitBreaker}.
+ */
+@Component
+public class OllamaBackendPool {
+
+    @Value("${ollama.base-urls:${ollama.base-url:http://localhost:11434}}")
+    private String[] baseUrls;
+
+    @Value("${ollama.health.eject-after-failures:2}")
+    private int ejectAfterFailures;
+
+    @Value("${ollama.circuit-breaker.failure-threshold:5}")
+    private int breakerFailureThreshold;
+
+    @Value("${ollama.circuit-breaker.open-duration-ms:30000}")
+    private long breakerOpenDurationMs;
+
+    @Autowired
+    private OllamaClient ollamaClient;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicInteger rotation = new AtomicInteger();
+    private List<OllamaBackend> backends;
+
+    @PostConstruct
+    public void init() {
+        backends = Arrays.stream(baseUrls)
+                .map(String::trim)
+                .filter(url -> !url.isEmpty())
+                .map(url -> url.endsWith("/") ? url.substring(0, url.length() - 1) : url)
+                .distinct()
+                .map(url -> new OllamaBackend(url, new CircuitBreaker(breakerFailureThreshold, breakerOpenDurationMs)))
+                .toList();
+        if (backends.isEmpty()) {
+            throw new IllegalStateException("No Ollama backends configured (ollama.base-urls)");
+        }
+    }
+
+    /**
+     * Pick the backend for the next call and reserve its circuit breaker permission.
+     * Least outstanding requests among healthy backends whose circuit is not open. If every backend
+     * is ejected by the probes, ejected ones are still tried as long as their circuit allows it,
+     * since probe results can be stale. Backends with an open circuit are never chosen.
+     * @param exclude Backends not to use (e.g. the one already serving the primary of a hedged call)
+     * @return The chosen backend, or null if none can take the call
+     */
+    public OllamaBackend acquire(Set<OllamaBackend> exclude) {
+        Set<OllamaBackend> refused = new HashSet<>(exclude);
+        while (true) {
+            List<OllamaBackend> permitted = backends.stream()
+                    .filter(b -> !refused.contains(b) && b.getCircuitBreaker().isCallPermitted())
+                    .toList();
+            List<OllamaBackend> candidates = permitted.stream().filter(OllamaBackend::isHealthy).toList();
+            if (candidates.isEmpty()) {
+                candidates = permitted;
+            }
+            if (candidates.isEmpty()) {
+                return null;
+            }
+
+            OllamaBackend best = leastOutstanding(candidates);
+            if (best.getCircuitBreaker().tryAcquirePermission()) {
+                return best;
+            }
+            // Lost a race for the half-open trial slot; try the others
+            refused.add(best);
+        }
+    }
+
+    private OllamaBackend leastOutstanding(List<OllamaBackend> candidates) {
+        int offset = Math.floorMod(rotation.getAndIncrement(), candidates.size());
+        OllamaBackend best = null;
+        for (int i = 0; i < candidates.size(); i++) {
+            OllamaBackend candidate = candidates.get((offset + i) % candidates.size());
+            if (best == null || candidate.getOutstanding() < best.getOutstanding()) {
+                best = candidate;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Record the outcome of a call routed to {@code backend}
+     */
+    public void recordCallFailure(OllamaBackend backend) {
+        backend.recordRequestFailure();
+        backend.getCircuitBreaker().recordFailure();
+    }
+
+    public void recordCallSuccess(OllamaBackend backend) {
+        backend.getCircuitBreaker().recordSuccess();
+    }
+
+    /**
+     * The call was abandoned (cancelled) or rejected as a bad request: it says nothing about backend health
+     */
+    public void recordCallReleased(OllamaBackend backend) {
+        backend.getCircuitBreaker().releasePermission();
+    }
+
+    /**
+     * Probe every backend's /api/tags, updating health and the cached model list
+     */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${ollama.health.interval-ms:10000}")
+    public void probeBackends() {
+        for (OllamaBackend backend : backends) {
+            long start = System.currentTimeMillis();
+            try {
+                String tags = ollamaClient.get(backend.getBaseUrl() + "/api/tags", ollamaClient.getProbeTimeout());
+                backend.recordProbe(System.currentTimeMillis() - start, tags, parseModelNames(tags));
+                backend.recordSuccess();
+            } catch (Exception e) {
+                backend.recordProbeAttempt();
+                backend.recordFailure(e.getMessage(), ejectAfterFailures);
+            }
+        }
+    }
+
+    private List<String> parseModelNames(String tags) {
+        List<String> names = new ArrayList<>();
+        try {
+            for (JsonNode model : objectMapper.readTree(tags).path("models")) {
+                names.add(model.path("name").asText());
+            }
+        } catch (Exception e) {
+            // Leave the list empty; health is decided by reachability, not by the payload
+        }
+        return names;
+    }
+
+    public Collection<OllamaBackend> getBackends() {
+        return backends;
+    }
+
+    public int size() {
+        return backends.size();
+    }
+
+    public boolean isAnyHealthy() {
+        return backends.stream().anyMatch(OllamaBackend::isHealthy);
+    }
+
+    /**
+     * Get the state of every backend
+     * @return List of per-backend status maps
+     */
+    public List<Map<String, Object>> getStatus() {
+        return backends.stream().map(OllamaBackend::getStatus).toList();
+    }
+}
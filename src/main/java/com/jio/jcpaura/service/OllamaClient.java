@@ -0,0 +1,302 @@
+package com.jio.jcpaura.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.hc.client5.http.classic.methods.HttpGet;
+import org.apache.hc.client5.http.classic.methods.HttpPost;
+import org.apache.hc.client5.http.classic.methods.HttpUriRequestBase;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * HTTP transport for the Ollama API.
+ * Keeps a bounded pool of keep-alive connections, applies connect/lease timeouts globally and
+ * a response timeout per call, and tracks pool and in-flight statistics.
+ */
+@Component
+public class OllamaClient {
+
+    @Value("${ollama.client.max-connections:20}")
+    private int maxConnections;
+
+    @Value("${ollama.client.max-connections-per-route:10}")
+    private int maxConnectionsPerRoute;
+
+    @Value("${ollama.client.connect-timeout-ms:2000}")
+    private long connectTimeoutMs;
+
+    @Value("${ollama.client.connection-request-timeout-ms:5000}")
+    private long connectionRequestTimeoutMs;
+
+    @Value("${ollama.client.generate-timeout-ms:120000}")
+    private long generateTimeoutMs;
+
+    @Value("${ollama.client.probe-timeout-ms:3000}")
+    private long probeTimeoutMs;
+
+    @Value("${ollama.client.keep-alive-ms:60000}")
+    private long keepAliveMs;
+
+    @Value("${ollama.client.idle-evict-ms:30000}")
+    private long idleEvictMs;
+
+    private PoolingHttpClientConnectionManager connectionManager;
+    private CloseableHttpClient httpClient;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+    private final AtomicLong totalRequests = new AtomicLong();
+    private final AtomicLong failedRequests = new AtomicLong();
+    private final AtomicLong timedOutRequests = new AtomicLong();
+    private final AtomicLong cancelledRequests = new AtomicLong();
+
+    /**
+     * Non-2xx answer from Ollama. 4xx means the request itself was rejected, so it says nothing
+     * about the health of the backend.
+     */
+    public static class HttpStatusException extends IOException {
+        private final int status;
+
+        public HttpStatusException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+    }
+
+    /**
+     * Thrown by whoever consumes a streamed body (e.g. a token callback whose client disconnected) rather
+     * than by Ollama, so it says nothing about the health of the backend either
+     */
+    public static class ConsumerException extends RuntimeException {
+        public ConsumerException(RuntimeException cause) {
+            super(cause.getMessage(), cause);
+        }
+
+        @Override
+        public synchronized RuntimeException getCause() {
+            return (RuntimeException) super.getCause();
+        }
+    }
+
+    /**
+     * Handle for aborting a call from another thread (e.g. the losing half of a hedged request).
+     * Cancelling before the call starts makes it fail as soon as it is issued.
+     */
+    public static class CallControl {
+        private volatile HttpUriRequestBase request;
+        private volatile boolean cancelled;
+
+        private void attach(HttpUriRequestBase request) {
+            this.request = request;
+            if (cancelled) {
+                request.cancel();
+            }
+        }
+
+        public void cancel() {
+            cancelled = true;
+            HttpUriRequestBase current = request;
+            if (current != null) {
+                current.cancel();
+            }
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    /**
+     * Callback that consumes a streamed response body while the connection is still leased
+     */
+    @FunctionalInterface
+    public interface StreamHandler<T> {
+        T handle(InputStream body) throws IOException;
+    }
+
+    @PostConstruct
+    public void init() {
+        connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnectionsPerRoute)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+                        .setValidateAfterInactivity(TimeValue.ofMilliseconds(idleEvictMs / 2))
+                        .build())
+                .build();
+
+        httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.ofMilliseconds(connectionRequestTimeoutMs))
+                        .setResponseTimeout(Timeout.ofMilliseconds(generateTimeoutMs))
+                        .build())
+                .setKeepAliveStrategy((response, context) -> TimeValue.ofMilliseconds(keepAliveMs))
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofMilliseconds(idleEvictMs))
+                .build();
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        httpClient.close();
+    }
+
+    /**
+     * Default response timeout for generation calls
+     */
+    public Duration getGenerateTimeout() {
+        return Duration.ofMillis(generateTimeoutMs);
+    }
+
+    /**
+     * Response timeout for cheap metadata calls such as /api/tags
+     */
+    public Duration getProbeTimeout() {
+        return Duration.ofMillis(probeTimeoutMs);
+    }
+
+    /**
+     * POST a JSON body and return the full response body
+     * @param url Absolute URL of the Ollama endpoint
+     * @param jsonBody Request body
+     * @param responseTimeout Maximum time to wait for response data
+     * @return Response body as a string
+     * @throws IOException on transport failure, timeout or non-2xx status
+     */
+    public String post(String url, String jsonBody, Duration responseTimeout) throws IOException {
+        return post(url, jsonBody, responseTimeout, null);
+    }
+
+    /**
+     * POST a JSON body and return the full response body; the call can be aborted through {@code control}
+     * @throws IOException on transport failure, timeout, cancellation or non-2xx status
+     */
+    public String post(String url, String jsonBody, Duration responseTimeout, CallControl control) throws IOException {
+        return postStreaming(url, jsonBody, responseTimeout, control,
+                body -> new String(body.readAllBytes(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * POST a JSON body and hand the response stream to {@code handler}.
+     * The response timeout applies between reads, so a long stream is fine as long as it keeps producing.
+     * @throws IOException on transport failure, timeout or non-2xx status
+     */
+    public <T> T postStreaming(String url, String jsonBody, Duration responseTimeout,
+                               StreamHandler<T> handler) throws IOException {
+        return postStreaming(url, jsonBody, responseTimeout, null, handler);
+    }
+
+    /**
+     * Streaming POST that can be aborted through {@code control}
+     * @throws IOException on transport failure, timeout, cancellation or non-2xx status
+     */
+    public <T> T postStreaming(String url, String jsonBody, Duration responseTimeout, CallControl control,
+                               StreamHandler<T> handler) throws IOException {
+        HttpPost request = new HttpPost(url);
+        request.setEntity(new StringEntity(jsonBody, ContentType.APPLICATION_JSON));
+        if (control != null) {
+            control.attach(request);
+        }
+        return execute(request, responseTimeout, handler);
+    }
+
+    /**
+     * GET a URL and return the full response body
+     * @throws IOException on transport failure, timeout or non-2xx status
+     */
+    public String get(String url, Duration responseTimeout) throws IOException {
+        return execute(new HttpGet(url), responseTimeout,
+                body -> new String(body.readAllBytes(), StandardCharsets.UTF_8));
+    }
+
+    private <T> T execute(HttpUriRequestBase request, Duration responseTimeout,
+                          StreamHandler<T> handler) throws IOException {
+        request.setConfig(RequestConfig.custom()
+                .setConnectionRequestTimeout(Timeout.ofMilliseconds(connectionRequestTimeoutMs))
+                .setResponseTimeout(Timeout.of(responseTimeout))
+                .build());
+
+        totalRequests.incrementAndGet();
+        peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        try {
+            return httpClient.execute(request, response -> {
+                int status = response.getCode();
+                if (status < 200 || status >= 300) {
+                    String error = response.getEntity() != null ? EntityUtils.toString(response.getEntity()) : "";
+                    throw new HttpStatusException(status, "Ollama returned HTTP " + status + ": " + error);
+                }
+                if (response.getEntity() == null) {
+                    throw new IOException("Empty response from Ollama");
+                }
+                try (InputStream body = response.getEntity().getContent()) {
+                    return handler.handle(body);
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            if (request.isCancelled()) {
+                cancelledRequests.incrementAndGet();
+            } else if (!(e instanceof ConsumerException)) {
+                failedRequests.incrementAndGet();
+                if (e instanceof InterruptedIOException) {
+                    timedOutRequests.incrementAndGet();
+                }
+            }
+            throw e;
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    /**
+     * Get connection pool and request statistics
+     * @return Map of pool usage, in-flight and failure counters
+     */
+    public Map<String, Object> getStats() {
+        PoolStats pool = connectionManager.getTotalStats();
+        Map<String, Object> poolStats = new HashMap<>();
+        poolStats.put("leased", pool.getLeased());
+        poolStats.put("available", pool.getAvailable());
+        poolStats.put("pending", pool.getPending());
+        poolStats.put("max", pool.getMax());
+        poolStats.put("maxPerRoute", maxConnectionsPerRoute);
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("pool", poolStats);
+        stats.put("inFlight", inFlight.get());
+        stats.put("peakInFlight", peakInFlight.get());
+        stats.put("totalRequests", totalRequests.get());
+        stats.put("failedRequests", failedRequests.get());
+        stats.put("timedOutRequests", timedOutRequests.get());
+        stats.put("cancelledRequests", cancelledRequests.get());
+        stats.put("generateTimeoutMs", generateTimeoutMs);
+        stats.put("connectTimeoutMs", connectTimeoutMs);
+        return stats;
+    }
+}
@@ -0,0 +1,38 @@
+package com.jio.jcpaura.service;
+
+/**
+ * Thrown when a model call is refused up front: the {@link OllamaScheduler} queue is full (rejected
+ * immediately), the call waited past its queue deadline, or every backend's circuit breaker is open.
+ */
+public class OllamaOverloadedException extends RuntimeException {
+
+    public enum Reason {
+        QUEUE_FULL,
+        QUEUE_TIMEOUT,
+        BACKENDS_UNAVAILABLE
+    }
+
+    private final Reason reason;
+    private final long retryAfterSeconds;
+
+    public OllamaOverloadedException(Reason reason, String message, long retryAfterSeconds) {
+        super(message);
+        this.reason = reason;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+
+    /**
+     * HTTP status to report: 429 when the queue is full, 503 when the queue deadline expired or no backend is available
+     */
+    public int getHttpStatus() {
+        return reason == Reason.QUEUE_FULL ? 429 : 503;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,351 @@
+package com.jio.jcpaura.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Resilience layer between {@link OllamaService} and the backends.
+ * - Every call goes through the chosen backend's circuit breaker; if all circuits are open the call
+ *   is refused immediately.
+ * - Latency is tracked per operation (entity, query_build, format, ...). Once enough samples exist,
+ *   the response timeout adapts to the observed tail, and a call still running after the configured
+ *   latency percentile gets a hedged duplicate on another backend; the first success wins and the
+ *   other is cancelled.
+ */
+@Component
+public class OllamaResilience {
+
+    @Value("${ollama.hedging.enabled:true}")
+    private boolean hedgingEnabled;
+
+    @Value("${ollama.hedging.percentile:0.95}")
+    private double hedgingPercentile;
+
+    @Value("${ollama.hedging.min-delay-ms:250}")
+    private long hedgingMinDelayMs;
+
+    @Value("${ollama.adaptive-timeout.enabled:true}")
+    private boolean adaptiveTimeoutEnabled;
+
+    @Value("${ollama.adaptive-timeout.percentile:0.99}")
+    private double timeoutPercentile;
+
+    @Value("${ollama.adaptive-timeout.multiplier:3.0}")
+    private double timeoutMultiplier;
+
+    @Value("${ollama.adaptive-timeout.min-ms:5000}")
+    private long timeoutMinMs;
+
+    @Value("${ollama.latency.min-samples:20}")
+    private int minSamples;
+
+    @Value("${ollama.latency.window-size:256}")
+    private int windowSize;
+
+    @Autowired
+    private OllamaBackendPool backendPool;
+
+    @Autowired
+    private OllamaClient ollamaClient;
+
+    @Autowired
+    private OllamaScheduler scheduler;
+
+    private final ConcurrentHashMap<String, LatencyTracker> latencyByOperation = new ConcurrentHashMap<>();
+    private final ExecutorService hedgeExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final AtomicLong hedgedCalls = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+    private final AtomicLong hedgesSkipped = new AtomicLong();
+    private final AtomicLong circuitRejections = new AtomicLong();
+
+    /**
+     * A call against one backend
+     */
+    @FunctionalInterface
+    public interface BackendCall<T> {
+        T call(String baseUrl, Duration responseTimeout, OllamaClient.CallControl control) throws IOException;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        hedgeExecutor.shutdownNow();
+    }
+
+    /**
+     * Run a complete (non-streaming) call with circuit breaking, adaptive timeout and hedging
+     * @param operation Name the latency statistics are grouped by
+     * @param call The request to issue against the chosen backend
+     * @return The result of whichever attempt succeeded first
+     * @throws IOException if every attempt failed
+     * @throws OllamaOverloadedException if every backend's circuit is open
+     */
+    public <T> T execute(String operation, BackendCall<T> call) throws IOException {
+        return execute(operation, null, call);
+    }
+
+    /**
+     * {@link #execute(String, BackendCall)} whose attempts are aborted when {@code cancellation} fires
+     * @param cancellation Cancellation signal, or null
+     */
+    public <T> T execute(String operation, Cancellation cancellation, BackendCall<T> call) throws IOException {
+        LatencyTracker latency = tracker(operation);
+        Duration timeout = responseTimeout(latency);
+        long hedgeDelay = hedgeDelayMillis(latency);
+
+        OllamaBackend primaryBackend = acquireBackend(Set.of());
+        OllamaClient.CallControl primaryControl = control(cancellation);
+
+        if (hedgeDelay < 0 || backendPool.size() < 2) {
+            return attempt(primaryBackend, latency, timeout, primaryControl, call);
+        }
+
+        CompletableFuture<T> primary = submit(primaryBackend, latency, timeout, primaryControl, call, null);
+        try {
+            return primary.get(hedgeDelay, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // Slower than the hedge percentile: fall through and try a second backend
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        } catch (InterruptedException e) {
+            primaryControl.cancel();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for Ollama");
+        }
+
+        OllamaBackend hedgeBackend = backendPool.acquire(Set.of(primaryBackend));
+        OllamaScheduler.Permit hedgePermit = hedgeBackend != null ? scheduler.tryAcquire() : null;
+        if (hedgePermit == null) {
+            // No spare backend or no spare model slot: hedging would only add load
+            if (hedgeBackend != null) {
+                backendPool.recordCallReleased(hedgeBackend);
+            }
+            hedgesSkipped.incrementAndGet();
+            return await(primary, primaryControl);
+        }
+
+        hedgedCalls.incrementAndGet();
+        OllamaClient.CallControl hedgeControl = control(cancellation);
+        CompletableFuture<T> hedge = submit(hedgeBackend, latency, timeout, hedgeControl, call, hedgePermit);
+        return firstSuccessful(primary, primaryControl, hedge, hedgeControl);
+    }
+
+    /**
+     * Run a streaming call: circuit breaking only. A stream cannot be hedged once tokens have been
+     * forwarded, and its duration depends on the output length, so it keeps the fixed response timeout.
+     * @param cancellation Cancellation signal that aborts the stream, or null
+     * @throws IOException if the call failed
+     * @throws OllamaOverloadedException if every backend's circuit is open
+     */
+    public <T> T executeStreaming(Cancellation cancellation, BackendCall<T> call) throws IOException {
+        OllamaBackend backend = acquireBackend(Set.of());
+        return attempt(backend, null, ollamaClient.getGenerateTimeout(), control(cancellation), call);
+    }
+
+    /**
+     * Control of one attempt, cancelled together with the caller's cancellation signal
+     */
+    private static OllamaClient.CallControl control(Cancellation cancellation) {
+        OllamaClient.CallControl control = new OllamaClient.CallControl();
+        if (cancellation != null) {
+            cancellation.onCancel(control::cancel);
+        }
+        return control;
+    }
+
+    private OllamaBackend acquireBackend(Set<OllamaBackend> exclude) {
+        OllamaBackend backend = backendPool.acquire(exclude);
+        if (backend == null) {
+            circuitRejections.incrementAndGet();
+            throw new OllamaOverloadedException(OllamaOverloadedException.Reason.BACKENDS_UNAVAILABLE,
+                    "No Ollama backend is available: every circuit breaker is open", 5);
+        }
+        return backend;
+    }
+
+    /**
+     * One attempt against one backend, feeding the outcome into its circuit breaker and the latency window
+     */
+    private <T> T attempt(OllamaBackend backend, LatencyTracker latency, Duration timeout,
+                          OllamaClient.CallControl control, BackendCall<T> call) throws IOException {
+        backend.begin();
+        long start = System.nanoTime();
+        try {
+            T result = call.call(backend.getBaseUrl(), timeout, control);
+            backendPool.recordCallSuccess(backend);
+            if (latency != null) {
+                latency.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }
+            return result;
+        } catch (OllamaClient.HttpStatusException e) {
+            if (e.getStatus() >= 500) {
+                backendPool.recordCallFailure(backend);
+            } else {
+                backendPool.recordCallReleased(backend);
+            }
+            throw e;
+        } catch (OllamaClient.ConsumerException e) {
+            // The caller stopped reading: the backend was fine
+            backendPool.recordCallReleased(backend);
+            throw e.getCause();
+        } catch (IOException | RuntimeException e) {
+            if (control.isCancelled()) {
+                backendPool.recordCallReleased(backend);
+            } else {
+                backendPool.recordCallFailure(backend);
+            }
+            throw e;
+        } finally {
+            backend.end();
+        }
+    }
+
+    private <T> CompletableFuture<T> submit(OllamaBackend backend, LatencyTracker latency, Duration timeout,
+                                            OllamaClient.CallControl control, BackendCall<T> call,
+                                            OllamaScheduler.Permit permit) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return attempt(backend, latency, timeout, control, call);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            } finally {
+                if (permit != null) {
+                    permit.close();
+                }
+            }
+        }, hedgeExecutor);
+    }
+
+    private <T> T await(CompletableFuture<T> future, OllamaClient.CallControl control) throws IOException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        } catch (InterruptedException e) {
+            control.cancel();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for Ollama");
+        }
+    }
+
+    /**
+     * Wait for the first attempt to succeed (or both to fail), then cancel the other
+     */
+    private <T> T firstSuccessful(CompletableFuture<T> primary, OllamaClient.CallControl primaryControl,
+                                  CompletableFuture<T> hedge, OllamaClient.CallControl hedgeControl)
+            throws IOException {
+        CompletableFuture<T> winner = new CompletableFuture<>();
+        AtomicInteger failures = new AtomicInteger();
+        AtomicReference<CompletableFuture<T>> first = new AtomicReference<>();
+
+        for (CompletableFuture<T> attempt : List.of(primary, hedge)) {
+            attempt.whenComplete((value, error) -> {
+                if (error == null) {
+                    if (first.compareAndSet(null, attempt)) {
+                        winner.complete(value);
+                    }
+                } else if (failures.incrementAndGet() == 2) {
+                    winner.completeExceptionally(error);
+                }
+            });
+        }
+
+        try {
+            T result = winner.get();
+            if (first.get() == hedge) {
+                hedgeWins.incrementAndGet();
+            }
+            return result;
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for Ollama");
+        } finally {
+            primaryControl.cancel();
+            hedgeControl.cancel();
+        }
+    }
+
+    private IOException unwrap(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof IOException io) {
+            return io;
+        }
+        if (cause instanceof RuntimeException runtime) {
+            throw runtime;
+        }
+        return new IOException(cause.getMessage(), cause);
+    }
+
+    private LatencyTracker tracker(String operation) {
+        return latencyByOperation.computeIfAbsent(operation, op -> new LatencyTracker(windowSize));
+    }
+
+    /**
+     * Response timeout: the configured maximum until enough samples exist, then
+     * {@code multiplier x p(percentile)} of observed latency, clamped to [min, maximum]
+     */
+    private Duration responseTimeout(LatencyTracker latency) {
+        Duration maximum = ollamaClient.getGenerateTimeout();
+        if (!adaptiveTimeoutEnabled || latency.getCount() < minSamples) {
+            return maximum;
+        }
+        long adaptive = (long) (latency.percentile(timeoutPercentile) * timeoutMultiplier);
+        return Duration.ofMillis(Math.max(timeoutMinMs, Math.min(adaptive, maximum.toMillis())));
+    }
+
+    /**
+     * How long to wait for the primary before hedging, or -1 to not hedge this call
+     */
+    private long hedgeDelayMillis(LatencyTracker latency) {
+        if (!hedgingEnabled || latency.getCount() < minSamples) {
+            return -1;
+        }
+        return Math.max(hedgingMinDelayMs, latency.percentile(hedgingPercentile));
+    }
+
+    /**
+     * Get resilience statistics
+     * @return Map of hedging counters and per-operation latency, hedge delay and timeout
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> operations = new HashMap<>();
+        latencyByOperation.forEach((operation, latency) -> {
+            Map<String, Object> operationStats = new HashMap<>(latency.getStats());
+            operationStats.put("responseTimeoutMs", responseTimeout(latency).toMillis());
+            operationStats.put("hedgeDelayMs", hedgeDelayMillis(latency));
+            operations.put(operation, operationStats);
+        });
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("operations", operations);
+        stats.put("hedgingEnabled", hedgingEnabled);
+        stats.put("hedgedCalls", hedgedCalls.get());
+        stats.put("hedgeWins", hedgeWins.get());
+        stats.put("hedgesSkipped", hedgesSkipped.get());
+        stats.put("circuitRejections", circuitRejections.get());
+        return stats;
+    }
+}
@@ -0,0 +1,200 @@
+package com.jio.jcpaura.service;
+
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Admission control for model calls.
+ * At most {@code maxConcurrent} calls run at once; further callers wait in a bounded queue ordered
+ * by {@link RequestPriority} and then arrival. A full queue rejects immediately, and a caller that
+ * is not admitted within {@code maxQueueWaitMillis} gives up, both with {@link OllamaOverloadedException}.
+ */
+public class OllamaScheduler {
+
+    /**
+     * A granted execution slot. Closing it admits the next queued caller.
+     */
+    public final class Permit implements AutoCloseable {
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                release();
+            }
+        }
+    }
+
+    private static final class Waiter {
+        private final RequestPriority priority;
+        private final long sequence;
+        private final Condition admitted;
+        private boolean granted;
+
+        private Waiter(RequestPriority priority, long sequence, Condition admitted) {
+            this.priority = priority;
+            this.sequence = sequence;
+            this.admitted = admitted;
+        }
+    }
+
+    private final int maxConcurrent;
+    private final int maxQueueDepth;
+    private final long maxQueueWaitMillis;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final PriorityQueue<Waiter> queue = new PriorityQueue<>(
+            Comparator.<Waiter, Integer>comparing(w -> w.priority.ordinal()).thenComparingLong(w -> w.sequence));
+    private int running;
+    private long sequence;
+
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong rejectedQueueFull = new AtomicLong();
+    private final AtomicLong rejectedTimeout = new AtomicLong();
+    private final AtomicLong totalQueueWaitNanos = new AtomicLong();
+    private final AtomicLong queuedAdmissions = new AtomicLong();
+
+    public OllamaScheduler(int maxConcurrent, int maxQueueDepth, long maxQueueWaitMillis) {
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueueDepth = maxQueueDepth;
+        this.maxQueueWaitMillis = maxQueueWaitMillis;
+    }
+
+    /**
+     * Wait for an execution slot
+     * @param priority Scheduling class of the call
+     * @return Permit to close once the call has finished
+     * @throws OllamaOverloadedException if the queue is full or the wait deadline passes
+     * @throws InterruptedException if the caller is interrupted while queued
+     */
+    public Permit acquire(RequestPriority priority) throws InterruptedException {
+        lock.lock();
+        try {
+            if (running < maxConcurrent && queue.isEmpty()) {
+                running++;
+                admitted.incrementAndGet();
+                return new Permit();
+            }
+            if (queue.size() >= maxQueueDepth) {
+                rejectedQueueFull.incrementAndGet();
+                throw new OllamaOverloadedException(OllamaOverloadedException.Reason.QUEUE_FULL,
+                        "Model is busy: " + running + " calls running and " + queue.size() + " queued",
+                        retryAfterSeconds());
+            }
+
+            Waiter waiter = new Waiter(priority, sequence++, lock.newCondition());
+            queue.add(waiter);
+            long start = System.nanoTime();
+            long remaining = TimeUnit.MILLISECONDS.toNanos(maxQueueWaitMillis);
+            try {
+                while (!waiter.granted) {
+                    if (remaining <= 0) {
+                        queue.remove(waiter);
+                        rejectedTimeout.incrementAndGet();
+                        throw new OllamaOverloadedException(OllamaOverloadedException.Reason.QUEUE_TIMEOUT,
+                                "Model call was not admitted within " + maxQueueWaitMillis + " ms",
+                                retryAfterSeconds());
+                    }
+                    remaining = waiter.admitted.awaitNanos(remaining);
+                }
+            } catch (InterruptedException e) {
+                if (waiter.granted) {
+                    releaseLocked();
+                } else {
+                    queue.remove(waiter);
+                }
+                throw e;
+            }
+
+            totalQueueWaitNanos.addAndGet(System.nanoTime() - start);
+            queuedAdmissions.incrementAndGet();
+            admitted.incrementAndGet();
+            return new Permit();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Take an execution slot only if one is free right now and nobody is queued for it
+     * @return Permit, or null if the scheduler is busy
+     */
+    public Permit tryAcquire() {
+        lock.lock();
+        try {
+            if (running < maxConcurrent && queue.isEmpty()) {
+                running++;
+                admitted.incrementAndGet();
+                return new Permit();
+            }
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release() {
+        lock.lock();
+        try {
+            releaseLocked();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void releaseLocked() {
+        running--;
+        Waiter next = queue.poll();
+        if (next != null) {
+            next.granted = true;
+            running++;
+            next.admitted.signal();
+        }
+    }
+
+    private long retryAfterSeconds() {
+        return Math.max(1, TimeUnit.MILLISECONDS.toSeconds(maxQueueWaitMillis) / 2);
+    }
+
+    /**
+     * Get scheduler statistics
+     * @return Map of running and queued calls, limits and admission counters
+     */
+    public Map<String, Object> getStats() {
+        lock.lock();
+        try {
+            Map<RequestPriority, Integer> queuedByPriority = new EnumMap<>(RequestPriority.class);
+            for (RequestPriority priority : RequestPriority.values()) {
+                queuedByPriority.put(priority, 0);
+            }
+            for (Waiter waiter : queue) {
+                queuedByPriority.merge(waiter.priority, 1, Integer::sum);
+            }
+
+            long queuedCount = queuedAdmissions.get();
+            Map<String, Object> stats = new HashMap<>();
+            stats.put("running", running);
+            stats.put("queued", queue.size());
+            stats.put("queuedByPriority", queuedByPriority);
+            stats.put("maxConcurrent", maxConcurrent);
+            stats.put("maxQueueDepth", maxQueueDepth);
+            stats.put("maxQueueWaitMs", maxQueueWaitMillis);
+            stats.put("admitted", admitted.get());
+            stats.put("rejectedQueueFull", rejectedQueueFull.get());
+            stats.put("rejectedTimeout", rejectedTimeout.get());
+            stats.put("avgQueueWaitMs", queuedCount == 0 ? 0.0
+                    : totalQueueWaitNanos.get() / 1_000_000.0 / queuedCount);
+            return stats;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -1,33 +1,79 @@
 package com.jio.jcpaura.service;
 
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.function.Consumer;
 
 @Service
 public class OllamaService {
 
-    @Value("${ollama.base-url:http://localhost:11434}")
-    private String ollamaBaseUrl;
-
     @Value("${ollama.model:qwen2.5-coder:3b}")
     private String modelName;
 
-    private final RestTemplate restTemplate;
+    @Value("${ollama.embedding-model:nomic-embed-text}")
+    private String embeddingModelName;
+
+    @Value("${ollama.api-mode:chat}")
+    private String apiMode;
+
+    @Value("${ollama.keep-alive:30m}")
+    private String keepAlive;
+
+    @Value("${ollama.preload.enabled:true}")
+    private boolean preloadEnabled;
+
+    @Value("${ollama.cache.enabled:true}")
+    private boolean cacheEnabled;
+
+    @Value("${ollama.cache.max-entries:1000}")
+    private int cacheMaxEntries;
+
+    @Value("${ollama.cache.ttl-seconds:600}")
+    private long cacheTtlSeconds;
+
+    @Autowired
+    private OllamaClient ollamaClient;
+
+    @Autowired
+    private OllamaBackendPool backendPool;
+
+    @Autowired
+    private OllamaScheduler scheduler;
+
+    @Autowired
+    private OllamaResilience resilience;
+
     private final ObjectMapper objectMapper;
 
+    private CompletionCache completionCache;
+
     public OllamaService() {
-        this.restTemplate = new RestTemplate();
         this.objectMapper = new ObjectMapper();
     }
 
+    @PostConstruct
+    public void init() {
+        completionCache = new CompletionCache(cacheEnabled ? cacheMaxEntries : 0, cacheTtlSeconds * 1000);
+    }
+
     /**
      * Generate response from Ollama model
      * @param systemPrompt System prompt/context
@@ -36,127 +82,379 @@ public class OllamaService {
      * @throws IOException if API call fails
      */
     public String generateResponse(String systemPrompt, String userPrompt) throws IOException {
-        try {
-            // Combine system and user prompts
-            String combinedPrompt = systemPrompt + "\n\n" + userPrompt;
+        return generate(systemPrompt, userPrompt, GenerationOptions.defaults());
+    }
 
-            // Create request body
-            ObjectNode requestBody = objectMapper.createObjectNode();
-            requestBody.put("model", modelName);
-            requestBody.put("prompt", combinedPrompt);
-            requestBody.put("stream", false);
-            requestBody.put("temperature", 0.7);
-            requestBody.put("top_p", 0.9);
-            requestBody.put("top_k", 40);
-
-            // Set headers
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-
-            // Make request
-            HttpEntity<String> entity = new HttpEntity<>(
-                    objectMapper.writeValueAsString(requestBody),
-                    headers
-            );
-
-            String response = restTemplate.postForObject(
-                    ollamaBaseUrl + "/api/generate",
-                    entity,
-                    String.class
-            );
+    /**
+     * Generate response with custom parameters
+     * @param systemPrompt System prompt/context
+     * @param userPrompt User's prompt/question
+     * @param temperature Temperature for response generation (0.0 - 2.0)
+     * @param topP Top P sampling parameter (0.0 - 1.0)
+     * @param topK Top K sampling parameter
+     * @return Response from the model
+     * @throws IOException if API call fails
+     */
+    public String generateResponseWithParams(String systemPrompt, String userPrompt,
+                                            Double temperature, Double topP, Integer topK) throws IOException {
+        return generate(systemPrompt, userPrompt,
+                new GenerationOptions().temperature(temperature).topP(topP).topK(topK));
+    }
+
+    /**
+     * Generate response from Ollama model, served from the completion cache when possible
+     * @param systemPrompt System prompt/context
+     * @param userPrompt User's prompt/question
+     * @param options Sampling parameters and per-call behaviour
+     * @return Response from the model
+     * @throws IOException if API call fails
+     * @throws OllamaOverloadedException if the call is not admitted by the scheduler or every backend circuit is open
+     */
+    public String generate(String systemPrompt, String userPrompt, GenerationOptions options) throws IOException {
+        CompletionCache.Key cacheKey = cacheKey(systemPrompt, userPrompt, options);
+
+        if (!options.isBypassCache()) {
+            String cached = completionCache.get(cacheKey);
+            if (cached != null) {
+                if (options.getStats() != null) {
+                    options.getStats().markCached();
+                }
+                return cached;
+            }
+        }
+
+        try (OllamaScheduler.Permit permit = acquirePermit(options)) {
+            String requestBody = buildRequestBody(systemPrompt, userPrompt, options, false);
+            String response = resilience.execute(options.getOperation(), options.getCancellation(),
+                    (baseUrl, timeout, control) -> ollamaClient.post(
+                            baseUrl + completionPath(),
+                            requestBody,
+                            timeout,
+                            control
+                    ));
 
             // Parse and extract response
             if (response != null) {
                 JsonNode jsonNode = objectMapper.readTree(response);
-                return jsonNode.get("response").asText();
+                if (options.getStats() != null) {
+                    options.getStats().fill(jsonNode);
+                }
+                String completion = extractText(jsonNode);
+                completionCache.put(cacheKey, completion);
+                return completion;
             }
 
             throw new RuntimeException("Empty response from Ollama");
 
+        } catch (OllamaOverloadedException e) {
+            throw e;
         } catch (Exception e) {
             throw new IOException("Error calling Ollama API: " + e.getMessage(), e);
         }
     }
 
     /**
-     * Generate response with custom parameters
+     * Generate response from Ollama model in streaming mode.
+     * Ollama returns one JSON object per line (NDJSON); each chunk's text is passed to
+     * {@code onToken} as soon as it is read, so callers can forward it before the
+     * completion has finished.
      * @param systemPrompt System prompt/context
      * @param userPrompt User's prompt/question
-     * @param temperature Temperature for response generation (0.0 - 2.0)
-     * @param topP Top P sampling parameter (0.0 - 1.0)
-     * @param topK Top K sampling parameter
-     * @return Response from the model
+     * @param onToken Callback invoked with every text chunk, in order
+     * @return The full response text once the stream is done
      * @throws IOException if API call fails
      */
-    public String generateResponseWithParams(String systemPrompt, String userPrompt,
-                                            Double temperature, Double topP, Integer topK) throws IOException {
-        try {
-            String combinedPrompt = systemPrompt + "\n\n" + userPrompt;
+    public String generateResponseStream(String systemPrompt, String userPrompt,
+                                         Consumer<String> onToken) throws IOException {
+        return generateStream(systemPrompt, userPrompt, GenerationOptions.defaults(), onToken);
+    }
 
-            ObjectNode requestBody = objectMapper.createObjectNode();
-            requestBody.put("model", modelName);
-            requestBody.put("prompt", combinedPrompt);
-            requestBody.put("stream", false);
+    /**
+     * Streaming variant of {@link #generate}. A cache hit is delivered as a single chunk.
+     * @throws IOException if API call fails
+     */
+    public String generateStream(String systemPrompt, String userPrompt, GenerationOptions options,
+                                 Consumer<String> onToken) throws IOException {
+        CompletionCache.Key cacheKey = cacheKey(systemPrompt, userPrompt, options);
 
-            if (temperature != null) {
-                requestBody.put("temperature", temperature);
-            }
-            if (topP != null) {
-                requestBody.put("top_p", topP);
+        if (!options.isBypassCache()) {
+            String cached = completionCache.get(cacheKey);
+            if (cached != null) {
+                if (options.getStats() != null) {
+                    options.getStats().markCached();
+                }
+                onToken.accept(cached);
+                return cached;
             }
-            if (topK != null) {
-                requestBody.put("top_k", topK);
-            }
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-
-            HttpEntity<String> entity = new HttpEntity<>(
-                    objectMapper.writeValueAsString(requestBody),
-                    headers
-            );
+        }
 
-            String response = restTemplate.postForObject(
-                    ollamaBaseUrl + "/api/generate",
-                    entity,
-                    String.class
-            );
+        try (OllamaScheduler.Permit permit = acquirePermit(options)) {
+            String requestBody = buildRequestBody(systemPrompt, userPrompt, options, true);
+            String response = resilience.executeStreaming(options.getCancellation(),
+                    (baseUrl, timeout, control) -> ollamaClient.postStreaming(
+                            baseUrl + completionPath(),
+                            requestBody,
+                            timeout,
+                            control,
+                            body -> readStream(body, onToken, options.getStats(), control)
+                    ));
 
             if (response != null) {
-                JsonNode jsonNode = objectMapper.readTree(response);
-                return jsonNode.get("response").asText();
+                completionCache.put(cacheKey, response);
+                return response;
             }
 
             throw new RuntimeException("Empty response from Ollama");
 
+        } catch (OllamaOverloadedException e) {
+            throw e;
         } catch (Exception e) {
             throw new IOException("Error calling Ollama API: " + e.getMessage(), e);
         }
     }
 
     /**
-     * Check if Ollama service is available
-     * @return true if service is reachable
+     * Embed a text with the embedding model (/api/embed)
+     * @param text Text to embed
+     * @param priority Scheduling class of the call
+     * @return The embedding vector
+     * @throws IOException if API call fails
+     * @throws OllamaOverloadedException if the call is not admitted by the scheduler or every backend circuit is open
      */
-    public boolean isServiceAvailable() {
-        try {
-            restTemplate.getForObject(ollamaBaseUrl + "/api/tags", String.class);
-            return true;
+    public float[] embed(String text, RequestPriority priority) throws IOException {
+        try (OllamaScheduler.Permit permit = acquirePermit(new GenerationOptions().priority(priority))) {
+            ObjectNode requestBody = objectMapper.createObjectNode();
+            requestBody.put("model", embeddingModelName);
+            requestBody.put("input", text);
+            requestBody.put("keep_alive", keepAlive);
+            String body = objectMapper.writeValueAsString(requestBody);
+            String response = resilience.execute("embed",
+                    (baseUrl, timeout, control) -> ollamaClient.post(baseUrl + "/api/embed", body, timeout, control));
+
+            JsonNode vector = response == null ? null : objectMapper.readTree(response).path("embeddings").path(0);
+            if (vector == null || !vector.isArray() || vector.isEmpty()) {
+                throw new RuntimeException("Empty embedding from Ollama");
+            }
+            float[] embedding = new float[vector.size()];
+            for (int i = 0; i < embedding.length; i++) {
+                embedding[i] = (float) vector.get(i).asDouble();
+            }
+            return embedding;
+
+        } catch (OllamaOverloadedException e) {
+            throw e;
         } catch (Exception e) {
-            return false;
+            throw new IOException("Error calling Ollama embed API: " + e.getMessage(), e);
         }
     }
 
     /**
-     * Get available models from Ollama
+     * Wait for a model execution slot according to the call's priority; speculative calls only take a free slot.
+     * A call cancelled while it waited gives its slot back without being sent.
+     */
+    private OllamaScheduler.Permit acquirePermit(GenerationOptions options) throws InterruptedIOException {
+        OllamaScheduler.Permit permit;
+        if (options.isSpeculative()) {
+            permit = scheduler.tryAcquire();
+            if (permit == null) {
+                throw new OllamaOverloadedException(OllamaOverloadedException.Reason.QUEUE_FULL,
+                        "No free model slot for a speculative call", 1);
+            }
+        } else {
+            try {
+                permit = scheduler.acquire(options.getPriority());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for a model slot");
+            }
+        }
+        if (options.getCancellation() != null && options.getCancellation().isCancelled()) {
+            permit.close();
+            throw new CancellationException("Model call cancelled before it was sent");
+        }
+        if (options.getOnAdmitted() != null) {
+            try {
+                options.getOnAdmitted().run();
+            } catch (RuntimeException e) {
+                permit.close();
+                throw e;
+            }
+        }
+        return permit;
+    }
+
+    private boolean isChatMode() {
+        return "chat".equalsIgnoreCase(apiMode);
+    }
+
+    private String completionPath() {
+        return isChatMode() ? "/api/chat" : "/api/generate";
+    }
+
+    /**
+     * Build the request body for the configured API mode.
+     * In chat mode the system prompt is sent as its own leading system message, so the same static
+     * prompt produces the same token prefix on every call and Ollama can reuse its KV cache for it.
+     * In generate mode the prompts are joined into one string. Sampling parameters go under
+     * "options", which is where Ollama reads them from; keep_alive keeps the model resident.
+     */
+    private String buildRequestBody(String systemPrompt, String userPrompt, GenerationOptions options,
+                                    boolean stream) throws IOException {
+        ObjectNode requestBody = objectMapper.createObjectNode();
+        requestBody.put("model", modelName);
+        if (isChatMode()) {
+            ArrayNode messages = requestBody.putArray("messages");
+            messages.addObject().put("role", "system").put("content", systemPrompt);
+            messages.addObject().put("role", "user").put("content", userPrompt);
+        } else {
+            requestBody.put("prompt", systemPrompt + "\n\n" + userPrompt);
+        }
+        requestBody.put("stream", stream);
+        requestBody.put("keep_alive", keepAlive);
+
+        ObjectNode modelOptions = requestBody.putObject("options");
+        if (options.getTemperature() != null) {
+            modelOptions.put("temperature", options.getTemperature());
+        }
+        if (options.getTopP() != null) {
+            modelOptions.put("top_p", options.getTopP());
+        }
+        if (options.getTopK() != null) {
+            modelOptions.put("top_k", options.getTopK());
+        }
+
+        return objectMapper.writeValueAsString(requestBody);
+    }
+
+    /**
+     * Text of a response or stream chunk: "message.content" for /api/chat, "response" for /api/generate
+     */
+    private String extractText(JsonNode node) {
+        if (node.has("message")) {
+            return node.path("message").path("content").asText("");
+        }
+        return node.path("response").asText("");
+    }
+
+    private CompletionCache.Key cacheKey(String systemPrompt, String userPrompt, GenerationOptions options) {
+        return new CompletionCache.Key(modelName, systemPrompt + "\n\n" + userPrompt,
+                options.getTemperature(), options.getTopP(), options.getTopK());
+    }
+
+    /**
+     * Read an NDJSON chat/generate stream, forwarding every chunk and accumulating the full text.
+     * The final chunk's token counts and timings go to {@code stats}, if given. If {@code onToken} throws,
+     * the call is aborted with an {@link OllamaClient.ConsumerException}, which is not held against the backend.
+     */
+    private String readStream(InputStream body, Consumer<String> onToken, ModelCallStats stats,
+                              OllamaClient.CallControl control) throws IOException {
+        StringBuilder fullResponse = new StringBuilder();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            JsonNode chunk = objectMapper.readTree(line);
+            if (chunk.hasNonNull("error")) {
+                throw new IOException(chunk.get("error").asText());
+            }
+            String token = extractText(chunk);
+            if (!token.isEmpty()) {
+                fullResponse.append(token);
+                try {
+                    onToken.accept(token);
+                } catch (RuntimeException e) {
+                    // Nobody reads the rest: abort the connection rather than draining the generation
+                    control.cancel();
+                    throw new OllamaClient.ConsumerException(e);
+                }
+            }
+            if (chunk.path("done").asBoolean(false)) {
+                if (stats != null) {
+                    stats.fill(chunk);
+                }
+                break;
+            }
+        }
+        return fullResponse.toString();
+    }
+
+    /**
+     * Load the model on every backend once the application is up, so the first user request
+     * does not pay the model load. A request without a prompt only loads the model and applies keep_alive.
+     * Runs in the background; failures are left to the health probes.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void preloadModel() {
+        if (!preloadEnabled) {
+            return;
+        }
+        for (OllamaBackend backend : backendPool.getBackends()) {
+            Thread.ofVirtual().name("ollama-preload").start(() -> {
+                try {
+                    ObjectNode requestBody = objectMapper.createObjectNode();
+                    requestBody.put("model", modelName);
+                    requestBody.put("keep_alive", keepAlive);
+                    ollamaClient.post(backend.getBaseUrl() + "/api/generate",
+                            objectMapper.writeValueAsString(requestBody), ollamaClient.getGenerateTimeout());
+                    backend.recordPreload(true);
+                } catch (Exception e) {
+                    backend.recordPreload(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * Check if Ollama service is available, according to the latest background probes
+     * @return true if at least one backend is healthy
+     */
+    public boolean isServiceAvailable() {
+        return backendPool.isAnyHealthy();
+    }
+
+    /**
+     * Get available models from Ollama, as last reported by a healthy backend's probe
      * @return JSON string with available models
      */
     public String getAvailableModels() {
-        try {
-            return restTemplate.getForObject(ollamaBaseUrl + "/api/tags", String.class);
-        } catch (Exception e) {
-            return "{\"error\": \"Unable to fetch models: " + e.getMessage() + "\"}";
+        for (OllamaBackend backend : backendPool.getBackends()) {
+            if (backend.isHealthy() && backend.getModelsJson() != null) {
+                return backend.getModelsJson();
+            }
         }
+        return "{\"error\": \"Unable to fetch models: no healthy Ollama backend has been probed yet\"}";
+    }
+
+    /**
+     * Get health, load and model list of every configured backend
+     * @return List of per-backend status maps
+     */
+    public List<Map<String, Object>> getBackendStatus() {
+        return backendPool.getStatus();
     }
-}
 
+    /**
+     * Drop every cached completion
+     */
+    public void clearCache() {
+        completionCache.clear();
+    }
+
+    /**
+     * Get transport and cache statistics for Ollama calls
+     * @return Map of connection pool, in-flight request and completion cache statistics
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("client", ollamaClient.getStats());
+        stats.put("completionCache", completionCache.getStats());
+        stats.put("scheduler", scheduler.getStats());
+        stats.put("resilience", resilience.getStats());
+        stats.put("backends", backendPool.getStatus());
+        stats.put("apiMode", isChatMode() ? "chat" : "generate");
+        stats.put("keepAlive", keepAlive);
+        return stats;
+    }
+}
@@ -0,0 +1,106 @@
+package com.jio.jcpaura.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micrometer meters of the AI pipeline, exported through the actuator (e.g. /actuator/prometheus):
+ * <ul>
+ *   <li>aura.ai.pipeline - whole pipeline duration, by query path and outcome</li>
+ *   <li>aura.ai.pipeline.stage - duration of each stage (entity, query_build, execute, results, format, ...)</li>
+ *   <li>aura.ai.model.time - Ollama's own load, prompt evaluation and generation time, by stage</li>
+ *   <li>aura.ai.model.tokens - prompt and completion tokens, by stage</li>
+ *   <li>aura.ai.model.cache - completion cache hits and misses, by stage</li>
+ *   <li>aura.ai.prompt.size - prompt size in characters, by stage</li>
+ *   <li>aura.ai.results.rows / aura.ai.results.size - rows returned and their size in the formatting prompt</li>
+ * </ul>
+ * Timers publish percentile histograms, so latency percentiles can be aggregated across instances.
+ */
+@Component
+public class PipelineMetrics {
+
+    private final MeterRegistry registry;
+
+    public PipelineMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public void recordPipeline(String path, long nanos, String outcome) {
+        Timer.builder("aura.ai.pipeline")
+                .description("Duration of the AI query pipeline")
+                .tag("path", path)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordStage(String stage, long nanos, boolean success) {
+        Timer.builder("aura.ai.pipeline.stage")
+                .description("Duration of one AI query pipeline stage")
+                .tag("stage", stage)
+                .tag("outcome", success ? "success" : "error")
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordModelCall(String stage, ModelCallStats stats, int promptChars) {
+        Counter.builder("aura.ai.model.cache")
+                .description("Model calls answered from the completion cache (hit) or by the model (miss)")
+                .tag("stage", stage)
+                .tag("result", stats.isCached() ? "hit" : "miss")
+                .register(registry)
+                .increment();
+        DistributionSummary.builder("aura.ai.prompt.size")
+                .description("Prompt size (system and user prompt) per model call")
+                .baseUnit("characters")
+                .tag("stage", stage)
+                .register(registry)
+                .record(promptChars);
+        if (stats.isCached()) {
+            return;
+        }
+        tokens(stage, "prompt").record(stats.getPromptTokens());
+        tokens(stage, "completion").record(stats.getCompletionTokens());
+        modelTime(stage, "load").record(stats.getLoadNanos(), TimeUnit.NANOSECONDS);
+        modelTime(stage, "prompt_eval").record(stats.getPromptEvalNanos(), TimeUnit.NANOSECONDS);
+        modelTime(stage, "eval").record(stats.getEvalNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    public void recordResults(int rows, int promptChars, boolean condensed) {
+        DistributionSummary.builder("aura.ai.results.rows")
+                .description("Rows returned by the executed query")
+                .baseUnit("rows")
+                .register(registry)
+                .record(rows);
+        DistributionSummary.builder("aura.ai.results.size")
+                .description("Size of the query results as put into the formatting prompt")
+                .baseUnit("characters")
+                .tag("condensed", String.valueOf(condensed))
+                .register(registry)
+                .record(promptChars);
+    }
+
+    private DistributionSummary tokens(String stage, String type) {
+        return DistributionSummary.builder("aura.ai.model.tokens")
+                .description("Tokens evaluated (prompt) and generated (completion) per model call")
+                .baseUnit("tokens")
+                .tag("stage", stage)
+                .tag("type", type)
+                .register(registry);
+    }
+
+    private Timer modelTime(String stage, String phase) {
+        return Timer.builder("aura.ai.model.time")
+                .description("Time Ollama reports spending per phase of a model call")
+                .tag("stage", stage)
+                .tag("phase", phase)
+                .register(registry);
+    }
+}
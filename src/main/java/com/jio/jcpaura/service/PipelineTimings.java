@@ -0,0 +1,97 @@
+package com.jio.jcpaura.service;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Latency breakdown of one pipeline run: milliseconds per stage plus stage details (prompt and result
+ * sizes, model token counts and timings). Every measurement is also recorded in {@link PipelineMetrics}.
+ * Stages may be timed from several threads (speculative steps); a stage timed twice adds up.
+ */
+public class PipelineTimings {
+
+    /**
+     * A model call that reports into the given stats holder
+     */
+    @FunctionalInterface
+    public interface ModelCall {
+        String call(ModelCallStats stats) throws IOException;
+    }
+
+    private final PipelineMetrics metrics;
+    private final long startNanos = System.nanoTime();
+    private final Map<String, Map<String, Object>> stages = new LinkedHashMap<>();
+
+    public PipelineTimings(PipelineMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Run and time a stage
+     */
+    public <T> T time(String stage, Supplier<T> step) {
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            T value = step.get();
+            success = true;
+            return value;
+        } finally {
+            record(stage, System.nanoTime() - start, success);
+        }
+    }
+
+    /**
+     * Run and time a model call, recording prompt and response sizes and what the model reported
+     */
+    public String timeModel(String stage, String systemPrompt, String userPrompt, ModelCall call) throws IOException {
+        ModelCallStats stats = new ModelCallStats();
+        int promptChars = systemPrompt.length() + userPrompt.length();
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            String response = call.call(stats);
+            success = true;
+            detail(stage, "responseChars", response.length());
+            return response;
+        } finally {
+            record(stage, System.nanoTime() - start, success);
+            detail(stage, "promptChars", promptChars);
+            detail(stage, "model", stats.toMap());
+            metrics.recordModelCall(stage, stats, promptChars);
+        }
+    }
+
+    /**
+     * Attach a detail to a stage
+     */
+    public synchronized void detail(String stage, String key, Object value) {
+        stages.computeIfAbsent(stage, name -> new LinkedHashMap<>()).put(key, value);
+    }
+
+    public long elapsedNanos() {
+        return System.nanoTime() - startNanos;
+    }
+
+    /**
+     * @return Map of totalMs and per-stage ms and details, in the order stages were first recorded
+     */
+    public synchronized Map<String, Object> toMap() {
+        Map<String, Object> stageCopy = new LinkedHashMap<>();
+        stages.forEach((stage, details) -> stageCopy.put(stage, new LinkedHashMap<>(details)));
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("totalMs", elapsedNanos() / 1_000_000.0);
+        map.put("stages", stageCopy);
+        return map;
+    }
+
+    private void record(String stage, long nanos, boolean success) {
+        synchronized (this) {
+            stages.computeIfAbsent(stage, name -> new LinkedHashMap<>())
+                    .merge("ms", nanos / 1_000_000.0, (a, b) -> (Double) a + (Double) b);
+        }
+        metrics.recordStage(stage, nanos, success);
+    }
+}
@@ -0,0 +1,217 @@
+package com.jio.jcpaura.service;
+
+import org.bson.Document;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reviews a generated query or pipeline against its explain plan (queryPlanner verbosity, so nothing is
+ * executed) before it runs:
+ * - a collection scan over more than {@code maxScanDocs} documents is rejected;
+ * - a blocking (in-memory) sort over a collection scan of more than {@code maxSortDocs} documents is
+ *   rejected, unless it is followed by $limit or is the last stage, where the injected limit turns it
+ *   into a bounded top-k sort;
+ * - a query or pipeline without a limit gets {@code defaultLimit}.
+ * Every query that runs gets {@code maxTimeMs}.
+ */
+public class QueryCostGuard {
+
+    public enum Action {
+        ALLOW, REWRITE, REJECT
+    }
+
+    /**
+     * Outcome of a review
+     * @param planStages Plan stages found in the winning plan, e.g. COLLSCAN, IXSCAN, SORT
+     * @param pipeline The pipeline to run (with any injected $limit), or null for a query
+     * @param limit Limit to apply to a query, or null for a pipeline
+     */
+    public record Decision(Action action, List<String> reasons, List<String> planStages, long collectionDocs,
+                           List<Document> pipeline, Integer limit, long maxTimeMs) {
+
+        public Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("action", action.name().toLowerCase());
+            map.put("reasons", reasons);
+            map.put("planStages", planStages);
+            map.put("collectionDocs", collectionDocs);
+            if (limit != null) {
+                map.put("limit", limit);
+            }
+            map.put("maxTimeMs", maxTimeMs);
+            return map;
+        }
+    }
+
+    private final long maxScanDocs;
+    private final long maxSortDocs;
+    private final int defaultLimit;
+    private final long maxTimeMs;
+
+    private final AtomicLong allowed = new AtomicLong();
+    private final AtomicLong rewritten = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong unexplained = new AtomicLong();
+
+    public QueryCostGuard(long maxScanDocs, long maxSortDocs, int defaultLimit, long maxTimeMs) {
+        this.maxScanDocs = maxScanDocs;
+        this.maxSortDocs = maxSortDocs;
+        this.defaultLimit = defaultLimit;
+        this.maxTimeMs = maxTimeMs;
+    }
+
+    /**
+     * Review a find query, which never carries a limit of its own
+     * @param explain The query's explain output, or null if explain failed
+     * @param collectionDocs Estimated number of documents in the collection
+     */
+    public Decision reviewQuery(Document explain, long collectionDocs) {
+        List<String> reasons = new ArrayList<>();
+        List<String> stages = planStages(explain);
+        boolean collectionScan = stages.contains("COLLSCAN");
+        if (explain == null) {
+            unexplained.incrementAndGet();
+            reasons.add("explain failed: plan not checked");
+        } else if (collectionScan && collectionDocs > maxScanDocs) {
+            reasons.add("collection scan over " + collectionDocs + " documents (limit " + maxScanDocs + ")");
+            return decide(Action.REJECT, reasons, stages, collectionDocs, null, null);
+        } else if (stages.contains("SORT") && collectionScan && collectionDocs > maxSortDocs) {
+            reasons.add("blocking sort over " + collectionDocs + " documents (limit " + maxSortDocs + ")");
+            return decide(Action.REJECT, reasons, stages, collectionDocs, null, null);
+        }
+        reasons.add("no limit: capped at " + defaultLimit + " rows");
+        return decide(Action.REWRITE, reasons, stages, collectionDocs, null, defaultLimit);
+    }
+
+    /**
+     * Review an aggregation pipeline
+     * @param explain The pipeline's explain output, or null if explain failed
+     * @param collectionDocs Estimated number of documents in the collection
+     */
+    public Decision reviewPipeline(List<Document> pipeline, Document explain, long collectionDocs) {
+        List<String> reasons = new ArrayList<>();
+        List<String> stages = planStages(explain);
+        boolean collectionScan = stages.contains("COLLSCAN");
+        List<Document> rewrittenPipeline = new ArrayList<>(pipeline);
+        Action action = Action.ALLOW;
+
+        if (explain == null) {
+            unexplained.incrementAndGet();
+            reasons.add("explain failed: plan not checked");
+        } else if (collectionScan && collectionDocs > maxScanDocs) {
+            reasons.add("collection scan over " + collectionDocs + " documents (limit " + maxScanDocs + ")");
+            return decide(Action.REJECT, reasons, stages, collectionDocs, null, null);
+        }
+
+        boolean hasLimit = pipeline.stream().anyMatch(stage -> stage.containsKey("$limit"));
+        if (explain != null && blockingSort(pipeline, stages) && collectionScan && collectionDocs > maxSortDocs) {
+            if (!sortsBounded(pipeline, hasLimit)) {
+                reasons.add("blocking sort over " + collectionDocs + " documents (limit " + maxSortDocs + ")");
+                return decide(Action.REJECT, reasons, stages, collectionDocs, null, null);
+            }
+            reasons.add("blocking sort bounded by a limit");
+        }
+        if (!hasLimit) {
+            rewrittenPipeline.add(new Document("$limit", defaultLimit));
+            reasons.add("no $limit: capped at " + defaultLimit + " rows");
+            action = Action.REWRITE;
+        }
+        return decide(action, reasons, stages, collectionDocs, rewrittenPipeline, null);
+    }
+
+    /**
+     * A sort is blocking if the query layer sorts in memory (SORT in the winning plan) or the pipeline
+     * sorts after a stage that the query layer cannot sort through
+     */
+    private static boolean blockingSort(List<Document> pipeline, List<String> stages) {
+        if (stages.contains("SORT")) {
+            return true;
+        }
+        boolean afterMatch = true;
+        for (Document stage : pipeline) {
+            if (stage.containsKey("$sort") && !afterMatch) {
+                return true;
+            }
+            afterMatch = afterMatch && stage.containsKey("$match");
+        }
+        return false;
+    }
+
+    /**
+     * Whether every $sort is a top-k sort: followed by $limit, or last in a pipeline that gets one injected
+     */
+    private static boolean sortsBounded(List<Document> pipeline, boolean hasLimit) {
+        for (int i = 0; i < pipeline.size(); i++) {
+            if (!pipeline.get(i).containsKey("$sort")) {
+                continue;
+            }
+            boolean last = i == pipeline.size() - 1;
+            if (last ? hasLimit : !pipeline.get(i + 1).containsKey("$limit")) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Decision decide(Action action, List<String> reasons, List<String> stages, long collectionDocs,
+                            List<Document> pipeline, Integer limit) {
+        switch (action) {
+            case ALLOW -> allowed.incrementAndGet();
+            case REWRITE -> rewritten.incrementAndGet();
+            case REJECT -> rejected.incrementAndGet();
+        }
+        return new Decision(action, List.copyOf(reasons), stages, collectionDocs, pipeline, limit, maxTimeMs);
+    }
+
+    /**
+     * Stage names of every winning plan in an explain output (a find's, or each $cursor stage's for a
+     * pipeline), in the order found
+     */
+    static List<String> planStages(Document explain) {
+        Set<String> stages = new LinkedHashSet<>();
+        if (explain != null) {
+            collectPlans(explain, stages, false);
+        }
+        return List.copyOf(stages);
+    }
+
+    private static void collectPlans(Object node, Set<String> stages, boolean inWinningPlan) {
+        if (node instanceof Document document) {
+            document.forEach((key, value) -> {
+                if (key.equals("rejectedPlans")) {
+                    return;
+                }
+                if (inWinningPlan && key.equals("stage") && value instanceof String stage) {
+                    stages.add(stage);
+                }
+                collectPlans(value, stages, inWinningPlan || key.equals("winningPlan"));
+            });
+        } else if (node instanceof List<?> list) {
+            list.forEach(item -> collectPlans(item, stages, inWinningPlan));
+        }
+    }
+
+    /**
+     * Get guard statistics
+     * @return Map of limits and allowed/rewritten/rejected/unexplained counts
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("maxScanDocs", maxScanDocs);
+        stats.put("maxSortDocs", maxSortDocs);
+        stats.put("defaultLimit", defaultLimit);
+        stats.put("maxTimeMs", maxTimeMs);
+        stats.put("allowed", allowed.get());
+        stats.put("rewritten", rewritten.get());
+        stats.put("rejected", rejected.get());
+        stats.put("unexplained", unexplained.get());
+        return stats;
+    }
+}
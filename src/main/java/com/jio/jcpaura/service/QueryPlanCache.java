@@ -0,0 +1,205 @@
+package com.jio.jcpaura.service;
+
+import com.jio.jcpaura.entity.CachedQueryPlan;
+import com.jio.jcpaura.repository.CachedQueryPlanRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Persistent cache of validated query plans (question to MongoDB query).
+ * Plans are stored in the aiQueryPlans collection and mirrored in memory, keyed by
+ * {@link QuestionNormalizer#planKey}. The in-memory index is warm-loaded from MongoDB at startup;
+ * writes and hit counts go to MongoDB in the background so they never delay a request.
+ */
+@Service
+public class QueryPlanCache {
+
+    @Value("${aura.ai.plan-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${aura.ai.plan-cache.max-entries:5000}")
+    private int maxEntries;
+
+    @Autowired
+    private CachedQueryPlanRepository repository;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    private final ConcurrentHashMap<String, CachedQueryPlan> plans = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong stores = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+    private final AtomicLong persistFailures = new AtomicLong();
+
+    /**
+     * Load the most used plans into memory once the application is up.
+     * Runs in the background; until it finishes, lookups simply miss.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmLoad() {
+        if (!enabled) {
+            return;
+        }
+        Thread.ofVirtual().name("query-plan-warm-load").start(() -> {
+            try {
+                Query query = new Query().with(PageRequest.of(0, maxEntries, Sort.by(Sort.Direction.DESC, "hit_count")));
+                for (CachedQueryPlan plan : mongoTemplate.find(query, CachedQueryPlan.class)) {
+                    plans.putIfAbsent(plan.getPlanKey(), plan);
+                }
+            } catch (Exception e) {
+                persistFailures.incrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * Look up the plan for a question, counting the hit
+     * @param message The user's question
+     * @return The cached plan, or null if none is stored
+     */
+    public CachedQueryPlan lookup(String message) {
+        if (!enabled) {
+            return null;
+        }
+        CachedQueryPlan plan = plans.get(QuestionNormalizer.planKey(message));
+        if (plan == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        LocalDateTime now = LocalDateTime.now();
+        synchronized (plan) {
+            plan.setHitCount(plan.getHitCount() + 1);
+            plan.setLastUsedAt(now);
+        }
+        persist(() -> mongoTemplate.updateFirst(
+                new Query(Criteria.where("_id").is(plan.getId())),
+                new Update().inc("hit_count", 1).set("last_used_at", now),
+                CachedQueryPlan.class));
+        return plan;
+    }
+
+    /**
+     * Store a plan whose query executed successfully
+     * @param message The user's question
+     * @param entityIdentification Step 1 output
+     * @param mongoQuery Step 2 output, as executed
+     */
+    public void store(String message, String entityIdentification, String mongoQuery) {
+        if (!enabled) {
+            return;
+        }
+        String planKey = QuestionNormalizer.planKey(message);
+        if (planKey.isEmpty() || (plans.size() >= maxEntries && !plans.containsKey(planKey))) {
+            return;
+        }
+        CachedQueryPlan plan = new CachedQueryPlan(planId(planKey), planKey, message, entityIdentification,
+                mongoQuery, LocalDateTime.now());
+        plans.put(planKey, plan);
+        stores.incrementAndGet();
+        persist(() -> repository.save(plan));
+    }
+
+    /**
+     * Drop a plan, e.g. because its query no longer executes
+     * @param planId Plan ID
+     * @return true if a plan was removed
+     */
+    public boolean invalidate(String planId) {
+        boolean removed = plans.values().removeIf(plan -> plan.getId().equals(planId));
+        if (removed) {
+            invalidations.incrementAndGet();
+        }
+        persist(() -> repository.deleteById(planId));
+        return removed;
+    }
+
+    /**
+     * Drop every plan
+     * @return Number of plans removed from memory
+     */
+    public int invalidateAll() {
+        int removed = plans.size();
+        plans.clear();
+        invalidations.addAndGet(removed);
+        repository.deleteAll();
+        return removed;
+    }
+
+    /**
+     * Get all cached plans, most used first
+     * @return List of plans
+     */
+    public List<CachedQueryPlan> getPlans() {
+        List<CachedQueryPlan> all = new ArrayList<>(plans.values());
+        all.sort(Comparator.comparing(CachedQueryPlan::getHitCount).reversed());
+        return all;
+    }
+
+    /**
+     * Get cache statistics
+     * @return Map of size, hit/miss counters and hit rate
+     */
+    public Map<String, Object> getStats() {
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("size", plans.size());
+        stats.put("maxEntries", maxEntries);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRate", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+        stats.put("stores", stores.get());
+        stats.put("invalidations", invalidations.get());
+        stats.put("persistFailures", persistFailures.get());
+        return stats;
+    }
+
+    /**
+     * Write to MongoDB off the request thread; the in-memory index stays authoritative if it fails
+     */
+    private void persist(Runnable write) {
+        Thread.ofVirtual().name("query-plan-persist").start(() -> {
+            try {
+                write.run();
+            } catch (Exception e) {
+                persistFailures.incrementAndGet();
+            }
+        });
+    }
+
+    private static String planId(String planKey) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(planKey.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,398 @@
+package com.jio.jcpaura.service;
+
+import org.bson.Document;
+import org.bson.json.JsonMode;
+import org.bson.json.JsonWriterSettings;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compiles common question shapes straight into a MongoDB filter or pipeline, so the question needs
+ * neither the entity identification nor the query building model call:
+ * - lookup: "&lt;metric&gt; in &lt;circle&gt;" (any mix of known circle, service type and health status values)
+ * - threshold: "sites with &lt;metric&gt; above/below &lt;n&gt; [unit]", optionally combined with the lookup filters
+ * - aggregate: "average/min/max/total &lt;metric&gt; [by &lt;circle|service_type|...&gt;]" and "how many ...",
+ *   optionally over the filters above
+ * The matcher is deliberately strict: every word of the question must be explained by a field keyword,
+ * a known value, a comparison, an aggregate, a group-by or a filler word. Anything else (time ranges,
+ * rankings, negations, unknown names) returns null and the question goes through the model.
+ */
+public class QueryTemplateMatcher {
+
+    /**
+     * Words that carry no meaning for the templates
+     */
+    private static final Set<String> FILLER_WORDS = Set.of(
+            "what", "whats", "is", "are", "was", "the", "a", "an", "of", "for", "in", "at", "on", "with",
+            "where", "which", "whose", "that", "show", "me", "list", "give", "get", "find", "display", "tell",
+            "all", "any", "every", "sites", "site", "there", "have", "has", "having", "its", "their", "please",
+            "about", "do", "does", "current", "currently", "value", "values", "and", "to", "i", "want", "see",
+            "know", "can", "you", "network", "metrics", "kpi", "kpis", "performance", "overall", "circle",
+            "circles", "by", "records", "entries", "rows", "data", "details", "than");
+
+    private static final Pattern COMPARISON = Pattern.compile(
+            "(?<= )(greater than|more than|higher than|above|over|exceeding|at least|less than|lower than|below|under|at most|>=|<=|>|<)"
+                    + " ?(-?\\d+(?:\\.\\d+)?) ?(%|percent|ms|milliseconds|s|sec|secs|seconds|mbps|gbps|kbps)?(?= )");
+
+    private static final Pattern AGGREGATE = Pattern.compile(
+            "(?<= )(average|avg|mean|maximum|max|minimum|min|total|sum|count|how many|number of)(?= )");
+
+    private static final Pattern GROUP_BY = Pattern.compile("(?<= )(by|per|for each|for every|across|in each|each)(?= )");
+
+    private static final JsonWriterSettings QUERY_JSON = JsonWriterSettings.builder()
+            .outputMode(JsonMode.RELAXED)
+            .build();
+
+    /**
+     * A compiled question
+     * @param template Which template matched: lookup, threshold or aggregate
+     * @param mongoQuery Filter object or aggregation pipeline, as the query builder step would return it
+     * @param identification Text in the same form as the model's step-1 answer
+     */
+    public record Match(String template, String mongoQuery, String identification) {
+    }
+
+    private record Span(int start, int end) {
+    }
+
+    private record Mention(String field, int start, int end) {
+    }
+
+    private record Comparison(String operator, double value, String unit, int start, int end) {
+    }
+
+    private final EntityRouter.Entity entity;
+
+    public QueryTemplateMatcher(EntityRouter.Entity entity) {
+        this.entity = entity;
+    }
+
+    /**
+     * Compile a question if it fits one of the templates
+     * @param message The user's question
+     * @param knownValues Stored field name to the values it takes (e.g. every circle), used for equality filters
+     * @return The compiled query, or null if the question needs the model
+     */
+    public Match match(String message, Map<String, List<String>> knownValues) {
+        String text = normalize(message);
+        boolean[] consumed = new boolean[text.length()];
+
+        // Equality filters on known values, longest value first so "mumbai metro" wins over "mumbai"
+        Map<String, Set<String>> equals = new LinkedHashMap<>();
+        List<Map.Entry<String, String>> candidates = new ArrayList<>();
+        knownValues.forEach((field, values) -> values.forEach(value -> candidates.add(Map.entry(field, value))));
+        candidates.sort(Comparator.comparingInt((Map.Entry<String, String> e) -> e.getValue().length()).reversed());
+        for (Map.Entry<String, String> candidate : candidates) {
+            for (String alias : aliases(candidate.getValue())) {
+                if (!find(text, alias, consumed).isEmpty()) {
+                    equals.computeIfAbsent(candidate.getKey(), f -> new LinkedHashSet<>()).add(candidate.getValue());
+                }
+            }
+        }
+
+        List<Comparison> comparisons = new ArrayList<>();
+        Matcher comparison = COMPARISON.matcher(text);
+        while (comparison.find()) {
+            if (isFree(consumed, comparison.start(), comparison.end())) {
+                comparisons.add(new Comparison(operator(comparison.group(1)), Double.parseDouble(comparison.group(2)),
+                        comparison.group(3), comparison.start(), comparison.end()));
+                mark(consumed, comparison.start(), comparison.end());
+            }
+        }
+
+        String groupBy = null;
+        Matcher groupWord = GROUP_BY.matcher(text);
+        while (groupWord.find()) {
+            if (!isFree(consumed, groupWord.start(), groupWord.end())) {
+                continue;
+            }
+            String field = fieldAt(text, groupWord.end() + 1, String.class, consumed);
+            if (field == null) {
+                continue;
+            }
+            if (groupBy != null && !groupBy.equals(field)) {
+                return null;
+            }
+            groupBy = field;
+            mark(consumed, groupWord.start(), groupWord.end());
+        }
+
+        String aggregate = null;
+        Matcher aggregateWord = AGGREGATE.matcher(text);
+        while (aggregateWord.find()) {
+            if (!isFree(consumed, aggregateWord.start(), aggregateWord.end())) {
+                continue;
+            }
+            String operator = aggregateOperator(aggregateWord.group(1));
+            if (aggregate != null && !aggregate.equals(operator)) {
+                return null;
+            }
+            aggregate = operator;
+            mark(consumed, aggregateWord.start(), aggregateWord.end());
+        }
+
+        List<Mention> metrics = mentions(text, consumed);
+
+        // Everything left over must be filler; otherwise the question says something the templates cannot express
+        for (String word : remainder(text, consumed)) {
+            if (!FILLER_WORDS.contains(word)) {
+                return null;
+            }
+        }
+
+        // Bind every comparison to its metric: the closest one before it, else the first one after it
+        Document filter = new Document();
+        equals.forEach((field, values) -> filter.put(field, values.size() == 1
+                ? values.iterator().next() : new Document("$in", new ArrayList<>(values))));
+        Set<String> bound = new LinkedHashSet<>();
+        for (Comparison condition : comparisons) {
+            Mention metric = metrics.stream().filter(m -> m.end() <= condition.start())
+                    .reduce((first, second) -> second)
+                    .orElseGet(() -> metrics.stream().filter(m -> m.start() >= condition.end()).findFirst().orElse(null));
+            if (metric == null) {
+                return null;
+            }
+            Double value = convert(metric.field(), condition.value(), condition.unit());
+            if (value == null) {
+                return null;
+            }
+            bound.add(metric.field());
+            Object existing = filter.get(metric.field());
+            Document range = existing instanceof Document document ? document : new Document();
+            range.put(condition.operator(), number(value));
+            filter.put(metric.field(), range);
+        }
+
+        // Metrics that are not compared against a value are the ones to aggregate
+        List<String> unboundMetrics = metrics.stream().map(Mention::field)
+                .filter(field -> !bound.contains(field)).distinct().toList();
+
+        if (aggregate == null) {
+            if (groupBy != null || filter.isEmpty()) {
+                return null;
+            }
+            String template = comparisons.isEmpty() ? "lookup" : "threshold";
+            return new Match(template, filter.toJson(QUERY_JSON), identification(template));
+        }
+
+        boolean countOnly = aggregate.equals("$count");
+        if (countOnly ? !unboundMetrics.isEmpty() : unboundMetrics.isEmpty()) {
+            return null;
+        }
+
+        List<Document> pipeline = new ArrayList<>();
+        if (!filter.isEmpty()) {
+            pipeline.add(new Document("$match", filter));
+        }
+        Document group = new Document("_id", groupBy != null ? "$" + groupBy : null);
+        for (String field : unboundMetrics) {
+            group.put(aggregate.substring(1) + "_" + field, new Document(aggregate, "$" + field));
+        }
+        group.put("count", new Document("$sum", 1));
+        pipeline.add(new Document("$group", group));
+        if (groupBy != null) {
+            pipeline.add(new Document("$sort", new Document("_id", 1)));
+        }
+
+        StringBuilder json = new StringBuilder("[");
+        for (Document stage : pipeline) {
+            if (json.length() > 1) {
+                json.append(", ");
+            }
+            json.append(stage.toJson(QUERY_JSON));
+        }
+        return new Match("aggregate", json.append("]").toString(), identification("aggregate"));
+    }
+
+    private String identification(String template) {
+        return "Entity: " + entity.collection() + " - The user is asking about " + entity.description()
+                + " (matched the " + template + " template).";
+    }
+
+    /**
+     * Mentions of numeric fields that are not already part of another match, longest keyword first
+     */
+    private List<Mention> mentions(String text, boolean[] consumed) {
+        List<Map.Entry<String, String>> keywords = new ArrayList<>();
+        entity.fieldKeywords().forEach((field, words) -> {
+            if (isNumeric(field)) {
+                words.forEach(word -> keywords.add(Map.entry(field, word)));
+            }
+        });
+        keywords.sort(Comparator.comparingInt((Map.Entry<String, String> e) -> e.getValue().length()).reversed());
+
+        List<Mention> mentions = new ArrayList<>();
+        for (Map.Entry<String, String> keyword : keywords) {
+            for (Span span : find(text, keyword.getValue(), consumed)) {
+                mentions.add(new Mention(keyword.getKey(), span.start(), span.end()));
+            }
+        }
+        mentions.sort(Comparator.comparingInt(Mention::start));
+        return mentions;
+    }
+
+    /**
+     * The field of the given type whose keyword starts at {@code position}, consuming it
+     */
+    private String fieldAt(String text, int position, Class<?> type, boolean[] consumed) {
+        String best = null;
+        int bestLength = 0;
+        for (Map.Entry<String, Set<String>> field : entity.fieldKeywords().entrySet()) {
+            if (!type.equals(entity.fieldTypes().get(field.getKey()))) {
+                continue;
+            }
+            for (String keyword : field.getValue()) {
+                for (String form : List.of(keyword + "s ", keyword + " ")) {
+                    if (form.length() > bestLength && text.startsWith(form, position)
+                            && isFree(consumed, position, position + form.length() - 1)) {
+                        best = field.getKey();
+                        bestLength = form.length();
+                    }
+                }
+            }
+        }
+        if (best != null) {
+            mark(consumed, position, position + bestLength - 1);
+        }
+        return best;
+    }
+
+    /**
+     * Find and consume every free whole-word occurrence of a phrase (or its plural)
+     */
+    private static List<Span> find(String text, String phrase, boolean[] consumed) {
+        List<Span> spans = new ArrayList<>();
+        String needle = normalize(phrase).trim();
+        if (needle.isEmpty()) {
+            return spans;
+        }
+        for (String form : List.of(" " + needle + "s ", " " + needle + " ")) {
+            int from = 0;
+            int index;
+            while ((index = text.indexOf(form, from)) >= 0) {
+                int start = index + 1;
+                int end = index + form.length() - 1;
+                if (isFree(consumed, start, end)) {
+                    mark(consumed, start, end);
+                    spans.add(new Span(start, end));
+                }
+                from = index + 1;
+            }
+        }
+        return spans;
+    }
+
+    private static List<String> remainder(String text, boolean[] consumed) {
+        StringBuilder rest = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            rest.append(consumed[i] ? ' ' : text.charAt(i));
+        }
+        return Arrays.stream(rest.toString().split(" +")).filter(word -> !word.isEmpty()).toList();
+    }
+
+    private static boolean isFree(boolean[] consumed, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (consumed[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void mark(boolean[] consumed, int start, int end) {
+        for (int i = start; i < end; i++) {
+            consumed[i] = true;
+        }
+    }
+
+    /**
+     * Lower-case, keep letters, digits, decimal points, % and comparison signs, pad with spaces
+     */
+    private static String normalize(String text) {
+        String cleaned = text.toLowerCase()
+                .replaceAll("[^a-z0-9.%<>=]+", " ")
+                .replaceAll("(?<!\\d)\\.|\\.(?!\\d)", " ")
+                .replaceAll("(\\d)(%)", "$1 $2")
+                .replaceAll("([<>]=?)", " $1 ")
+                .replaceAll(" +", " ")
+                .trim();
+        return " " + cleaned + " ";
+    }
+
+    /**
+     * Ways a stored value may be written in a question: the value itself, and "5G" for "Jio5G"
+     */
+    private static List<String> aliases(String value) {
+        String lower = value.toLowerCase();
+        if (lower.startsWith("jio") && lower.length() > 3) {
+            return List.of(lower, lower.substring(3));
+        }
+        return List.of(lower);
+    }
+
+    private boolean isNumeric(String field) {
+        Class<?> type = entity.fieldTypes().get(field);
+        return type != null && Number.class.isAssignableFrom(type);
+    }
+
+    /**
+     * Convert a threshold to the unit the field is stored in (the suffix of its name)
+     * @return The converted value, or null if the unit does not fit the field
+     */
+    private static Double convert(String field, double value, String unit) {
+        if (unit == null) {
+            return value;
+        }
+        if (field.endsWith("_pct")) {
+            return unit.equals("%") || unit.equals("percent") ? value : null;
+        }
+        if (field.endsWith("_ms")) {
+            return switch (unit) {
+                case "ms", "milliseconds" -> value;
+                case "s", "sec", "secs", "seconds" -> value * 1000;
+                default -> null;
+            };
+        }
+        if (field.endsWith("_mbps")) {
+            return switch (unit) {
+                case "mbps" -> value;
+                case "gbps" -> value * 1000;
+                case "kbps" -> value / 1000;
+                default -> null;
+            };
+        }
+        return null;
+    }
+
+    private static Object number(double value) {
+        return value == Math.rint(value) && Math.abs(value) < Integer.MAX_VALUE ? (Object) (int) value : (Object) value;
+    }
+
+    private static String operator(String comparison) {
+        return switch (comparison) {
+            case "at least", ">=" -> "$gte";
+            case "at most", "<=" -> "$lte";
+            case "less than", "lower than", "below", "under", "<" -> "$lt";
+            default -> "$gt";
+        };
+    }
+
+    private static String aggregateOperator(String word) {
+        return switch (word) {
+            case "average", "avg", "mean" -> "$avg";
+            case "maximum", "max" -> "$max";
+            case "minimum", "min" -> "$min";
+            case "total", "sum" -> "$sum";
+            default -> "$count";
+        };
+    }
+}
@@ -0,0 +1,48 @@
+package com.jio.jcpaura.service;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Normalizes user questions so trivially different spellings of the same question share a key
+ */
+public final class QuestionNormalizer {
+
+    /**
+     * Words that do not change which query a question needs
+     */
+    private static final Set<String> STOPWORDS = Set.of(
+            "a", "an", "the", "what", "whats", "is", "are", "was", "were", "me", "show", "give", "get", "list",
+            "tell", "find", "display", "please", "can", "could", "you", "i", "want", "to", "see", "know",
+            "all", "of", "for", "do", "does", "current", "currently", "there", "us");
+
+    private QuestionNormalizer() {
+    }
+
+    /**
+     * Lower-case, collapse whitespace and drop trailing punctuation.
+     * "  What is the availability in Karnataka? " and "what is the availability in karnataka" normalize alike.
+     */
+    public static String normalize(String message) {
+        if (message == null) {
+            return "";
+        }
+        String normalized = message.trim().toLowerCase(Locale.ROOT).replaceAll("\\s+", " ");
+        return normalized.replaceAll("[\\s?.!]+$", "");
+    }
+
+    /**
+     * Key under which a generated query plan is stored: the normalized question without punctuation
+     * and stopwords, so "Show me the availability in Karnataka" and "what is availability in karnataka?"
+     * share a plan. Numbers, comparison signs and word order are kept, since they change the query.
+     */
+    public static String planKey(String message) {
+        String words = normalize(message).replaceAll("[^a-z0-9.%<>=\\s]+", " ");
+        return Arrays.stream(words.split("\\s+"))
+                .map(word -> word.replaceAll("^\\.+|\\.+$", ""))
+                .filter(word -> !word.isEmpty() && !STOPWORDS.contains(word))
+                .collect(Collectors.joining(" "));
+    }
+}
@@ -0,0 +1,12 @@
+package com.jio.jcpaura.service;
+
+/**
+ * Scheduling class of a model call. When the Ollama backend is saturated, queued
+ * INTERACTIVE calls are admitted before any queued BATCH call.
+ */
+public enum RequestPriority {
+    /** User-facing AI pipeline calls (/api/aura-ai/message) */
+    INTERACTIVE,
+    /** Ad-hoc generation calls (/api/ollama/generate*) */
+    BATCH
+}
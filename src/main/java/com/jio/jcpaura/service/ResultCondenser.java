@@ -0,0 +1,301 @@
+package com.jio.jcpaura.service;
+
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Summarizes a large query result so the response-formatting prompt stays bounded.
+ * Instead of every row, the model gets:
+ * - per-field statistics over all rows (count/min/max/avg/percentiles for numbers, top values for text,
+ *   range for dates)
+ * - the same numeric statistics per value of each group-by field (e.g. circle, service_type)
+ * - the top-N highest and lowest rows for every numeric field
+ * - a small, evenly spaced sample of full rows
+ * The size of the summary depends on the number of fields, groups and the configured limits,
+ * not on the number of rows.
+ */
+public class ResultCondenser {
+
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99};
+
+    private final List<String> groupByFields;
+    private final int maxGroups;
+    private final int topN;
+    private final int sampleSize;
+
+    /**
+     * @param groupByFields Fields to break the numeric statistics down by, when present in the rows
+     * @param maxGroups Maximum number of groups (and top text values) kept per field, largest first
+     * @param topN Number of highest and lowest rows kept per numeric field
+     * @param sampleSize Number of full rows included as a sample
+     */
+    public ResultCondenser(List<String> groupByFields, int maxGroups, int topN, int sampleSize) {
+        this.groupByFields = groupByFields;
+        this.maxGroups = maxGroups;
+        this.topN = topN;
+        this.sampleSize = sampleSize;
+    }
+
+    /**
+     * Condense rows into a bounded summary
+     * @param rows Result rows as field/value maps
+     * @return Map with rowCount, fields, groups, outliers and sample
+     */
+    public Map<String, Object> condense(List<Map<String, Object>> rows) {
+        List<Map<String, Object>> simplified = new ArrayList<>(rows.size());
+        for (Map<String, Object> row : rows) {
+            simplified.add(simplifyRow(row));
+        }
+
+        Map<String, List<Double>> numeric = numericColumns(simplified);
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("rowCount", simplified.size());
+        summary.put("fields", fieldStats(simplified, numeric));
+        summary.put("groups", groupStats(simplified, numeric.keySet()));
+        summary.put("outliers", outliers(simplified, numeric.keySet()));
+        summary.put("sample", sample(simplified));
+        return summary;
+    }
+
+    private Map<String, Object> fieldStats(List<Map<String, Object>> rows, Map<String, List<Double>> numeric) {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        numeric.forEach((field, values) -> fields.put(field, numericStats(values, true)));
+
+        Map<String, Map<String, Integer>> textCounts = new LinkedHashMap<>();
+        Map<String, String[]> dateRanges = new LinkedHashMap<>();
+        for (Map<String, Object> row : rows) {
+            row.forEach((field, value) -> {
+                if (value == null || numeric.containsKey(field)) {
+                    return;
+                }
+                if (value instanceof DateValue date) {
+                    String[] range = dateRanges.computeIfAbsent(field, f -> new String[]{date.iso(), date.iso()});
+                    if (date.iso().compareTo(range[0]) < 0) {
+                        range[0] = date.iso();
+                    }
+                    if (date.iso().compareTo(range[1]) > 0) {
+                        range[1] = date.iso();
+                    }
+                } else {
+                    textCounts.computeIfAbsent(field, f -> new HashMap<>()).merge(String.valueOf(value), 1, Integer::sum);
+                }
+            });
+        }
+
+        textCounts.forEach((field, counts) -> {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("distinct", counts.size());
+            stats.put("top", largest(counts));
+            fields.put(field, stats);
+        });
+        dateRanges.forEach((field, range) -> {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("min", range[0]);
+            stats.put("max", range[1]);
+            fields.put(field, stats);
+        });
+        return fields;
+    }
+
+    private Map<String, Object> groupStats(List<Map<String, Object>> rows, Iterable<String> numericFields) {
+        Map<String, Object> groups = new LinkedHashMap<>();
+        for (String groupField : groupByFields) {
+            Map<String, List<Map<String, Object>>> byValue = new HashMap<>();
+            for (Map<String, Object> row : rows) {
+                Object value = row.get(groupField);
+                if (value != null) {
+                    byValue.computeIfAbsent(String.valueOf(value), v -> new ArrayList<>()).add(row);
+                }
+            }
+            if (byValue.isEmpty()) {
+                continue;
+            }
+
+            Map<String, Object> perValue = new LinkedHashMap<>();
+            byValue.entrySet().stream()
+                    .sorted(Comparator.comparingInt((Map.Entry<String, List<Map<String, Object>>> e) -> e.getValue().size()).reversed())
+                    .limit(maxGroups)
+                    .forEach(entry -> {
+                        Map<String, Object> stats = new LinkedHashMap<>();
+                        stats.put("count", entry.getValue().size());
+                        for (String field : numericFields) {
+                            List<Double> values = column(entry.getValue(), field);
+                            if (!values.isEmpty()) {
+                                stats.put(field, numericStats(values, false));
+                            }
+                        }
+                        perValue.put(entry.getKey(), stats);
+                    });
+            if (byValue.size() > maxGroups) {
+                perValue.put("_omittedGroups", byValue.size() - maxGroups);
+            }
+            groups.put(groupField, perValue);
+        }
+        return groups;
+    }
+
+    private Map<String, Object> outliers(List<Map<String, Object>> rows, Iterable<String> numericFields) {
+        Map<String, Object> outliers = new LinkedHashMap<>();
+        if (topN <= 0) {
+            return outliers;
+        }
+        for (String field : numericFields) {
+            List<Map<String, Object>> withValue = new ArrayList<>();
+            for (Map<String, Object> row : rows) {
+                if (row.get(field) instanceof Number) {
+                    withValue.add(row);
+                }
+            }
+            Comparator<Map<String, Object>> byField = Comparator.comparingDouble(row -> ((Number) row.get(field)).doubleValue());
+
+            Map<String, Object> extremes = new LinkedHashMap<>();
+            extremes.put("highest", withValue.stream().sorted(byField.reversed()).limit(topN)
+                    .map(row -> label(row, field)).toList());
+            extremes.put("lowest", withValue.stream().sorted(byField).limit(topN)
+                    .map(row -> label(row, field)).toList());
+            outliers.put(field, extremes);
+        }
+        return outliers;
+    }
+
+    private List<Map<String, Object>> sample(List<Map<String, Object>> rows) {
+        List<Map<String, Object>> sample = new ArrayList<>();
+        if (sampleSize <= 0 || rows.isEmpty()) {
+            return sample;
+        }
+        double stride = Math.max(1.0, (double) rows.size() / sampleSize);
+        for (double i = 0; i < rows.size() && sample.size() < sampleSize; i += stride) {
+            sample.add(externalRow(rows.get((int) i)));
+        }
+        return sample;
+    }
+
+    /**
+     * A row reduced to its text fields (site, circle, ...) plus the value that made it an outlier
+     */
+    private Map<String, Object> label(Map<String, Object> row, String field) {
+        Map<String, Object> label = new LinkedHashMap<>();
+        row.forEach((key, value) -> {
+            if (value instanceof String && !key.equals("_id")) {
+                label.put(key, value);
+            }
+        });
+        label.put(field, row.get(field));
+        return label;
+    }
+
+    private Map<String, Object> numericStats(List<Double> values, boolean withPercentiles) {
+        double[] sorted = values.stream().mapToDouble(Double::doubleValue).toArray();
+        Arrays.sort(sorted);
+        double sum = 0;
+        for (double value : sorted) {
+            sum += value;
+        }
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("count", sorted.length);
+        stats.put("min", round(sorted[0]));
+        stats.put("max", round(sorted[sorted.length - 1]));
+        stats.put("avg", round(sum / sorted.length));
+        if (withPercentiles) {
+            for (double percentile : PERCENTILES) {
+                int index = (int) Math.ceil(percentile * sorted.length) - 1;
+                stats.put("p" + Math.round(percentile * 100), round(sorted[Math.max(0, index)]));
+            }
+        }
+        return stats;
+    }
+
+    private Map<String, Integer> largest(Map<String, Integer> counts) {
+        Map<String, Integer> top = new LinkedHashMap<>();
+        counts.entrySet().stream()
+                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
+                .limit(maxGroups)
+                .forEach(entry -> top.put(entry.getKey(), entry.getValue()));
+        return top;
+    }
+
+    /**
+     * Fields whose non-null values are all numbers
+     */
+    private Map<String, List<Double>> numericColumns(List<Map<String, Object>> rows) {
+        Map<String, List<Double>> columns = new LinkedHashMap<>();
+        Map<String, Boolean> onlyNumbers = new HashMap<>();
+        for (Map<String, Object> row : rows) {
+            row.forEach((field, value) -> {
+                if (value != null) {
+                    onlyNumbers.merge(field, value instanceof Number, Boolean::logicalAnd);
+                }
+            });
+        }
+        for (Map<String, Object> row : rows) {
+            row.forEach((field, value) -> {
+                if (value instanceof Number number && onlyNumbers.getOrDefault(field, false)) {
+                    columns.computeIfAbsent(field, f -> new ArrayList<>()).add(number.doubleValue());
+                }
+            });
+        }
+        return columns;
+    }
+
+    private List<Double> column(List<Map<String, Object>> rows, String field) {
+        List<Double> values = new ArrayList<>();
+        for (Map<String, Object> row : rows) {
+            if (row.get(field) instanceof Number number) {
+                values.add(number.doubleValue());
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Dates and times, kept apart from text so they get a range instead of value counts
+     */
+    private record DateValue(String iso) {
+        @Override
+        public String toString() {
+            return iso;
+        }
+    }
+
+    /**
+     * Flatten values to numbers, strings, booleans and dates; anything else (ObjectId, nested
+     * documents from a $group key, ...) is represented by its string form
+     */
+    private Map<String, Object> simplifyRow(Map<String, Object> row) {
+        Map<String, Object> simplified = new LinkedHashMap<>();
+        row.forEach((field, value) -> simplified.put(field, simplify(value)));
+        return simplified;
+    }
+
+    private Object simplify(Object value) {
+        if (value == null || value instanceof Number || value instanceof String || value instanceof Boolean) {
+            return value;
+        }
+        if (value instanceof Date date) {
+            return new DateValue(date.toInstant().toString());
+        }
+        if (value instanceof TemporalAccessor temporal) {
+            return new DateValue(temporal.toString());
+        }
+        return String.valueOf(value);
+    }
+
+    private Map<String, Object> externalRow(Map<String, Object> row) {
+        Map<String, Object> external = new LinkedHashMap<>();
+        row.forEach((field, value) -> external.put(field, value instanceof DateValue date ? date.iso() : value));
+        return external;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100.0) / 100.0;
+    }
+}
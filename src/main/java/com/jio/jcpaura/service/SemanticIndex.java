@@ -0,0 +1,196 @@
+package com.jio.jcpaura.service;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * In-memory nearest-neighbour index over embedding vectors (flat, cosine similarity).
+ * Vectors are normalized on insert, so a search is one dot product per entry; a few thousand
+ * entries of a few hundred dimensions scan in well under a millisecond.
+ * Every entry carries a guard string: a search only considers entries with an equal guard, so
+ * questions that embed closely but differ in what they ask (another number, region or field) never match.
+ * When full, or when entries are older than the TTL, the oldest entries are evicted first.
+ */
+public class SemanticIndex<T> {
+
+    /**
+     * Nearest entry found by {@link #search}
+     */
+    public record Hit<T>(T value, double similarity) {
+    }
+
+    private record Entry<T>(float[] vector, String guard, T value, long storedAt) {
+    }
+
+    private final int capacity;
+    private final long ttlMillis;
+    private final LongSupplier clock;
+    private final Deque<Entry<T>> entries = new ArrayDeque<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private long evictions;
+
+    /**
+     * @param capacity Maximum number of entries; 0 disables the index
+     * @param ttlMillis Entry lifetime; 0 or less keeps entries until evicted by capacity
+     */
+    public SemanticIndex(int capacity, long ttlMillis) {
+        this(capacity, ttlMillis, System::currentTimeMillis);
+    }
+
+    public SemanticIndex(int capacity, long ttlMillis, LongSupplier clock) {
+        this.capacity = capacity;
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * Add an entry, evicting expired entries and, if still full, the oldest one
+     * @param vector Embedding of the question
+     * @param guard Guard string; only searches with the same guard can find this entry
+     * @param value Value returned on a hit
+     */
+    public void add(float[] vector, String guard, T value) {
+        if (capacity <= 0) {
+            return;
+        }
+        float[] normalized = normalize(vector);
+        if (normalized == null) {
+            return;
+        }
+        long now = clock.getAsLong();
+        lock.writeLock().lock();
+        try {
+            while (!entries.isEmpty() && (entries.size() >= capacity || isExpired(entries.peekFirst(), now))) {
+                entries.pollFirst();
+                evictions++;
+            }
+            entries.addLast(new Entry<>(normalized, guard, value, now));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Find the most similar live entry with the same guard
+     * @param vector Embedding of the question
+     * @param guard Guard string of the question
+     * @param threshold Minimum cosine similarity for a hit
+     * @return The best entry at or above the threshold, or null
+     */
+    public Hit<T> search(float[] vector, String guard, double threshold) {
+        float[] query = normalize(vector);
+        if (query == null) {
+            return null;
+        }
+        long now = clock.getAsLong();
+        Entry<T> best = null;
+        double bestSimilarity = threshold;
+        lock.readLock().lock();
+        try {
+            for (Entry<T> entry : entries) {
+                if (!entry.guard().equals(guard) || entry.vector().length != query.length || isExpired(entry, now)) {
+                    continue;
+                }
+                double similarity = dot(entry.vector(), query);
+                if (similarity >= bestSimilarity) {
+                    best = entry;
+                    bestSimilarity = similarity;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return best == null ? null : new Hit<>(best.value(), bestSimilarity);
+    }
+
+    /**
+     * Drop every entry whose value matches
+     * @return Number of entries removed
+     */
+    public int removeIf(Predicate<T> predicate) {
+        lock.writeLock().lock();
+        try {
+            int removed = 0;
+            for (Iterator<Entry<T>> it = entries.iterator(); it.hasNext(); ) {
+                if (predicate.test(it.next().value())) {
+                    it.remove();
+                    removed++;
+                }
+            }
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int clear() {
+        lock.writeLock().lock();
+        try {
+            int removed = entries.size();
+            entries.clear();
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getEvictions() {
+        lock.readLock().lock();
+        try {
+            return evictions;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private boolean isExpired(Entry<T> entry, long now) {
+        return ttlMillis > 0 && now - entry.storedAt() >= ttlMillis;
+    }
+
+    private static double dot(float[] a, float[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Unit-length copy of the vector, or null for an empty or all-zero vector
+     */
+    private static float[] normalize(float[] vector) {
+        if (vector == null || vector.length == 0) {
+            return null;
+        }
+        double norm = 0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        if (norm == 0) {
+            return null;
+        }
+        double scale = 1 / Math.sqrt(norm);
+        float[] normalized = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = (float) (vector[i] * scale);
+        }
+        return normalized;
+    }
+}
@@ -0,0 +1,225 @@
+package com.jio.jcpaura.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Semantic cache of answered questions. Questions are embedded with the Ollama embedding model and
+ * looked up in a {@link SemanticIndex}; a paraphrase of an earlier question ("what's availability in
+ * Karnataka" after "Karnataka availability") reuses its entity identification and MongoDB query, so only
+ * the query is executed again and, unless {@code aura.ai.semantic-cache.reformat=false}, the response formatted.
+ */
+@Service
+public class SemanticQueryCache {
+
+    /**
+     * A question whose pipeline completed, as stored in the index
+     */
+    public record Answer(String question, String entityIdentification, String mongoQuery, String response) {
+    }
+
+    /**
+     * Outcome of a lookup
+     * @param embedding Embedding of the question, to store its answer after a miss; null if embedding failed
+     * @param hit The matching answer, or null on a miss
+     */
+    public record Lookup(float[] embedding, SemanticIndex.Hit<Answer> hit) {
+    }
+
+    /**
+     * Words that change which query a question needs, mapped to a canonical operator
+     */
+    private static final Map<String, String> OPERATORS = Map.ofEntries(
+            Map.entry("above", ">"), Map.entry("over", ">"), Map.entry("greater", ">"), Map.entry("more", ">"),
+            Map.entry("higher", ">"), Map.entry("exceeding", ">"), Map.entry("exceeds", ">"), Map.entry(">", ">"),
+            Map.entry("below", "<"), Map.entry("under", "<"), Map.entry("less", "<"), Map.entry("lower", "<"),
+            Map.entry("fewer", "<"), Map.entry("<", "<"),
+            Map.entry("highest", "max"), Map.entry("top", "max"), Map.entry("max", "max"), Map.entry("maximum", "max"),
+            Map.entry("most", "max"), Map.entry("best", "max"),
+            Map.entry("lowest", "min"), Map.entry("bottom", "min"), Map.entry("min", "min"), Map.entry("minimum", "min"),
+            Map.entry("least", "min"), Map.entry("worst", "min"),
+            Map.entry("average", "avg"), Map.entry("avg", "avg"), Map.entry("mean", "avg"),
+            Map.entry("sum", "sum"), Map.entry("total", "sum"),
+            Map.entry("count", "count"), Map.entry("many", "count"), Map.entry("number", "count"),
+            Map.entry("by", "group"), Map.entry("per", "group"), Map.entry("each", "group"),
+            Map.entry("not", "not"), Map.entry("without", "not"), Map.entry("except", "not"), Map.entry("excluding", "not"));
+
+    private static final Pattern NUMBER = Pattern.compile("\\d+(\\.\\d+)?");
+
+    @Value("${aura.ai.semantic-cache.enabled:false}")
+    private boolean enabled;
+
+    @Value("${aura.ai.semantic-cache.threshold:0.92}")
+    private double threshold;
+
+    @Value("${aura.ai.semantic-cache.max-entries:2000}")
+    private int maxEntries;
+
+    @Value("${aura.ai.semantic-cache.ttl-seconds:3600}")
+    private long ttlSeconds;
+
+    @Value("${aura.ai.semantic-cache.reformat:true}")
+    private boolean reformat;
+
+    @Autowired
+    private OllamaService ollamaService;
+
+    private SemanticIndex<Answer> index;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong stores = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+    private final AtomicLong embedFailures = new AtomicLong();
+    private final DoubleAdder hitSimilarity = new DoubleAdder();
+
+    @PostConstruct
+    public void init() {
+        index = new SemanticIndex<>(enabled ? maxEntries : 0, ttlSeconds * 1000);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Whether a hit runs the formatting step again (true) or returns the stored response
+     */
+    public boolean isReformat() {
+        return reformat;
+    }
+
+    /**
+     * Embed a question and look for a stored answer to an equivalent one.
+     * A failed embedding call counts as a miss, so the question simply takes the model path.
+     * @param message The user's question
+     * @param guard The question's {@link #guard}
+     * @return The lookup, or null if the cache is disabled
+     * @throws OllamaOverloadedException if the embedding call is not admitted
+     */
+    public Lookup lookup(String message, String guard) {
+        if (!enabled) {
+            return null;
+        }
+        float[] embedding;
+        try {
+            embedding = ollamaService.embed(message, RequestPriority.INTERACTIVE);
+        } catch (OllamaOverloadedException e) {
+            throw e;
+        } catch (Exception e) {
+            embedFailures.incrementAndGet();
+            misses.incrementAndGet();
+            return new Lookup(null, null);
+        }
+
+        SemanticIndex.Hit<Answer> hit = index.search(embedding, guard, threshold);
+        if (hit == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+            hitSimilarity.add(hit.similarity());
+        }
+        return new Lookup(embedding, hit);
+    }
+
+    /**
+     * Store the answer to a question that missed
+     * @param lookup The miss returned by {@link #lookup}
+     * @param guard The question's {@link #guard}
+     * @param answer The completed answer
+     */
+    public void store(Lookup lookup, String guard, Answer answer) {
+        if (!enabled || lookup == null || lookup.embedding() == null || lookup.hit() != null) {
+            return;
+        }
+        index.add(lookup.embedding(), guard, answer);
+        stores.incrementAndGet();
+    }
+
+    /**
+     * Drop a stored answer, e.g. because its query no longer executes
+     */
+    public void invalidate(Answer answer) {
+        invalidations.addAndGet(index.removeIf(stored -> stored == answer));
+    }
+
+    /**
+     * Drop every stored answer
+     * @return Number of answers removed
+     */
+    public int invalidateAll() {
+        int removed = index.clear();
+        invalidations.addAndGet(removed);
+        return removed;
+    }
+
+    /**
+     * Get cache statistics
+     * @return Map of configuration, size, hit/miss counters, hit rate and mean hit similarity
+     */
+    public Map<String, Object> getStats() {
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("threshold", threshold);
+        stats.put("reformat", reformat);
+        stats.put("size", index.size());
+        stats.put("maxEntries", index.getCapacity());
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRate", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+        stats.put("avgHitSimilarity", hitCount == 0 ? 0.0 : hitSimilarity.sum() / hitCount);
+        stats.put("stores", stores.get());
+        stats.put("evictions", index.getEvictions());
+        stats.put("invalidations", invalidations.get());
+        stats.put("embedFailures", embedFailures.get());
+        return stats;
+    }
+
+    /**
+     * What a question asks for, beyond its wording: the routed entity and fields, the numbers, comparison
+     * and aggregation words, and the known circle/service type/health status values it names.
+     * Embeddings of "latency above 100" and "latency above 200", or of the same question about two circles,
+     * are nearly identical; their guards differ, so one never answers the other.
+     * @param message The user's question
+     * @param route Local entity route of the question, or null
+     * @param knownValues Stored values of the equality-filter fields
+     */
+    public static String guard(String message, EntityRouter.Route route, Map<String, List<String>> knownValues) {
+        String text = " " + QuestionNormalizer.planKey(message) + " ";
+        TreeSet<String> parts = new TreeSet<>();
+        if (route != null) {
+            parts.add("entity:" + route.collection());
+            route.matchedFields().forEach(field -> parts.add("field:" + field));
+        }
+        Matcher number = NUMBER.matcher(text);
+        while (number.find()) {
+            parts.add("number:" + number.group());
+        }
+        for (String word : text.trim().split(" ")) {
+            String operator = OPERATORS.get(word);
+            if (operator != null) {
+                parts.add("op:" + operator);
+            }
+        }
+        knownValues.forEach((field, values) -> values.forEach(value -> {
+            String phrase = QuestionNormalizer.planKey(value);
+            if (!phrase.isEmpty() && text.contains(" " + phrase + " ")) {
+                parts.add(field + ":" + phrase);
+            }
+        }));
+        return String.join("|", parts);
+    }
+}
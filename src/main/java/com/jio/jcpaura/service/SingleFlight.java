@@ -0,0 +1,72 @@
+package com.jio.jcpaura.service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent calls that share a key: the first caller (the leader) runs the work,
+ * callers arriving while it is in flight wait for and share its outcome.
+ * Nothing is cached once the leader finishes; the next call starts a fresh execution.
+ */
+public class SingleFlight<K, V> {
+
+    /**
+     * Outcome of {@link #execute}: the value, and whether it came from another caller's execution
+     */
+    public record Result<V>(V value, boolean shared) {
+    }
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong leaders = new AtomicLong();
+    private final AtomicLong followers = new AtomicLong();
+
+    /**
+     * Run {@code work} for {@code key}, or join an execution already in flight for the same key.
+     * Exceptions thrown by the leader are rethrown to every caller.
+     */
+    public Result<V> execute(K key, Supplier<V> work) {
+        CompletableFuture<V> own = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, own);
+
+        if (existing != null) {
+            followers.incrementAndGet();
+            try {
+                return new Result<>(existing.join(), true);
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+
+        leaders.incrementAndGet();
+        try {
+            V value = work.get();
+            own.complete(value);
+            return new Result<>(value, false);
+        } catch (RuntimeException e) {
+            own.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, own);
+        }
+    }
+
+    /**
+     * Get coalescing statistics
+     * @return Map of executions, coalesced callers and keys currently in flight
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("executions", leaders.get());
+        stats.put("coalesced", followers.get());
+        stats.put("inFlight", inFlight.size());
+        return stats;
+    }
+}
@@ -0,0 +1,64 @@
+package com.jio.jcpaura;
+
+import com.jio.jcpaura.service.AiJob;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit tests for job state transitions and cancellation
+ */
+class AiJobTests {
+
+    @Test
+    void testJobRunsToCompletion() {
+        AiJob job = new AiJob("1", "What is the availability in Karnataka?", false, 1_000);
+        AtomicInteger notified = new AtomicInteger();
+        job.onFinish(finished -> notified.incrementAndGet());
+
+        assert job.start(1_100);
+        job.finish(AiJob.Status.SUCCEEDED, Map.of("success", true, "timings", Map.of()), null, 1_500);
+
+        assert job.getStatus() == AiJob.Status.SUCCEEDED;
+        assert notified.get() == 1;
+        Map<String, Object> map = job.toMap();
+        assert map.get("queuedMs").equals(100L);
+        assert !((Map<?, ?>) map.get("result")).containsKey("timings");
+        assert !job.cancel(1_600);
+    }
+
+    @Test
+    void testJobCancelledWhileQueuedNeverStarts() {
+        AiJob job = new AiJob("2", "question", false, 1_000);
+        CompletableFuture<Void> worker = new CompletableFuture<>();
+        job.setFuture(worker);
+
+        assert job.cancel(1_200);
+
+        assert job.getStatus() == AiJob.Status.CANCELLED;
+        assert job.getCancellation().isCancelled();
+        assert worker.isCancelled();
+        assert !job.start(1_300);
+    }
+
+    @Test
+    void testCancelWinsOverLateCompletion() {
+        AiJob job = new AiJob("3", "question", true, 1_000);
+        job.start(1_000);
+        AtomicInteger notified = new AtomicInteger();
+        job.onFinish(finished -> notified.incrementAndGet());
+
+        job.cancel(1_200);
+        job.finish(AiJob.Status.FAILED, Map.of("success", false), "aborted", 1_300);
+
+        assert job.getStatus() == AiJob.Status.CANCELLED;
+        assert job.getFinishedAt() == 1_200;
+        assert notified.get() == 1;
+
+        // Subscribing after the job finished is notified at once
+        job.onFinish(finished -> notified.incrementAndGet());
+        assert notified.get() == 2;
+    }
+}
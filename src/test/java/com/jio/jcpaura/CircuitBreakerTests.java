@@ -0,0 +1,88 @@
+package com.jio.jcpaura;
+
+import com.jio.jcpaura.service.CircuitBreaker;
+import com.jio.jcpaura.service.LatencyTracker;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Unit tests for the per-backend circuit breaker and the latency window behind hedging
+ */
+class CircuitBreakerTests {
+
+    @Test
+    void testOpensAfterConsecutiveFailures() {
+        AtomicLong now = new AtomicLong(0);
+        CircuitBreaker breaker = new CircuitBreaker(3, 1_000, now::get);
+
+        breaker.recordFailure();
+        breaker.recordFailure();
+        breaker.recordSuccess();
+        breaker.recordFailure();
+        breaker.recordFailure();
+        assert breaker.getState() == CircuitBreaker.State.CLOSED;
+
+        breaker.recordFailure();
+        assert breaker.getState() == CircuitBreaker.State.OPEN;
+        assert !breaker.isCallPermitted();
+        assert !breaker.tryAcquirePermission();
+    }
+
+    @Test
+    void testHalfOpenAllowsSingleTrialCall() {
+        AtomicLong now = new AtomicLong(0);
+        CircuitBreaker breaker = new CircuitBreaker(1, 1_000, now::get);
+        breaker.recordFailure();
+        assert breaker.getState() == CircuitBreaker.State.OPEN;
+
+        now.set(1_000);
+        assert breaker.tryAcquirePermission();
+        assert breaker.getState() == CircuitBreaker.State.HALF_OPEN;
+        assert !breaker.tryAcquirePermission();
+
+        // Trial fails: open again for another full period
+        breaker.recordFailure();
+        assert breaker.getState() == CircuitBreaker.State.OPEN;
+        now.set(1_500);
+        assert !breaker.isCallPermitted();
+
+        // Trial succeeds: closed
+        now.set(2_000);
+        assert breaker.tryAcquirePermission();
+        breaker.recordSuccess();
+        assert breaker.getState() == CircuitBreaker.State.CLOSED;
+        assert breaker.getStats().get("timesOpened").equals(2L);
+    }
+
+    @Test
+    void testReleasedTrialLetsNextCallThrough() {
+        AtomicLong now = new AtomicLong(0);
+        CircuitBreaker breaker = new CircuitBreaker(1, 1_000, now::get);
+        breaker.recordFailure();
+        now.set(1_000);
+
+        assert breaker.tryAcquirePermission();
+        breaker.releasePermission();
+        assert breaker.tryAcquirePermission();
+    }
+
+    @Test
+    void testLatencyPercentilesOverSlidingWindow() {
+        LatencyTracker latency = new LatencyTracker(100);
+        assert latency.percentile(0.95) == -1;
+
+        for (int i = 1; i <= 100; i++) {
+            latency.record(i);
+        }
+        assert latency.percentile(0.50) == 50;
+        assert latency.percentile(0.95) == 95;
+
+        // The window keeps only the latest 100 samples
+        for (int i = 0; i < 100; i++) {
+            latency.record(1_000);
+        }
+        assert latency.getCount() == 100;
+        assert latency.percentile(0.50) == 1_000;
+    }
+}
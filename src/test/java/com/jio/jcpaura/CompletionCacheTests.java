@@ -0,0 +1,66 @@
+package com.jio.jcpaura;
+
+import com.jio.jcpaura.service.CompletionCache;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Unit tests for the LRU + TTL completion cache
+ */
+class CompletionCacheTests {
+
+    private static CompletionCache.Key key(String prompt) {
+        return new CompletionCache.Key("qwen2.5-coder:3b", prompt, 0.0, 0.9, 40);
+    }
+
+    @Test
+    void testHitAndMiss() {
+        CompletionCache cache = new CompletionCache(10, 60_000);
+        assert cache.get(key("a")) == null;
+
+        cache.put(key("a"), "answer");
+        assert "answer".equals(cache.get(key("a")));
+        assert cache.get(new CompletionCache.Key("qwen2.5-coder:3b", "a", 0.7, 0.9, 40)) == null;
+
+        assert cache.getStats().get("hits").equals(1L);
+        assert cache.getStats().get("misses").equals(2L);
+    }
+
+    @Test
+    void testLeastRecentlyUsedEviction() {
+        CompletionCache cache = new CompletionCache(2, 60_000);
+        cache.put(key("a"), "1");
+        cache.put(key("b"), "2");
+        cache.get(key("a"));
+        cache.put(key("c"), "3");
+
+        assert cache.size() == 2;
+        assert cache.get(key("b")) == null;
+        assert "1".equals(cache.get(key("a")));
+        assert "3".equals(cache.get(key("c")));
+        assert cache.getStats().get("evictions").equals(1L);
+    }
+
+    @Test
+    void testEntriesExpireAfterTtl() {
+        AtomicLong now = new AtomicLong(1_000);
+        CompletionCache cache = new CompletionCache(10, 500, now::get);
+        cache.put(key("a"), "answer");
+
+        now.addAndGet(400);
+        assert "answer".equals(cache.get(key("a")));
+
+        now.addAndGet(200);
+        assert cache.get(key("a")) == null;
+        assert cache.size() == 0;
+        assert cache.getStats().get("expirations").equals(1L);
+    }
+
+    @Test
+    void testDisabledCacheStoresNothing() {
+        CompletionCache cache = new CompletionCache(0, 60_000);
+        cache.put(key("a"), "answer");
+        assert cache.size() == 0;
+    }
+}
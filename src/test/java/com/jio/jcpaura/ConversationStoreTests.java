@@ -0,0 +1,65 @@
+package com.jio.jcpaura;
+
+import com.jio.jcpaura.service.ConversationStore;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Unit tests for the bounded conversation memory
+ */
+class ConversationStoreTests {
+
+    private static ConversationStore.Turn turn(String question, int rows) {
+        return new ConversationStore.Turn(question, "Entity: auraGeneralMetrics", "{}",
+                Collections.nCopies(rows, new Document("circle", "Karnataka")));
+    }
+
+    @Test
+    void testLeastRecentlyUsedSessionIsEvicted() {
+        ConversationStore store = new ConversationStore(2, 100, 1_000, 60_000);
+        store.put("a", turn("q1", 1));
+        store.put("b", turn("q2", 1));
+        store.get("a");
+        store.put("c", turn("q3", 1));
+
+        assert store.size() == 2;
+        assert store.get("b") == null;
+        assert store.get("a").question().equals("q1");
+        assert store.get("c") != null;
+    }
+
+    @Test
+    void testRowBudgets() {
+        ConversationStore store = new ConversationStore(10, 50, 100, 60_000);
+        store.put("big", turn("q", 80));
+        assert store.get("big").rows() == null;
+
+        store.put("a", turn("q1", 50));
+        store.put("b", turn("q2", 40));
+        store.put("c", turn("q3", 30));
+        // 120 rows over the 100-row budget: the least recently used session goes
+        assert store.get("a") == null;
+        assert store.get("b").rows().size() == 40;
+        assert store.getStats().get("rows").equals(70L);
+
+        store.put("b", turn("q4", 10));
+        assert store.getStats().get("rows").equals(40L);
+        assert store.remove("b");
+        assert store.getStats().get("rows").equals(30L);
+    }
+
+    @Test
+    void testIdleSessionsExpire() {
+        AtomicLong now = new AtomicLong(1_000);
+        ConversationStore store = new ConversationStore(10, 50, 100, 500, now::get);
+        store.put("a", turn("q", 1));
+
+        now.addAndGet(600);
+        assert store.get("a") == null;
+        assert store.size() == 0;
+        assert store.getStats().get("expirations").equals(1L);
+    }
+}
@@ -0,0 +1,80 @@
+package com.jio.jcpaura;
+
+import com.jio.jcpaura.entity.AuraGeneralMetrics;
+import com.jio.jcpaura.service.EntityRouter;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit tests for answering the entity identification step without the model
+ */
+class EntityRouterTests {
+
+    private final EntityRouter.Entity metrics = EntityRouter.describe(AuraGeneralMetrics.class,
+            "network performance metrics",
+            Map.of("throughput_mbps", List.of("speed"), "circle", List.of("region")),
+            List.of("network"));
+
+    @Test
+    void testFieldsAreReadFromMapping() {
+        assert metrics.collection().equals("auraGeneralMetrics");
+        assert metrics.fieldKeywords().containsKey("avg_latency_ms");
+        assert metrics.fieldKeywords().get("avg_latency_ms").contains("latency");
+        assert metrics.fieldKeywords().get("throughput_mbps").contains("speed");
+        assert !metrics.fieldKeywords().containsKey("id");
+    }
+
+    @Test
+    void testUnambiguousQuestionIsRoutedLocally() {
+        EntityRouter router = new EntityRouter(List.of(metrics));
+
+        EntityRouter.Route route = router.route("What is the average speed and latency per region?");
+        assert route != null;
+        assert route.collection().equals("auraGeneralMetrics");
+        assert route.matchedFields().equals(List.of("avg_latency_ms", "circle", "throughput_mbps"));
+        assert route.identification().startsWith("Entity: auraGeneralMetrics - ");
+    }
+
+    @Test
+    void testUnrelatedQuestionFallsBackToModel() {
+        EntityRouter router = new EntityRouter(List.of(metrics));
+
+        assert router.route("Tell me a joke") == null;
+        // Keywords only match whole words
+        assert router.route("Is the circlet closed?") == null;
+    }
+
+    @Test
+    void testQuestionMatchingSeveralEntitiesFallsBackToModel() {
+        EntityRouter router = new EntityRouter(List.of(metrics,
+                EntityRouter.describe(Site.class, "site inventory", Map.of(), List.of())));
+
+        assert router.route("List every circle").collection().equals("auraGeneralMetrics");
+        assert router.route("Which site has the lowest latency?") == null;
+    }
+
+    @Test
+    void testGuessPicksEntityWithMostMatchedFields() {
+        EntityRouter router = new EntityRouter(List.of(metrics,
+                EntityRouter.describe(Site.class, "site inventory", Map.of(), List.of())));
+
+        // Ambiguous for routing, but metrics matches more fields
+        assert router.route("Which site has the lowest latency?") == null;
+        assert router.guess("Which site has the lowest latency?").collection().equals("auraGeneralMetrics");
+        // Nothing matches: the first registered entity
+        assert router.guess("Tell me a joke").collection().equals("auraGeneralMetrics");
+
+        assert router.collectionNamed("Entity: sites - The user is asking about towers").equals("sites");
+        assert router.collectionNamed("I cannot tell which table this is about") == null;
+    }
+
+    @Document(collection = "sites")
+    private static class Site {
+        @Field("site_id")
+        private String siteId;
+    }
+}
@@ -0,0 +1,100 @@
+package com.jio.jcpaura;
+
+import com.jio.jcpaura.entity.AuraGeneralMetrics;
+import com.jio.jcpaura.service.EntityRouter;
+import com.jio.jcpaura.service.FollowUpInterpreter;
+import com.jio.jcpaura.service.QueryTemplateMatcher;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit tests for answering follow-up questions from the previous answer
+ */
+class FollowUpInterpreterTests {
+
+    private static final Map<String, List<String>> KNOWN_VALUES = Map.of(
+            "circle", List.of("Karnataka", "Gujarat", "Kerala"),
+            "service_type", List.of("Jio5G", "Jio4G"),
+            "health_status", List.of("GOOD", "WARNING", "CRITICAL"));
+
+    private static final EntityRouter.Entity METRICS = EntityRouter.describe(
+            AuraGeneralMetrics.class, "network performance metrics",
+            Map.of("throughput_mbps", List.of("speed"), "circle", List.of("region")),
+            List.of());
+
+    private final FollowUpInterpreter interpreter = new FollowUpInterpreter(METRICS, new QueryTemplateMatcher(METRICS));
+
+    @Test
+    void testFilterFollowUps() {
+        FollowUpInterpreter.FollowUp followUp = interpreter.interpret("And what about Gujarat?", KNOWN_VALUES);
+        assert followUp != null;
+        assert followUp.filter().toJson().equals("{\"circle\": \"Gujarat\"}");
+        assert followUp.sortField() == null && followUp.limit() == null;
+
+        followUp = interpreter.interpret("only those with latency above 50 ms", KNOWN_VALUES);
+        assert followUp.filter().toJson().equals("{\"avg_latency_ms\": {\"$gt\": 50}}");
+    }
+
+    @Test
+    void testSortAndSliceFollowUps() {
+        FollowUpInterpreter.FollowUp followUp = interpreter.interpret("sort that by latency descending", KNOWN_VALUES);
+        assert followUp.filter() == null;
+        assert followUp.sortField().equals("avg_latency_ms");
+        assert followUp.descending();
+
+        followUp = interpreter.interpret("top 5 by speed", KNOWN_VALUES);
+        assert followUp.sortField().equals("throughput_mbps");
+        assert followUp.descending();
+        assert followUp.limit() == 5;
+    }
+
+    @Test
+    void testOtherQuestionsAreNotFollowUps() {
+        assert interpreter.interpret("What is the availability in Karnataka?", KNOWN_VALUES) == null;
+        assert interpreter.interpret("and what is the average latency by circle", KNOWN_VALUES) == null;
+        assert interpreter.interpret("what about yesterday's outages", KNOWN_VALUES) == null;
+        assert interpreter.interpret("last 5", KNOWN_VALUES) == null;
+    }
+
+    @Test
+    void testApplyFiltersSortsAndSlices() {
+        List<Document> rows = List.of(
+                new Document("circle", "Karnataka").append("avg_latency_ms", 40),
+                new Document("circle", "Gujarat").append("avg_latency_ms", 70.5),
+                new Document("circle", "Kerala"),
+                new Document("circle", "Gujarat").append("avg_latency_ms", 55));
+
+        List<Document> sorted = FollowUpInterpreter.apply(
+                new FollowUpInterpreter.FollowUp(null, "avg_latency_ms", true, 3), rows);
+        assert sorted.stream().map(row -> row.get("avg_latency_ms")).toList().equals(List.of(70.5, 55, 40));
+
+        List<Document> gujarat = FollowUpInterpreter.apply(
+                new FollowUpInterpreter.FollowUp(new Document("circle", "gujarat"), "avg_latency_ms", false, null), rows);
+        assert gujarat.size() == 2;
+        assert gujarat.get(0).get("avg_latency_ms").equals(55);
+
+        // Aggregated rows are sorted by the aggregate of the field
+        List<Document> groups = FollowUpInterpreter.apply(new FollowUpInterpreter.FollowUp(null, "avg_latency_ms", true, null),
+                List.of(new Document("_id", "A").append("avg_avg_latency_ms", 1), new Document("_id", "B").append("avg_avg_latency_ms", 2)));
+        assert groups.get(0).get("_id").equals("B");
+    }
+
+    @Test
+    void testRefineAndNeedsQuery() {
+        Document gujarat = new Document("circle", "Gujarat");
+        assert FollowUpInterpreter.refine("Query: {\"circle\": \"Karnataka\", \"service_type\": \"Jio5G\"}", gujarat)
+                .equals("{\"circle\": \"Gujarat\", \"service_type\": \"Jio5G\"}");
+        assert FollowUpInterpreter.refine("[{\"$group\": {\"_id\": \"$service_type\"}}]", gujarat)
+                .equals("[{\"$match\": {\"circle\": \"Gujarat\"}}, {\"$group\": {\"_id\": \"$service_type\"}}]");
+        assert FollowUpInterpreter.refine("{\"$or\": [{\"circle\": \"Karnataka\"}]}", gujarat) == null;
+
+        List<Document> rows = List.of(new Document("circle", "Karnataka").append("service_type", "Jio5G"));
+        assert FollowUpInterpreter.needsQuery("{\"circle\": \"Karnataka\"}", gujarat, rows);
+        assert !FollowUpInterpreter.needsQuery("{\"service_type\": \"Jio5G\"}", gujarat, rows);
+        assert FollowUpInterpreter.needsQuery("[{\"$group\": {\"_id\": \"$service_type\"}}]", gujarat,
+                List.of(new Document("_id", "Jio5G")));
+    }
+}
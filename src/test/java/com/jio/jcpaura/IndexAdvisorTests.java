@@ -0,0 +1,85 @@
+package com.jio.jcpaura;
+
+import com.jio.jcpaura.service.IndexAdvisor;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit tests for query shape extraction and index recommendations
+ */
+class IndexAdvisorTests {
+
+    @Test
+    void testShapeOrdersEqualitySortRange() {
+        Document filter = Document.parse("{\"service_type\": \"API\", \"circle\": {\"$in\": [\"NORTH\", \"WEST\"]}, "
+                + "\"avg_latency_ms\": {\"$gt\": 100}, \"$or\": [{\"site_id\": \"S1\"}, {\"site_id\": \"S2\"}]}");
+
+        IndexAdvisor.Shape shape = IndexAdvisor.shapeOf(filter, new Document("kpi_timestamp", -1).append("_id", -1));
+
+        assert shape.equality().equals(List.of("circle", "service_type"));
+        assert shape.range().equals(List.of("avg_latency_ms"));
+        assert shape.indexKeys().equals(new Document("circle", 1).append("service_type", 1)
+                .append("kpi_timestamp", -1).append("avg_latency_ms", 1));
+    }
+
+    @Test
+    void testPipelineShapeUsesLeadingMatchAndSort() {
+        List<Document> pipeline = List.of(
+                Document.parse("{\"$match\": {\"circle\": \"NORTH\"}}"),
+                Document.parse("{\"$match\": {\"kpi_timestamp\": {\"$gte\": {\"$date\": \"2024-02-01T00:00:00Z\"}}}}"),
+                Document.parse("{\"$sort\": {\"avg_latency_ms\": -1}}"),
+                Document.parse("{\"$match\": {\"health_status\": \"DEGRADED\"}}"));
+
+        IndexAdvisor.Shape shape = IndexAdvisor.shapeOfPipeline(pipeline);
+
+        assert shape.indexKeys().equals(new Document("circle", 1).append("avg_latency_ms", -1).append("kpi_timestamp", 1));
+        assert IndexAdvisor.shapeOfPipeline(List.of(Document.parse("{\"$group\": {\"_id\": \"$circle\"}}"))).isEmpty();
+    }
+
+    @Test
+    void testExistingIndexServesShape() {
+        IndexAdvisor.Shape shape = IndexAdvisor.shapeOf(Document.parse("{\"service_type\": \"API\", \"circle\": \"NORTH\"}"),
+                new Document("kpi_timestamp", 1));
+
+        // Equality fields in any order, sort reversed, extra trailing keys
+        assert shape.isServedBy(new Document("service_type", 1).append("circle", -1).append("kpi_timestamp", -1)
+                .append("site_id", 1));
+        assert !shape.isServedBy(new Document("circle", 1).append("service_type", 1));
+        assert !shape.isServedBy(new Document("circle", 1).append("kpi_timestamp", -1).append("service_type", 1));
+    }
+
+    @Test
+    void testReportCountsShapesAndFindsMissingIndexes() {
+        IndexAdvisor advisor = new IndexAdvisor(10, () -> 42L);
+        Document byCircle = new Document("circle", 1).append("kpi_timestamp", -1);
+        for (int i = 0; i < 3; i++) {
+            advisor.record(IndexAdvisor.shapeOf(new Document("circle", "NORTH"), new Document("kpi_timestamp", -1)));
+        }
+        advisor.record(IndexAdvisor.shapeOf(new Document("site_id", "S1"), null));
+        advisor.record(IndexAdvisor.shapeOf(new Document(), null));
+
+        List<Map<String, Object>> report = advisor.report(List.of(byCircle));
+        assert report.size() == 2;
+        assert report.get(0).get("count").equals(3L);
+        assert report.get(0).get("covered").equals(true);
+        assert report.get(0).get("lastSeen").equals(42L);
+        assert report.get(1).get("covered").equals(false);
+
+        assert advisor.missing(List.of(byCircle), 1).equals(List.of(new Document("site_id", 1)));
+        assert advisor.missing(List.of(byCircle), 2).isEmpty();
+        assert advisor.getStats().get("unindexable").equals(1L);
+    }
+
+    @Test
+    void testShapesBeyondLimitAreOnlyCounted() {
+        IndexAdvisor advisor = new IndexAdvisor(1);
+        advisor.record(IndexAdvisor.shapeOf(new Document("circle", "NORTH"), null));
+        advisor.record(IndexAdvisor.shapeOf(new Document("site_id", "S1"), null));
+
+        assert advisor.getStats().get("shapes").equals(1);
+        assert advisor.getStats().get("untracked").equals(1L);
+    }
+}
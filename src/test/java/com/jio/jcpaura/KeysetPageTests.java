@@ -0,0 +1,122 @@
+package com.jio.jcpaura;
+
+import com.jio.jcpaura.service.KeysetPage;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Unit tests for keyset pagination conditions and continuation tokens
+ */
+class KeysetPageTests {
+
+    private static final KeysetPage.Sort NEWEST_FIRST = new KeysetPage.Sort("kpi_timestamp", true);
+
+    @Test
+    void testParseSortSpec() {
+        assert KeysetPage.Sort.parse(null, NEWEST_FIRST) == NEWEST_FIRST;
+        assert KeysetPage.Sort.parse("-avg_latency_ms", NEWEST_FIRST).equals(new KeysetPage.Sort("avg_latency_ms", true));
+        assert KeysetPage.Sort.parse("circle:asc", NEWEST_FIRST).equals(new KeysetPage.Sort("circle", false));
+        assert KeysetPage.Sort.parse("circle", NEWEST_FIRST).equals(new KeysetPage.Sort("circle", false));
+        assert NEWEST_FIRST.toDocument().equals(new Document("kpi_timestamp", -1).append("_id", -1));
+
+        for (String invalid : List.of("$where", "circle:up", "-")) {
+            try {
+                KeysetPage.Sort.parse(invalid, NEWEST_FIRST);
+                assert false : invalid;
+            } catch (IllegalArgumentException expected) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    void testTokenRoundTripKeepsTypes() {
+        Date timestamp = new Date(1_707_470_000_000L);
+        ObjectId id = new ObjectId();
+        String fingerprint = KeysetPage.fingerprint("{\"circle\": \"NORTH\"}", NEWEST_FIRST);
+
+        String token = KeysetPage.encode(NEWEST_FIRST, new KeysetPage.Position(timestamp, id), fingerprint);
+        KeysetPage.Position position = KeysetPage.decode(token, NEWEST_FIRST, fingerprint);
+
+        assert position.value().equals(timestamp);
+        assert position.id().equals(id);
+    }
+
+    @Test
+    void testTokenRejectedForAnotherQueryOrSort() {
+        String fingerprint = KeysetPage.fingerprint("{}", NEWEST_FIRST);
+        String token = KeysetPage.encode(NEWEST_FIRST, new KeysetPage.Position(new Date(), new ObjectId()), fingerprint);
+
+        KeysetPage.Sort oldestFirst = new KeysetPage.Sort("kpi_timestamp", false);
+        List<Runnable> misuses = List.of(
+                () -> KeysetPage.decode(token, NEWEST_FIRST, KeysetPage.fingerprint("{\"circle\": \"WEST\"}", NEWEST_FIRST)),
+                () -> KeysetPage.decode(token, oldestFirst, KeysetPage.fingerprint("{}", oldestFirst)),
+                () -> KeysetPage.decode("not a token", NEWEST_FIRST, fingerprint));
+        for (Runnable misuse : misuses) {
+            try {
+                misuse.run();
+                assert false;
+            } catch (IllegalArgumentException expected) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    void testAfterConditionDescendingIncludesTrailingNulls() {
+        Date timestamp = new Date(1_000);
+        ObjectId id = new ObjectId();
+
+        Document after = KeysetPage.after(NEWEST_FIRST, new KeysetPage.Position(timestamp, id));
+
+        assert after.equals(new Document("$or", List.of(
+                new Document("kpi_timestamp", new Document("$lt", timestamp)),
+                new Document("kpi_timestamp", null),
+                new Document("kpi_timestamp", timestamp).append("_id", new Document("$lt", id)))));
+    }
+
+    @Test
+    void testAfterConditionAscendingFromNull() {
+        KeysetPage.Sort byCircle = new KeysetPage.Sort("circle", false);
+        ObjectId id = new ObjectId();
+
+        Document after = KeysetPage.after(byCircle, new KeysetPage.Position(null, id));
+
+        assert after.equals(new Document("$or", List.of(
+                new Document("circle", new Document("$ne", null)),
+                new Document("circle", null).append("_id", new Document("$gt", id)))));
+    }
+
+    @Test
+    void testPageUsesExtraRowOnlyToSignalMore() {
+        KeysetPage.Sort byId = new KeysetPage.Sort("_id", false);
+        List<Document> rows = List.of(new Document("_id", 1), new Document("_id", 2), new Document("_id", 3));
+
+        KeysetPage.Page<Document> last = KeysetPage.page(rows, 3, byId, "q");
+        assert last.rows().size() == 3 && last.nextCursor() == null;
+
+        KeysetPage.Page<Document> first = KeysetPage.page(rows, 2, byId, "q");
+        assert first.rows().size() == 2;
+        KeysetPage.Position position = KeysetPage.decode(first.nextCursor(), byId, "q");
+        assert position.id().equals(2);
+        assert KeysetPage.after(byId, position).equals(new Document("_id", new Document("$gt", 2)));
+    }
+
+    @Test
+    void testRowsWithoutIdCannotBeContinued() {
+        KeysetPage.Sort byCount = new KeysetPage.Sort("count", true);
+        List<Document> rows = List.of(new Document("count", 3), new Document("count", 2), new Document("count", 1));
+
+        assert KeysetPage.page(rows, 3, byCount, "q").nextCursor() == null;
+        try {
+            KeysetPage.page(rows, 2, byCount, "q");
+            assert false;
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+    }
+}
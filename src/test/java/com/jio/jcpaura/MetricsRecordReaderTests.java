@@ -0,0 +1,90 @@
+package com.jio.jcpaura;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.jio.jcpaura.service.MetricsRecordReader;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unit tests for incremental parsing of bulk ingest bodies
+ */
+class MetricsRecordReaderTests {
+
+    private static List<MetricsRecordReader.Record> readAll(String body, boolean ndjson) throws IOException {
+        List<MetricsRecordReader.Record> records = new ArrayList<>();
+        try (MetricsRecordReader reader = new MetricsRecordReader(
+                new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), ndjson)) {
+            MetricsRecordReader.Record record;
+            while ((record = reader.next()) != null) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    @Test
+    void testArrayKeepsGoingPastInvalidSamples() throws IOException {
+        String body = "[{\"site_id\": \"S1\", \"circle\": \"NORTH\", \"kpi_timestamp\": \"2026-02-09T10:30:00\", \"extra\": 1},"
+                + " {\"site_id\": \"S2\", \"active_users\": \"many\"},"
+                + " 42,"
+                + " {\"site_id\": \"S3\", \"kpi_timestamp\": \"2026-02-09\"}]";
+
+        List<MetricsRecordReader.Record> records = readAll(body, false);
+
+        assert records.size() == 4;
+        assert records.get(0).metrics().getSiteId().equals("S1");
+        assert records.get(0).metrics().getKpiTimestamp().equals(LocalDateTime.of(2026, 2, 9, 10, 30));
+        assert records.get(1).metrics() == null && records.get(1).error() != null;
+        assert records.get(2).error().startsWith("Expected a JSON object");
+        assert records.get(3).index() == 3;
+        assert records.get(3).metrics().getKpiTimestamp().equals(LocalDateTime.of(2026, 2, 9, 0, 0));
+    }
+
+    @Test
+    void testNdjsonFailsOnlyTheBrokenLine() throws IOException {
+        String body = "{\"site_id\": \"S1\"}\n"
+                + "\n"
+                + "{\"site_id\": \"S2\", \n"
+                + "{\"site_id\": \"S3\", \"kpi_timestamp\": \"not a time\"}\n"
+                + "{\"site_id\": \"S4\"}";
+
+        List<MetricsRecordReader.Record> records = readAll(body, true);
+
+        assert records.size() == 4;
+        assert records.get(0).metrics().getSiteId().equals("S1");
+        assert records.get(1).error().startsWith("Invalid JSON");
+        assert records.get(2).metrics() == null;
+        assert records.get(3).index() == 3 && records.get(3).metrics().getSiteId().equals("S4");
+    }
+
+    @Test
+    void testMalformedArrayStopsReading() throws IOException {
+        try (MetricsRecordReader reader = new MetricsRecordReader(new ByteArrayInputStream(
+                "[{\"site_id\": \"S1\"}, {\"site_id\": ]".getBytes(StandardCharsets.UTF_8)), false)) {
+            assert reader.next().metrics().getSiteId().equals("S1");
+            try {
+                reader.next();
+                assert false;
+            } catch (JsonProcessingException expected) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    void testEpochMillisTimestamp() throws IOException {
+        long millis = 1_770_000_000_000L;
+        List<MetricsRecordReader.Record> records = readAll("{\"kpi_timestamp\": " + millis + "}", false);
+
+        assert records.size() == 1;
+        assert records.get(0).metrics().getKpiTimestamp().atZone(ZoneId.systemDefault())
+                .toInstant().toEpochMilli() == millis;
+    }
+}
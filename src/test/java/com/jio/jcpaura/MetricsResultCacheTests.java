@@ -0,0 +1,120 @@
+package com.jio.jcpaura;
+
+import com.jio.jcpaura.service.MetricsResultCache;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Unit tests for result cache keys, scoped invalidation and memory-weighted eviction
+ */
+class MetricsResultCacheTests {
+
+    private static final List<Document> ROWS = List.of(new Document("circle", "NORTH"));
+
+    @Test
+    void testKeyIgnoresFieldOrderButNotSortOrder() {
+        Document filter = Document.parse("{\"circle\": \"NORTH\", \"availability_pct\": {\"$lt\": 99, \"$gt\": 90}}");
+        Document reordered = Document.parse("{\"availability_pct\": {\"$gt\": 90, \"$lt\": 99}, \"circle\": \"NORTH\"}");
+        assert MetricsResultCache.key("query", filter, 0).equals(MetricsResultCache.key("query", reordered, 0));
+        assert !MetricsResultCache.key("query", filter, 0).equals(MetricsResultCache.key("query", filter, 10));
+
+        List<Document> bySiteThenTime = List.of(Document.parse("{\"$sort\": {\"site_id\": 1, \"kpi_timestamp\": -1}}"));
+        List<Document> byTimeThenSite = List.of(Document.parse("{\"$sort\": {\"kpi_timestamp\": -1, \"site_id\": 1}}"));
+        assert !MetricsResultCache.key("aggregation", bySiteThenTime).equals(MetricsResultCache.key("aggregation", byTimeThenSite));
+
+        // Values of different types are different queries
+        assert !MetricsResultCache.key("query", new Document("active_users", 1), 0)
+                .equals(MetricsResultCache.key("query", new Document("active_users", "1"), 0));
+    }
+
+    @Test
+    void testScopeFromFilterAndPipeline() {
+        MetricsResultCache.Scope scope = MetricsResultCache.scopeOf(Document.parse(
+                "{\"circle\": {\"$in\": [\"NORTH\", \"WEST\"]}, \"$and\": [{\"service_type\": \"JIO5G\"}]}"));
+        assert scope.circles().equals(Set.of("NORTH", "WEST"));
+        assert scope.serviceTypes().equals(Set.of("JIO5G"));
+        assert scope.touches("WEST", "JIO5G");
+        assert !scope.touches("EAST", "JIO5G");
+        assert !scope.touches("NORTH", null);
+
+        MetricsResultCache.Scope pipeline = MetricsResultCache.scopeOfPipeline(List.of(
+                Document.parse("{\"$match\": {\"circle\": \"NORTH\"}}"),
+                Document.parse("{\"$group\": {\"_id\": \"$service_type\"}}")));
+        assert pipeline.circles().equals(Set.of("NORTH"));
+        assert pipeline.serviceTypes() == null;
+
+        assert MetricsResultCache.scopeOf(Document.parse("{\"circle\": {\"$regex\": \"^N\"}}")).circles() == null;
+    }
+
+    @Test
+    void testPipelineReadingOtherDocumentsHasNoScope() {
+        Document north = Document.parse("{\"$match\": {\"circle\": \"NORTH\"}}");
+
+        assert MetricsResultCache.scopeOfPipeline(List.of(north,
+                Document.parse("{\"$unionWith\": {\"coll\": \"auraGeneralMetrics\"}}")))
+                .equals(MetricsResultCache.Scope.ANY);
+        assert MetricsResultCache.scopeOfPipeline(List.of(north, Document.parse(
+                "{\"$facet\": {\"peers\": [{\"$lookup\": {\"from\": \"auraGeneralMetrics\", "
+                        + "\"localField\": \"site_id\", \"foreignField\": \"site_id\", \"as\": \"peers\"}}]}}")))
+                .equals(MetricsResultCache.Scope.ANY);
+    }
+
+    @Test
+    void testWriteInvalidatesOnlyTouchedResults() {
+        MetricsResultCache cache = new MetricsResultCache(10_000, 10_000, 100, 60_000);
+        MetricsResultCache.Scope north = MetricsResultCache.scopeOf(new Document("circle", "NORTH"));
+        MetricsResultCache.Scope west = MetricsResultCache.scopeOf(new Document("circle", "WEST"));
+        cache.put("north", ROWS, 100, north, cache.version());
+        cache.put("west", ROWS, 100, west, cache.version());
+        cache.put("all", ROWS, 100, MetricsResultCache.Scope.ANY, cache.version());
+
+        assert cache.invalidate(List.of(new MetricsResultCache.Write("NORTH", "JIO4G"))) == 2;
+
+        assert cache.get("north") == null;
+        assert cache.get("all") == null;
+        assert cache.get("west") != null;
+        assert cache.getStats().get("bytes").equals(100L);
+    }
+
+    @Test
+    void testResultReadDuringWriteIsNotStored() {
+        MetricsResultCache cache = new MetricsResultCache(10_000, 10_000, 100, 60_000);
+        long version = cache.version();
+        cache.invalidate(List.of(new MetricsResultCache.Write("WEST", "JIO5G")));
+
+        assert !cache.put("north", ROWS, 100, MetricsResultCache.Scope.ANY, version);
+        assert cache.getStats().get("stale").equals(1L);
+    }
+
+    @Test
+    void testEvictsLeastRecentlyUsedByBytes() {
+        MetricsResultCache cache = new MetricsResultCache(1_000, 600, 100, 60_000);
+        cache.put("a", ROWS, 400, MetricsResultCache.Scope.ANY, cache.version());
+        cache.put("b", ROWS, 400, MetricsResultCache.Scope.ANY, cache.version());
+        cache.get("a");
+        cache.put("c", ROWS, 400, MetricsResultCache.Scope.ANY, cache.version());
+
+        assert cache.get("b") == null;
+        assert cache.get("a") != null && cache.get("c") != null;
+        assert cache.getStats().get("bytes").equals(800L);
+
+        assert !cache.put("d", ROWS, 700, MetricsResultCache.Scope.ANY, cache.version());
+        assert cache.getStats().get("oversized").equals(1L);
+    }
+
+    @Test
+    void testEntriesExpire() {
+        long[] now = {0};
+        MetricsResultCache cache = new MetricsResultCache(1_000, 1_000, 10, 1_000, () -> now[0]);
+        cache.put("a", ROWS, 10, MetricsResultCache.Scope.ANY, cache.version());
+
+        now[0] = 1_001;
+
+        assert cache.get("a") == null;
+        assert cache.getStats().get("expirations").equals(1L);
+        assert cache.getStats().get("bytes").equals(0L);
+    }
+}
@@ -0,0 +1,101 @@
+package com.jio.jcpaura;
+
+import com.jio.jcpaura.service.MetricsUpserts;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.bulk.BulkWriteUpsert;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
+import org.bson.BsonObjectId;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Unit tests for the idempotent write models of metrics samples and the accounting of their results
+ */
+class MetricsUpsertsTests {
+
+    private static final Date TIMESTAMP = new Date(1_707_470_000_000L);
+
+    private static Document sample(ObjectId id, String site) {
+        return new Document("_id", id)
+                .append("site_id", site)
+                .append("kpi_timestamp", TIMESTAMP)
+                .append("service_type", "API")
+                .append("avg_latency_ms", 50.5);
+    }
+
+    @Test
+    void testSampleIsUpsertedOnItsNaturalKey() {
+        WriteModel<Document> model = MetricsUpserts.writeModel(sample(new ObjectId(), "SITE001"));
+
+        assert model instanceof UpdateOneModel;
+        UpdateOneModel<Document> upsert = (UpdateOneModel<Document>) model;
+        assert upsert.getFilter().equals(new Document("site_id", "SITE001")
+                .append("kpi_timestamp", TIMESTAMP)
+                .append("service_type", "API"));
+        assert upsert.getOptions().isUpsert();
+    }
+
+    @Test
+    void testIdIsOnlySetOnInsert() {
+        ObjectId id = new ObjectId();
+
+        Document update = MetricsUpserts.update(sample(id, "SITE001"));
+
+        assert update.get("$setOnInsert", Document.class).equals(new Document("_id", id));
+        Document set = update.get("$set", Document.class);
+        assert !set.containsKey("_id");
+        assert set.get("avg_latency_ms").equals(50.5) && set.get("site_id").equals("SITE001");
+    }
+
+    @Test
+    void testSampleWithoutIdHasNoSetOnInsert() {
+        Document sample = sample(null, "SITE001");
+        sample.remove("_id");
+
+        assert !MetricsUpserts.update(sample).containsKey("$setOnInsert");
+    }
+
+    @Test
+    void testMissingServiceTypeMatchesStoredSamplesWithoutOne() {
+        Document sample = sample(new ObjectId(), "SITE001");
+        sample.remove("service_type");
+
+        Document filter = MetricsUpserts.naturalKey(sample);
+
+        assert filter.containsKey("service_type") && filter.get("service_type") == null;
+    }
+
+    @Test
+    void testSampleWithoutNaturalKeyIsInserted() {
+        Document noTimestamp = sample(new ObjectId(), "SITE001");
+        noTimestamp.remove("kpi_timestamp");
+        Document noSite = sample(new ObjectId(), null);
+
+        assert MetricsUpserts.writeModel(noTimestamp) instanceof InsertOneModel;
+        assert MetricsUpserts.writeModel(noSite) instanceof InsertOneModel;
+        assert !MetricsUpserts.hasNaturalKey(noSite);
+    }
+
+    @Test
+    void testInsertedAndUpdatedAccounting() {
+        // 0: plain insert, 1: upsert that inserted, 2: upsert that matched, 3: failed upsert
+        Document noKey = sample(new ObjectId(), null);
+        ObjectId upserted = new ObjectId();
+        List<Document> batch = List.of(noKey, sample(upserted, "SITE001"), sample(new ObjectId(), "SITE002"),
+                sample(new ObjectId(), "SITE003"));
+        BulkWriteResult result = BulkWriteResult.acknowledged(1, 1, 0, 0,
+                List.of(new BulkWriteUpsert(1, new BsonObjectId(upserted))), List.of());
+
+        assert MetricsUpserts.inserted(result) == 2;
+        assert MetricsUpserts.updated(result) == 1;
+        assert MetricsUpserts.matched(batch, result, Set.of(3)).equals(List.of(2));
+        assert MetricsUpserts.matched(batch, result, Set.of()).equals(List.of(2, 3));
+    }
+}
@@ -0,0 +1,163 @@
+package com.jio.jcpaura;
+
+import com.jio.jcpaura.service.MetricsWriteBuffer;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Unit tests for group commit, backpressure and write-ahead log replay of the write-behind buffer
+ */
+class MetricsWriteBufferTests {
+
+    private final List<List<Document>> written = new CopyOnWriteArrayList<>();
+
+    private final MetricsWriteBuffer.Sink recording = batch -> {
+        written.add(List.copyOf(batch));
+        return Map.of();
+    };
+
+    private static Document sample(int n) {
+        return new Document("_id", n).append("site_id", "S" + n);
+    }
+
+    private static void await(CompletableFuture<?> future) throws Exception {
+        future.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void testCommitsFullBatchesWithoutWaitingForTheInterval() throws Exception {
+        MetricsWriteBuffer buffer = new MetricsWriteBuffer(100, 3, 60_000, 100, 1, null, recording);
+        buffer.start();
+        CompletableFuture<?> last = null;
+        for (int i = 0; i < 6; i++) {
+            last = buffer.offer(sample(i), false);
+        }
+
+        await(last);
+
+        assert written.size() == 2;
+        assert written.get(0).size() == 3 && written.get(1).size() == 3;
+        assert written.get(1).get(2).equals(sample(5));
+        buffer.close(1_000);
+    }
+
+    @Test
+    void testPartialBatchIsCommittedAfterTheInterval() throws Exception {
+        MetricsWriteBuffer buffer = new MetricsWriteBuffer(100, 100, 20, 100, 1, null, recording);
+        buffer.start();
+        buffer.offer(sample(1), false);
+
+        await(buffer.offer(sample(2), false));
+
+        assert written.size() == 1 && written.get(0).size() == 2;
+        buffer.close(1_000);
+    }
+
+    @Test
+    void testFullBufferRejectsUntilTheBatchIsCommitted() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        MetricsWriteBuffer buffer = new MetricsWriteBuffer(2, 10, 60_000, 10, 1, null, batch -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return Map.of();
+        });
+        buffer.start();
+        buffer.offer(sample(1), false);
+        CompletableFuture<Document> second = buffer.offer(sample(2), true);
+
+        try {
+            buffer.offer(sample(3), false);
+            assert false;
+        } catch (RejectedExecutionException expected) {
+            // expected
+        }
+        release.countDown();
+        await(second);
+        await(buffer.offer(sample(3), true));
+        assert buffer.getStats().get("rejected").equals(1L);
+        buffer.close(1_000);
+    }
+
+    @Test
+    void testFailedBatchIsRetriedAndDocumentErrorsAreReported() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        MetricsWriteBuffer buffer = new MetricsWriteBuffer(100, 10, 60_000, 100, 1, null, batch -> {
+            if (calls.incrementAndGet() == 1) {
+                throw new IllegalStateException("connection refused");
+            }
+            return Map.of(0, "duplicate key");
+        });
+        buffer.start();
+        CompletableFuture<Document> first = buffer.offer(sample(1), false);
+        CompletableFuture<Document> second = buffer.offer(sample(2), true);
+
+        await(second);
+        try {
+            await(first);
+            assert false;
+        } catch (ExecutionException expected) {
+            assert expected.getCause().getMessage().equals("duplicate key");
+        }
+        assert buffer.getStats().get("retries").equals(1L);
+        assert buffer.getStats().get("committed").equals(1L);
+        buffer.close(1_000);
+    }
+
+    @Test
+    void testWriteAheadLogIsReplayedAfterACrash(@TempDir Path dir) throws Exception {
+        MetricsWriteBuffer.Wal wal = new MetricsWriteBuffer.Wal(dir, 1_000_000, false);
+        // Never started, never closed: the queued documents exist only in the log
+        MetricsWriteBuffer crashed = new MetricsWriteBuffer(100, 10, 60_000, 100, 1, wal, recording);
+        for (int i = 0; i < 3; i++) {
+            crashed.offer(sample(i), false);
+        }
+        assert written.isEmpty();
+
+        MetricsWriteBuffer restarted = new MetricsWriteBuffer(100, 10, 60_000, 100, 1, wal, recording);
+        restarted.start();
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!restarted.getStats().get("replayed").equals(3L) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assert written.size() == 1 && written.get(0).equals(List.of(sample(0), sample(1), sample(2)));
+        restarted.close(1_000);
+        assert segments(dir) == 0;
+    }
+
+    @Test
+    void testWriteAheadLogIsClearedOnceCommitted(@TempDir Path dir) throws Exception {
+        MetricsWriteBuffer buffer = new MetricsWriteBuffer(100, 10, 60_000, 100, 1,
+                new MetricsWriteBuffer.Wal(dir, 1_000_000, false), recording);
+        buffer.start();
+
+        await(buffer.offer(sample(1), true));
+        buffer.close(1_000);
+
+        assert segments(dir) == 0;
+    }
+
+    private static long segments(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.count();
+        }
+    }
+}
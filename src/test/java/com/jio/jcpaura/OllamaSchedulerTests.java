@@ -0,0 +1,91 @@
+package com.jio.jcpaura;
+
+import com.jio.jcpaura.service.OllamaOverloadedException;
+import com.jio.jcpaura.service.OllamaScheduler;
+import com.jio.jcpaura.service.RequestPriority;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit tests for admission control and priority ordering of model calls
+ */
+class OllamaSchedulerTests {
+
+    @Test
+    void testInteractiveCallsAreAdmittedBeforeBatch() throws Exception {
+        OllamaScheduler scheduler = new OllamaScheduler(1, 10, 5_000);
+        OllamaScheduler.Permit running = scheduler.acquire(RequestPriority.INTERACTIVE);
+
+        List<RequestPriority> admissionOrder = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(2);
+        Thread batch = startWaiter(scheduler, RequestPriority.BATCH, admissionOrder, done);
+        awaitQueued(scheduler, 1);
+        Thread interactive = startWaiter(scheduler, RequestPriority.INTERACTIVE, admissionOrder, done);
+        awaitQueued(scheduler, 2);
+
+        running.close();
+        assert done.await(5, TimeUnit.SECONDS);
+        batch.join();
+        interactive.join();
+
+        assert admissionOrder.equals(List.of(RequestPriority.INTERACTIVE, RequestPriority.BATCH));
+        assert scheduler.getStats().get("running").equals(0);
+    }
+
+    @Test
+    void testFullQueueRejectsImmediately() throws Exception {
+        OllamaScheduler scheduler = new OllamaScheduler(1, 0, 5_000);
+        try (OllamaScheduler.Permit ignored = scheduler.acquire(RequestPriority.INTERACTIVE)) {
+            long start = System.nanoTime();
+            try {
+                scheduler.acquire(RequestPriority.BATCH);
+                assert false;
+            } catch (OllamaOverloadedException e) {
+                assert e.getHttpStatus() == 429;
+                assert System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1);
+            }
+        }
+        assert scheduler.getStats().get("rejectedQueueFull").equals(1L);
+    }
+
+    @Test
+    void testQueuedCallGivesUpAfterDeadline() throws Exception {
+        OllamaScheduler scheduler = new OllamaScheduler(1, 10, 50);
+        try (OllamaScheduler.Permit ignored = scheduler.acquire(RequestPriority.INTERACTIVE)) {
+            try {
+                scheduler.acquire(RequestPriority.INTERACTIVE);
+                assert false;
+            } catch (OllamaOverloadedException e) {
+                assert e.getHttpStatus() == 503;
+            }
+        }
+        assert scheduler.getStats().get("queued").equals(0);
+        assert scheduler.getStats().get("rejectedTimeout").equals(1L);
+    }
+
+    private static Thread startWaiter(OllamaScheduler scheduler, RequestPriority priority,
+                                      List<RequestPriority> admissionOrder, CountDownLatch done) {
+        Thread thread = new Thread(() -> {
+            try (OllamaScheduler.Permit ignored = scheduler.acquire(priority)) {
+                admissionOrder.add(priority);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                done.countDown();
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    private static void awaitQueued(OllamaScheduler scheduler, int queued) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!scheduler.getStats().get("queued").equals(queued) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.jio.jcpaura;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jio.jcpaura.service.PipelineMetrics;
+import com.jio.jcpaura.service.PipelineTimings;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit tests for the per-stage latency breakdown and the pipeline meters
+ */
+class PipelineTimingsTests {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testStagesAndModelStatsAreRecorded() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        PipelineTimings timings = new PipelineTimings(new PipelineMetrics(registry));
+
+        timings.time("execute", () -> "rows");
+        timings.time("execute", () -> "rows");
+        String response = timings.timeModel("format", "system", "user", stats -> {
+            stats.fill(new ObjectMapper().readTree(
+                    "{\"prompt_eval_count\":12,\"eval_count\":34,\"eval_duration\":5000000,\"done\":true}"));
+            return "answer";
+        });
+        assert "answer".equals(response);
+
+        Map<String, Object> stages = (Map<String, Object>) timings.toMap().get("stages");
+        assert stages.keySet().stream().toList().equals(List.of("execute", "format"));
+        Map<String, Object> format = (Map<String, Object>) stages.get("format");
+        assert format.get("promptChars").equals(10);
+        Map<String, Object> model = (Map<String, Object>) format.get("model");
+        assert model.get("promptTokens").equals(12L);
+        assert model.get("completionTokens").equals(34L);
+        assert model.get("evalMs").equals(5.0);
+
+        assert registry.get("aura.ai.pipeline.stage").tag("stage", "execute").timer().count() == 2;
+        assert registry.get("aura.ai.model.tokens").tag("stage", "format").tag("type", "completion")
+                .summary().totalAmount() == 34;
+        assert registry.get("aura.ai.model.cache").tag("result", "miss").counter().count() == 1;
+    }
+
+    @Test
+    void testCachedModelCallRecordsNoTokens() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        PipelineTimings timings = new PipelineTimings(new PipelineMetrics(registry));
+
+        timings.timeModel("entity", "system", "user", stats -> {
+            stats.markCached();
+            return "cached";
+        });
+
+        assert registry.get("aura.ai.model.cache").tag("result", "hit").counter().count() == 1;
+        assert registry.find("aura.ai.model.tokens").summary() == null;
+    }
+
+    @Test
+    void testFailedStageIsTimedAsError() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        PipelineTimings timings = new PipelineTimings(new PipelineMetrics(registry));
+
+        try {
+            timings.time("execute", () -> {
+                throw new IllegalStateException("bad query");
+            });
+            assert false;
+        } catch (IllegalStateException expected) {
+            // expected
+        }
+
+        assert registry.get("aura.ai.pipeline.stage").tag("outcome", "error").timer().count() == 1;
+    }
+}
@@ -0,0 +1,84 @@
+package com.jio.jcpaura;
+
+import com.jio.jcpaura.service.QueryCostGuard;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+/**
+ * Unit tests for explain-based review of generated queries and pipelines
+ */
+class QueryCostGuardTests {
+
+    private static final Document COLLSCAN = Document.parse(
+            "{\"queryPlanner\": {\"winningPlan\": {\"stage\": \"COLLSCAN\"}, "
+                    + "\"rejectedPlans\": [{\"stage\": \"FETCH\", \"inputStage\": {\"stage\": \"IXSCAN\"}}]}}");
+
+    private static final Document IXSCAN = Document.parse(
+            "{\"queryPlanner\": {\"winningPlan\": {\"stage\": \"FETCH\", \"inputStage\": {\"stage\": \"IXSCAN\"}}}}");
+
+    private final QueryCostGuard guard = new QueryCostGuard(10_000, 1_000, 500, 5_000);
+
+    @Test
+    void testQueryGetsLimitAndTimeLimit() {
+        QueryCostGuard.Decision decision = guard.reviewQuery(IXSCAN, 1_000_000);
+
+        assert decision.action() == QueryCostGuard.Action.REWRITE;
+        assert decision.limit() == 500;
+        assert decision.maxTimeMs() == 5_000;
+        assert decision.planStages().equals(List.of("FETCH", "IXSCAN"));
+    }
+
+    @Test
+    void testLargeCollectionScanIsRejected() {
+        assert guard.reviewQuery(COLLSCAN, 50_000).action() == QueryCostGuard.Action.REJECT;
+        assert guard.reviewQuery(COLLSCAN, 5_000).action() == QueryCostGuard.Action.REWRITE;
+
+        // Stages of rejected plans are not counted
+        assert guard.reviewQuery(COLLSCAN, 5_000).planStages().equals(List.of("COLLSCAN"));
+    }
+
+    @Test
+    void testPipelineWithoutLimitGetsOne() {
+        List<Document> pipeline = List.of(Document.parse("{\"$match\": {\"circle\": \"NORTH\"}}"));
+        Document explain = new Document("stages", List.of(new Document("$cursor", IXSCAN)));
+
+        QueryCostGuard.Decision decision = guard.reviewPipeline(pipeline, explain, 1_000_000);
+
+        assert decision.action() == QueryCostGuard.Action.REWRITE;
+        assert decision.pipeline().size() == 2;
+        assert decision.pipeline().get(1).equals(new Document("$limit", 500));
+
+        List<Document> limited = List.of(pipeline.get(0), new Document("$limit", 10));
+        assert guard.reviewPipeline(limited, explain, 1_000_000).action() == QueryCostGuard.Action.ALLOW;
+    }
+
+    @Test
+    void testBlockingSortMustBeBounded() {
+        Document group = Document.parse("{\"$group\": {\"_id\": \"$site_id\", \"latency\": {\"$avg\": \"$avg_latency_ms\"}}}");
+        Document sort = new Document("$sort", new Document("latency", -1));
+        Document project = new Document("$project", new Document("latency", 1));
+
+        // Sort last: the injected limit makes it a top-k sort
+        QueryCostGuard.Decision topK = guard.reviewPipeline(List.of(group, sort), COLLSCAN, 5_000);
+        assert topK.action() == QueryCostGuard.Action.REWRITE;
+
+        QueryCostGuard.Decision unbounded = guard.reviewPipeline(List.of(group, sort, project), COLLSCAN, 5_000);
+        assert unbounded.action() == QueryCostGuard.Action.REJECT;
+        assert unbounded.reasons().get(0).startsWith("blocking sort");
+
+        // Small collections are sorted as they are
+        assert guard.reviewPipeline(List.of(group, sort, project), COLLSCAN, 500).action()
+                == QueryCostGuard.Action.REWRITE;
+    }
+
+    @Test
+    void testFailedExplainStillLimits() {
+        QueryCostGuard.Decision decision = guard.reviewPipeline(List.of(new Document("$count", "n")), null, 1_000_000);
+
+        assert decision.action() == QueryCostGuard.Action.REWRITE;
+        assert decision.reasons().get(0).startsWith("explain failed");
+        assert guard.getStats().get("unexplained").equals(1L);
+    }
+}
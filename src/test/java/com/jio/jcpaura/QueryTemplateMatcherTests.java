@@ -0,0 +1,78 @@
+package com.jio.jcpaura;
+
+import com.jio.jcpaura.entity.AuraGeneralMetrics;
+import com.jio.jcpaura.service.EntityRouter;
+import com.jio.jcpaura.service.QueryTemplateMatcher;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit tests for compiling common question shapes without the model
+ */
+class QueryTemplateMatcherTests {
+
+    private static final Map<String, List<String>> KNOWN_VALUES = Map.of(
+            "circle", List.of("Karnataka", "North", "Mumbai", "Mumbai Metro"),
+            "service_type", List.of("Jio5G", "Jio4G"),
+            "health_status", List.of("GOOD", "WARNING", "CRITICAL"));
+
+    private final QueryTemplateMatcher matcher = new QueryTemplateMatcher(EntityRouter.describe(
+            AuraGeneralMetrics.class, "network performance metrics",
+            Map.of("throughput_mbps", List.of("speed"), "circle", List.of("region"), "active_users", List.of("users")),
+            List.of()));
+
+    @Test
+    void testMetricInCircle() {
+        QueryTemplateMatcher.Match match = matcher.match("What is the availability in Karnataka?", KNOWN_VALUES);
+        assert match != null;
+        assert match.template().equals("lookup");
+        assert match.mongoQuery().equals("{\"circle\": \"Karnataka\"}");
+
+        match = matcher.match("latency of 5G sites in Mumbai Metro", KNOWN_VALUES);
+        assert match.mongoQuery().equals("{\"circle\": \"Mumbai Metro\", \"service_type\": \"Jio5G\"}");
+    }
+
+    @Test
+    void testThresholdWithUnits() {
+        QueryTemplateMatcher.Match match = matcher.match("Sites with availability below 95%", KNOWN_VALUES);
+        assert match.template().equals("threshold");
+        assert match.mongoQuery().equals("{\"availability_pct\": {\"$lt\": 95}}");
+
+        match = matcher.match("show sites in North with latency above 1.5 seconds", KNOWN_VALUES);
+        assert match.mongoQuery().equals("{\"circle\": \"North\", \"avg_latency_ms\": {\"$gt\": 1500}}");
+
+        match = matcher.match("sites having more than 500 users", KNOWN_VALUES);
+        assert match.mongoQuery().equals("{\"active_users\": {\"$gt\": 500}}");
+
+        // A unit that does not fit the field is not guessed at
+        assert matcher.match("sites with availability above 20 ms", KNOWN_VALUES) == null;
+    }
+
+    @Test
+    void testAggregates() {
+        QueryTemplateMatcher.Match match = matcher.match("Average latency by circle", KNOWN_VALUES);
+        assert match.template().equals("aggregate");
+        assert match.mongoQuery().equals("[{\"$group\": {\"_id\": \"$circle\", \"avg_avg_latency_ms\": {\"$avg\": \"$avg_latency_ms\"}, "
+                + "\"count\": {\"$sum\": 1}}}, {\"$sort\": {\"_id\": 1}}]");
+
+        match = matcher.match("max speed per service type in Karnataka", KNOWN_VALUES);
+        assert match.mongoQuery().startsWith("[{\"$match\": {\"circle\": \"Karnataka\"}}, {\"$group\": {\"_id\": \"$service_type\", "
+                + "\"max_throughput_mbps\": {\"$max\": \"$throughput_mbps\"}");
+
+        match = matcher.match("How many sites have packet loss over 2%?", KNOWN_VALUES);
+        assert match.mongoQuery().equals("[{\"$match\": {\"packet_loss_pct\": {\"$gt\": 2}}}, "
+                + "{\"$group\": {\"_id\": null, \"count\": {\"$sum\": 1}}}]");
+    }
+
+    @Test
+    void testUnsupportedQuestionsFallBackToModel() {
+        assert matcher.match("Which site has the highest latency?", KNOWN_VALUES) == null;
+        assert matcher.match("availability in Karnataka over the last week", KNOWN_VALUES) == null;
+        assert matcher.match("latency in Kerala", KNOWN_VALUES) == null;
+        assert matcher.match("sites not in Karnataka", KNOWN_VALUES) == null;
+        assert matcher.match("latency by circle", KNOWN_VALUES) == null;
+        assert matcher.match("show me the latency", KNOWN_VALUES) == null;
+    }
+}
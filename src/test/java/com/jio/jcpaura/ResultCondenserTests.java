@@ -0,0 +1,88 @@
+package com.jio.jcpaura;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jio.jcpaura.service.ResultCondenser;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit tests for summarizing large query results before the response-formatting step
+ */
+class ResultCondenserTests {
+
+    private static final List<String> CIRCLES = List.of("Karnataka", "North", "South", "Mumbai");
+
+    private final ResultCondenser condenser = new ResultCondenser(List.of("circle", "service_type"), 20, 3, 5);
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testStatisticsOverAllRows() {
+        Map<String, Object> summary = condenser.condense(rows(1000));
+
+        assert summary.get("rowCount").equals(1000);
+
+        Map<String, Object> fields = (Map<String, Object>) summary.get("fields");
+        Map<String, Object> latency = (Map<String, Object>) fields.get("avg_latency_ms");
+        assert latency.get("count").equals(1000);
+        assert latency.get("min").equals(0.0);
+        assert latency.get("max").equals(999.0);
+        assert latency.get("avg").equals(499.5);
+        assert latency.get("p50").equals(499.0);
+
+        Map<String, Object> circle = (Map<String, Object>) fields.get("circle");
+        assert circle.get("distinct").equals(4);
+
+        Map<String, Object> timestamp = (Map<String, Object>) fields.get("kpi_timestamp");
+        assert timestamp.get("min").equals("1970-01-01T00:00:00Z");
+
+        Map<String, Object> byCircle = (Map<String, Object>) ((Map<String, Object>) summary.get("groups")).get("circle");
+        Map<String, Object> north = (Map<String, Object>) byCircle.get("North");
+        assert north.get("count").equals(250);
+        assert ((Map<String, Object>) north.get("avg_latency_ms")).get("min").equals(1.0);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testOutliersAndSample() {
+        Map<String, Object> summary = condenser.condense(rows(1000));
+
+        Map<String, Object> latencyOutliers = (Map<String, Object>) ((Map<String, Object>) summary.get("outliers")).get("avg_latency_ms");
+        List<Map<String, Object>> highest = (List<Map<String, Object>>) latencyOutliers.get("highest");
+        assert highest.size() == 3;
+        assert highest.get(0).get("avg_latency_ms").equals(999.0);
+        assert highest.get(0).get("site_id").equals("SITE-999");
+
+        List<Map<String, Object>> sample = (List<Map<String, Object>>) summary.get("sample");
+        assert sample.size() == 5;
+        assert sample.get(1).get("site_id").equals("SITE-200");
+    }
+
+    @Test
+    void testSummarySizeDoesNotGrowWithRowCount() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        int small = objectMapper.writeValueAsString(condenser.condense(rows(1_000))).length();
+        int large = objectMapper.writeValueAsString(condenser.condense(rows(50_000))).length();
+
+        assert large < small * 1.2;
+    }
+
+    private List<Map<String, Object>> rows(int count) {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("site_id", "SITE-" + i);
+            row.put("circle", CIRCLES.get(i % CIRCLES.size()));
+            row.put("service_type", i % 2 == 0 ? "Jio5G" : "Jio4G");
+            row.put("avg_latency_ms", (double) i);
+            row.put("active_users", i * 10);
+            row.put("kpi_timestamp", new Date(i * 60_000L));
+            rows.add(row);
+        }
+        return rows;
+    }
+}
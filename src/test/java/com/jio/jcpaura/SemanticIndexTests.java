@@ -0,0 +1,67 @@
+package com.jio.jcpaura;
+
+import com.jio.jcpaura.service.EntityRouter;
+import com.jio.jcpaura.service.SemanticIndex;
+import com.jio.jcpaura.service.SemanticQueryCache;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Unit tests for the semantic cache's vector index and question guard
+ */
+class SemanticIndexTests {
+
+    @Test
+    void testNearestEntryAboveThresholdIsFound() {
+        SemanticIndex<String> index = new SemanticIndex<>(10, 0);
+        index.add(new float[]{1, 0, 0}, "g", "east");
+        index.add(new float[]{0, 1, 0}, "g", "north");
+
+        // Magnitude does not matter, only direction
+        SemanticIndex.Hit<String> hit = index.search(new float[]{10, 1, 0}, "g", 0.9);
+        assert hit != null;
+        assert hit.value().equals("east");
+        assert hit.similarity() > 0.99;
+
+        assert index.search(new float[]{1, 1, 0}, "g", 0.9) == null;
+        // Entries with another guard are never considered
+        assert index.search(new float[]{1, 0, 0}, "other", 0.5) == null;
+    }
+
+    @Test
+    void testOldestEntriesAreEvicted() {
+        AtomicLong now = new AtomicLong(0);
+        SemanticIndex<String> index = new SemanticIndex<>(2, 1000, now::get);
+        index.add(new float[]{1, 0}, "g", "first");
+        index.add(new float[]{0, 1}, "g", "second");
+        index.add(new float[]{1, 1}, "g", "third");
+
+        assert index.size() == 2;
+        assert index.getEvictions() == 1;
+        assert index.search(new float[]{1, 0}, "g", 0.99) == null;
+
+        now.set(1000);
+        assert index.search(new float[]{0, 1}, "g", 0.99) == null;
+        assert index.removeIf(value -> value.equals("third")) == 1;
+    }
+
+    @Test
+    void testGuardSeparatesQuestionsThatAskForDifferentThings() {
+        Map<String, List<String>> knownValues = Map.of("circle", List.of("Karnataka", "Kerala"));
+        EntityRouter.Route route = new EntityRouter.Route("auraGeneralMetrics", List.of("availability_pct"), "");
+
+        String guard = SemanticQueryCache.guard("Karnataka availability", route, knownValues);
+        assert guard.equals(SemanticQueryCache.guard("What's the availability in Karnataka?", route, knownValues));
+        assert !guard.equals(SemanticQueryCache.guard("Kerala availability", route, knownValues));
+
+        assert !SemanticQueryCache.guard("sites with latency above 100 ms", null, knownValues)
+                .equals(SemanticQueryCache.guard("sites with latency above 200 ms", null, knownValues));
+        assert !SemanticQueryCache.guard("sites with latency above 100 ms", null, knownValues)
+                .equals(SemanticQueryCache.guard("sites with latency below 100 ms", null, knownValues));
+        assert SemanticQueryCache.guard("sites with latency over 100 ms", null, knownValues)
+                .equals(SemanticQueryCache.guard("sites with latency above 100ms", null, knownValues));
+    }
+}
@@ -0,0 +1,111 @@
+package com.jio.jcpaura;
+
+import com.jio.jcpaura.service.QuestionNormalizer;
+import com.jio.jcpaura.service.SingleFlight;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit tests for coalescing of identical concurrent requests
+ */
+class SingleFlightTests {
+
+    @Test
+    void testConcurrentCallersShareOneExecution() throws Exception {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        int callers = 8;
+
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<SingleFlight.Result<String>>> futures = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                futures.add(pool.submit(() -> singleFlight.execute("key", () -> {
+                    executions.incrementAndGet();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return "result";
+                })));
+            }
+
+            // Wait until every caller is either leading or waiting on the leader
+            long deadline = System.currentTimeMillis() + 5_000;
+            while ((long) singleFlight.getStats().get("coalesced") < callers - 1
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            release.countDown();
+
+            int shared = 0;
+            for (Future<SingleFlight.Result<String>> future : futures) {
+                SingleFlight.Result<String> result = future.get(5, TimeUnit.SECONDS);
+                assert "result".equals(result.value());
+                if (result.shared()) {
+                    shared++;
+                }
+            }
+
+            assert executions.get() == 1;
+            assert shared == callers - 1;
+            assert singleFlight.getStats().get("inFlight").equals(0);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void testSequentialCallsRunAgain() {
+        SingleFlight<String, Integer> singleFlight = new SingleFlight<>();
+        AtomicInteger executions = new AtomicInteger();
+
+        singleFlight.execute("key", executions::incrementAndGet);
+        SingleFlight.Result<Integer> second = singleFlight.execute("key", executions::incrementAndGet);
+
+        assert executions.get() == 2;
+        assert !second.shared();
+    }
+
+    @Test
+    void testLeaderFailureIsRethrown() {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        try {
+            singleFlight.execute("key", () -> {
+                throw new IllegalStateException("model unavailable");
+            });
+            assert false;
+        } catch (IllegalStateException e) {
+            assert "model unavailable".equals(e.getMessage());
+        }
+        assert singleFlight.getStats().get("inFlight").equals(0);
+    }
+
+    @Test
+    void testQuestionNormalization() {
+        assert QuestionNormalizer.normalize("  What is the  availability in Karnataka? ")
+                .equals(QuestionNormalizer.normalize("what is the availability in karnataka"));
+        assert !QuestionNormalizer.normalize("availability in Gujarat")
+                .equals(QuestionNormalizer.normalize("availability in Karnataka"));
+    }
+
+    @Test
+    void testPlanKeyIgnoresFillerButKeepsMeaning() {
+        assert QuestionNormalizer.planKey("Show me the availability in Karnataka!")
+                .equals(QuestionNormalizer.planKey("what is availability in karnataka?"));
+        assert QuestionNormalizer.planKey("Sites with latency above 100.5 ms")
+                .equals("sites with latency above 100.5 ms");
+        assert !QuestionNormalizer.planKey("latency above 100")
+                .equals(QuestionNormalizer.planKey("latency below 100"));
+    }
+}